@@ -0,0 +1,264 @@
+package desempenho;
+
+import java.awt.Dimension;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks de cada operação de ProcessadorImagem sobre imagens sintéticas.
+ *
+ * O contador "megapixels" dá a vazão em MP/s (pixels de entrada por segundo);
+ * a taxa de alocação aparece ao rodar com -prof gc, como faz o alvo benchmark
+ * do build.xml.
+ *
+ * Cada resultado passa pelo Blackhole e volta ao PoolBuffers, como num lote de
+ * imagens; assim a alocação medida é a do pool já aquecido, não a de um pool
+ * que nunca recebe nada de volta.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class BenchmarkOperacoes {
+
+    // VGA, 1080p, 4K e 24 MP
+    @Param({"640x480", "1920x1080", "3840x2160", "6000x4000"})
+    public String tamanho;
+
+    private Object imagem;
+    private Object cadeia;
+    private Object ajusteLab;
+    private Object binaria1;
+    private Object binaria2;
+    private Object mascara1;
+    private Object mascara2;
+    private final Object bilinear = PonteProcessador.interpolacao("BILINEAR");
+    private final Object bicubica = PonteProcessador.interpolacao("BICUBICA");
+    private final Object area = PonteProcessador.interpolacao("AREA");
+    private final Object sauvola = PonteProcessador.metodoLimiar("SAUVOLA");
+    private final Object oito = PonteProcessador.vizinhanca("OITO");
+    private double megapixels;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Vazao {
+
+        public double megapixels;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            megapixels = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void criarImagem() throws Throwable {
+        int separador = tamanho.indexOf('x');
+        int largura = Integer.parseInt(tamanho.substring(0, separador));
+        int altura = Integer.parseInt(tamanho.substring(separador + 1));
+        imagem = (Object) PonteProcessador.CRIAR_RGB.invokeExact(largura, altura);
+        preencher((int[]) PonteProcessador.DADOS_RGB.invokeExact(imagem), largura, altura);
+        megapixels = largura * (double) altura / 1e6;
+        cadeia = (Object) PonteProcessador.PIPELINE_DE_TEXTO.invokeExact("cinza | gaussiano:sigma=2 | binaria");
+        ajusteLab = (Object) PonteProcessador.PIPELINE_DE_TEXTO.invokeExact("cor:espaco=lab,canal=l,fator=1.2");
+        // a segunda imagem é a primeira girada, para que as duas não coincidam
+        Object girada = (Object) PonteProcessador.ROTACIONAR.invokeExact(imagem, 180.0);
+        binaria1 = (Object) PonteProcessador.IMAGEM_BINARIA.invokeExact(imagem);
+        binaria2 = (Object) PonteProcessador.IMAGEM_BINARIA.invokeExact(girada);
+        mascara1 = (Object) PonteProcessador.MASCARA_BINARIA.invokeExact(imagem);
+        mascara2 = (Object) PonteProcessador.MASCARA_BINARIA.invokeExact(girada);
+        PonteProcessador.DEVOLVER.invokeExact(girada);
+    }
+
+    private void devolver(Blackhole buraco, Object resultado) throws Throwable {
+        buraco.consume(resultado);
+        // uma operação que devolvesse a própria entrada não pode mandá-la ao pool
+        if (resultado != imagem) {
+            PonteProcessador.DEVOLVER.invokeExact(resultado);
+        }
+    }
+
+    private void devolverTodos(Blackhole buraco, Object[] resultados) throws Throwable {
+        for (Object resultado : resultados) {
+            devolver(buraco, resultado);
+        }
+    }
+
+    private static void devolverMascara(Blackhole buraco, Object mascara) throws Throwable {
+        buraco.consume(mascara);
+        PonteProcessador.DEVOLVER_MASCARA.invokeExact(mascara);
+    }
+
+    // gradiente suave com ruído, para que limiares e medianas não caiam em casos triviais
+    private static void preencher(int[] pixels, int largura, int altura) {
+        SplittableRandom aleatorio = new SplittableRandom(42);
+        for (int y = 0; y < altura; y++) {
+            for (int x = 0; x < largura; x++) {
+                int r = (x * 255 / largura + aleatorio.nextInt(32)) & 0xff;
+                int g = (y * 255 / altura + aleatorio.nextInt(32)) & 0xff;
+                int b = ((x + y) * 255 / (largura + altura) + aleatorio.nextInt(32)) & 0xff;
+                pixels[y * largura + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    @Benchmark
+    public void escalaCinza(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.ESCALA_CINZA.invokeExact(imagem));
+    }
+
+    @Benchmark
+    public void imagemBinaria(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.IMAGEM_BINARIA.invokeExact(imagem));
+    }
+
+    @Benchmark
+    public void corDominante(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.COR_DOMINANTE.invokeExact(imagem));
+    }
+
+    @Benchmark
+    public void redimensionarMetade(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.REDIMENSIONAR.invokeExact(imagem, 0.5));
+    }
+
+    @Benchmark
+    public void redimensionarMetadeBilinear(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.REDIMENSIONAR_INTERPOLADO.invokeExact(imagem, 0.5, bilinear));
+    }
+
+    @Benchmark
+    public void redimensionarMetadeBicubica(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.REDIMENSIONAR_INTERPOLADO.invokeExact(imagem, 0.5, bicubica));
+    }
+
+    // miniatura, o caso típico da média por área
+    @Benchmark
+    public void redimensionarMiniaturaArea(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.REDIMENSIONAR_INTERPOLADO.invokeExact(imagem, 0.1, area));
+    }
+
+    @Benchmark
+    public void rotacionar30Graus(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.ROTACIONAR.invokeExact(imagem, 30.0));
+    }
+
+    @Benchmark
+    public void filtroMedia5x5(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.FILTRO_MEDIA.invokeExact(imagem, 5));
+    }
+
+    @Benchmark
+    public void filtroMediana3x3(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.FILTRO_MEDIANA.invokeExact(imagem, 3));
+    }
+
+    @Benchmark
+    public void filtroSobel(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.FILTRO_SOBEL.invokeExact(imagem));
+    }
+
+    @Benchmark
+    public void filtroGaussianoSigma2(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.FILTRO_GAUSSIANO.invokeExact(imagem, 2.0));
+    }
+
+    // as três etapas de uma vez, com as operações de ponto fundidas ao filtro
+    @Benchmark
+    public void pipelineCinzaGaussianoBinaria(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.APLICAR_OPERACAO.invokeExact(cadeia, imagem));
+    }
+
+    @Benchmark
+    public void converterHSV(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolverTodos(buraco, (Object[]) (Object) PonteProcessador.CONVERTER_HSV.invokeExact(imagem));
+    }
+
+    // ida ao Lab, ajuste da luminosidade e volta numa única passada
+    @Benchmark
+    public void ajustarLuminosidadeLab(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.APLICAR_OPERACAO.invokeExact(ajusteLab, imagem));
+    }
+
+    // imagens de um byte por pixel, passando por máscaras e de volta
+    @Benchmark
+    public void uniaoBinarias(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.UNIAO.invokeExact(binaria1, binaria2));
+    }
+
+    @Benchmark
+    public void uniaoMascaras(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolverMascara(buraco, (Object) PonteProcessador.UNIAO_MASCARAS.invokeExact(mascara1, mascara2));
+    }
+
+    @Benchmark
+    public long areaMascara(Vazao vazao) throws Throwable {
+        vazao.megapixels += megapixels;
+        return (long) PonteProcessador.AREA_MASCARA.invokeExact(mascara1);
+    }
+
+    @Benchmark
+    public void binariaOtsu(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.BINARIA_OTSU.invokeExact(imagem));
+    }
+
+    // janelas de tamanhos bem diferentes devem custar o mesmo
+    @Benchmark
+    public void binariaSauvola31(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.BINARIA_ADAPTATIVA.invokeExact(imagem, sauvola, 31, 0.34));
+    }
+
+    @Benchmark
+    public void binariaSauvola301(Vazao vazao, Blackhole buraco) throws Throwable {
+        vazao.megapixels += megapixels;
+        devolver(buraco, (Object) PonteProcessador.BINARIA_ADAPTATIVA.invokeExact(imagem, sauvola, 301, 0.34));
+    }
+
+    // a imagem com ruído gera milhões de trechos: é o pior caso da rotulação
+    @Benchmark
+    public Object rotularComponentes(Vazao vazao) throws Throwable {
+        vazao.megapixels += megapixels;
+        return (Object) PonteProcessador.ROTULAR.invokeExact(mascara1, oito);
+    }
+
+    @Benchmark
+    public Dimension medirDispositivo(Vazao vazao) throws Throwable {
+        vazao.megapixels += megapixels;
+        return (Dimension) PonteProcessador.MEDIR_DISPOSITIVO.invokeExact(imagem);
+    }
+}
@@ -0,0 +1,147 @@
+package desempenho;
+
+import java.awt.Dimension;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Acesso às classes do projeto, que ficam no pacote padrão e por isso não podem
+ * ser importadas pelos benchmarks (o JMH exige um pacote nomeado).
+ *
+ * Os handles são constantes estáticas, então o JIT os trata como chamadas
+ * diretas. BufferImagem aparece como Object nas assinaturas.
+ */
+final class PonteProcessador {
+
+    private static final Class<?> BUFFER = classe("BufferImagem");
+    private static final Class<?> PROCESSADOR = classe("ProcessadorImagem");
+    private static final Class<?> OPERACAO = classe("OperacaoImagem");
+    private static final Class<?> PIPELINE = classe("Pipeline");
+    private static final Class<?> INTERPOLACAO = classe("Redimensionador$Interpolacao");
+    private static final Class<?> MASCARA = classe("MascaraBinaria");
+    private static final Class<?> METODO_LIMIAR = classe("Limiarizacao$Metodo");
+    private static final Class<?> COMPONENTES = classe("ComponentesConexos");
+    private static final Class<?> VIZINHANCA = classe("ComponentesConexos$Vizinhanca");
+    private static final Class<?> POOL = classe("PoolBuffers");
+
+    static final MethodHandle CRIAR_RGB = estatico(BUFFER, "criarRGB", BUFFER, int.class, int.class);
+    static final MethodHandle DADOS_RGB = virtual(BUFFER, "getDadosRGB", int[].class);
+    // devolve um buffer ao pool padrão, como faz quem processa imagens em série
+    static final MethodHandle DEVOLVER = devolverAoPool();
+    static final MethodHandle DEVOLVER_MASCARA = virtual(MASCARA, "devolver", void.class);
+
+    static final MethodHandle ESCALA_CINZA = estatico(PROCESSADOR, "escalaCinza", BUFFER, BUFFER);
+    static final MethodHandle IMAGEM_BINARIA = estatico(PROCESSADOR, "imagemBinaria", BUFFER, BUFFER);
+    static final MethodHandle COR_DOMINANTE = estatico(PROCESSADOR, "corDominante", BUFFER, BUFFER);
+    static final MethodHandle REDIMENSIONAR = estatico(PROCESSADOR, "redimensionar", BUFFER, BUFFER, double.class);
+    static final MethodHandle REDIMENSIONAR_INTERPOLADO = estatico(PROCESSADOR, "redimensionar", BUFFER, BUFFER,
+            double.class, INTERPOLACAO);
+    static final MethodHandle ROTACIONAR = estatico(PROCESSADOR, "rotacionar", BUFFER, BUFFER, double.class);
+    static final MethodHandle FILTRO_MEDIA = estatico(PROCESSADOR, "filtroMedia", BUFFER, BUFFER, int.class);
+    static final MethodHandle FILTRO_MEDIANA = estatico(PROCESSADOR, "filtroMediana", BUFFER, BUFFER, int.class);
+    static final MethodHandle FILTRO_SOBEL = estatico(PROCESSADOR, "filtroSobel", BUFFER, BUFFER);
+    static final MethodHandle FILTRO_GAUSSIANO = estatico(PROCESSADOR, "filtroGaussiano", BUFFER, BUFFER,
+            double.class);
+    static final MethodHandle PIPELINE_DE_TEXTO = estatico(PIPELINE, "deTexto", PIPELINE, String.class);
+    static final MethodHandle APLICAR_OPERACAO = virtual(OPERACAO, "aplicar", BUFFER, BUFFER);
+    static final MethodHandle CONVERTER_HSV = estatico(PROCESSADOR, "converterHSV", BUFFER.arrayType(), BUFFER);
+    static final MethodHandle UNIAO = estatico(PROCESSADOR, "uniao", BUFFER, BUFFER, BUFFER);
+    static final MethodHandle MASCARA_BINARIA = estatico(PROCESSADOR, "mascaraBinaria", MASCARA, BUFFER);
+    static final MethodHandle UNIAO_MASCARAS = virtual(MASCARA, "uniao", MASCARA, MASCARA);
+    static final MethodHandle AREA_MASCARA = virtual(MASCARA, "area", long.class);
+    static final MethodHandle BINARIA_OTSU = estatico(PROCESSADOR, "binariaOtsu", BUFFER, BUFFER);
+    static final MethodHandle BINARIA_ADAPTATIVA = estatico(PROCESSADOR, "binariaAdaptativa", BUFFER, BUFFER,
+            METODO_LIMIAR, int.class, double.class);
+    static final MethodHandle ROTULAR = estatico(COMPONENTES, "rotular", COMPONENTES, MASCARA, VIZINHANCA);
+    static final MethodHandle MEDIR_DISPOSITIVO = estatico(PROCESSADOR, "medirDispositivo", Dimension.class,
+            BUFFER);
+
+    private PonteProcessador() {
+    }
+
+    // constante de Redimensionador.Interpolacao pelo nome
+    static Object interpolacao(String nome) {
+        for (Object constante : INTERPOLACAO.getEnumConstants()) {
+            if (((Enum<?>) constante).name().equals(nome)) {
+                return constante;
+            }
+        }
+        throw new IllegalArgumentException("Interpolação desconhecida: " + nome);
+    }
+
+    // constante de Limiarizacao.Metodo pelo nome
+    static Object metodoLimiar(String nome) {
+        for (Object constante : METODO_LIMIAR.getEnumConstants()) {
+            if (((Enum<?>) constante).name().equals(nome)) {
+                return constante;
+            }
+        }
+        throw new IllegalArgumentException("Método de limiar desconhecido: " + nome);
+    }
+
+    // constante de ComponentesConexos.Vizinhanca pelo nome
+    static Object vizinhanca(String nome) {
+        for (Object constante : VIZINHANCA.getEnumConstants()) {
+            if (((Enum<?>) constante).name().equals(nome)) {
+                return constante;
+            }
+        }
+        throw new IllegalArgumentException("Vizinhança desconhecida: " + nome);
+    }
+
+    // PoolBuffers.get().devolver(buffer), com o pool já ligado ao handle
+    private static MethodHandle devolverAoPool() {
+        try {
+            Object pool = POOL.getMethod("get").invoke(null);
+            return virtual(POOL, "devolver", void.class, BUFFER).bindTo(pool);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Pool de buffers indisponível", e);
+        }
+    }
+
+    private static Class<?> classe(String nome) {
+        try {
+            return Class.forName(nome);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Classe do projeto fora do classpath: " + nome, e);
+        }
+    }
+
+    private static MethodHandle estatico(Class<?> dono, String nome, Class<?> retorno, Class<?>... parametros) {
+        try {
+            MethodType tipo = MethodType.methodType(retorno, parametros);
+            return adaptar(MethodHandles.publicLookup().findStatic(dono, nome, tipo));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Operação não encontrada: " + dono.getName() + "." + nome, e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> dono, String nome, Class<?> retorno, Class<?>... parametros) {
+        try {
+            MethodType tipo = MethodType.methodType(retorno, parametros);
+            return adaptar(MethodHandles.publicLookup().findVirtual(dono, nome, tipo));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Método não encontrado: " + dono.getName() + "." + nome, e);
+        }
+    }
+
+    // troca os tipos do projeto por Object e mantém os demais
+    private static MethodHandle adaptar(MethodHandle handle) {
+        MethodType tipo = handle.type();
+        for (int i = 0; i < tipo.parameterCount(); i++) {
+            if (doProjeto(tipo.parameterType(i))) {
+                tipo = tipo.changeParameterType(i, Object.class);
+            }
+        }
+        if (doProjeto(tipo.returnType())) {
+            tipo = tipo.changeReturnType(Object.class);
+        }
+        return handle.asType(tipo);
+    }
+
+    private static boolean doProjeto(Class<?> tipo) {
+        Class<?> elemento = tipo.isArray() ? tipo.componentType() : tipo;
+        return !elemento.isPrimitive() && elemento.getPackageName().isEmpty();
+    }
+}
@@ -0,0 +1,390 @@
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Buffer contíguo de pixels usado por todas as operações de processamento.
+ *
+ * Imagens coloridas guardam um pixel por int no formato 0x00RRGGBB (o mesmo
+ * layout de BufferedImage.TYPE_INT_RGB) e imagens de um canal guardam um byte
+ * por pixel. As linhas ficam em ordem, separadas por {@code passo} elementos;
+ * o array pode ser maior que a imagem, como os que vêm do PoolBuffers.
+ *
+ * Uma janela guarda só algumas linhas consecutivas de uma imagem maior, mas
+ * mantém as coordenadas e a altura da imagem inteira; serve para processar uma
+ * faixa de cada vez quando a imagem não cabe na memória.
+ */
+public final class BufferImagem {
+
+    public static final int CANAIS_RGB = 3;
+    public static final int CANAIS_CINZA = 1;
+
+    private static final int[] MASCARAS_RGB = {0xff0000, 0xff00, 0xff};
+    private static final int[] TERCOS = new int[3 * 255 + 1];
+    private static final ColorModel MODELO_RGB = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+    private static final ColorModel MODELO_CINZA = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[]{8}, false, false,
+            Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    static {
+        for (int soma = 0; soma < TERCOS.length; soma++) {
+            TERCOS[soma] = soma / 3;
+        }
+    }
+
+    private final int largura;
+    private final int altura;
+    private final int passo;
+    private final int canais;
+    private final int[] rgb;
+    private final byte[] cinza;
+    // linhas [primeiraLinha, fimLinhas) presentes no array
+    private final int primeiraLinha;
+    private final int fimLinhas;
+
+    private BufferImagem(int largura, int altura, int passo, int[] rgb, byte[] cinza) {
+        this(largura, altura, passo, rgb, cinza, 0, altura);
+    }
+
+    private BufferImagem(int largura, int altura, int passo, int[] rgb, byte[] cinza, int primeiraLinha,
+            int fimLinhas) {
+        if (largura <= 0 || altura <= 0) {
+            throw new IllegalArgumentException("Dimensões inválidas: " + largura + "x" + altura);
+        }
+        if (primeiraLinha < 0 || fimLinhas > altura || primeiraLinha >= fimLinhas) {
+            throw new IllegalArgumentException("Linhas inválidas: [" + primeiraLinha + ", " + fimLinhas + ")");
+        }
+        this.largura = largura;
+        this.altura = altura;
+        this.passo = passo;
+        this.rgb = rgb;
+        this.cinza = cinza;
+        this.canais = rgb != null ? CANAIS_RGB : CANAIS_CINZA;
+        this.primeiraLinha = primeiraLinha;
+        this.fimLinhas = fimLinhas;
+    }
+
+    public static BufferImagem criarRGB(int largura, int altura) {
+        return new BufferImagem(largura, altura, largura, new int[largura * altura], null);
+    }
+
+    public static BufferImagem criarCinza(int largura, int altura) {
+        return new BufferImagem(largura, altura, largura, null, new byte[largura * altura]);
+    }
+
+    public static BufferImagem envolverRGB(int largura, int altura, int passo, int[] rgb) {
+        return new BufferImagem(largura, altura, passo, rgb, null);
+    }
+
+    public static BufferImagem envolverCinza(int largura, int altura, int passo, byte[] cinza) {
+        return new BufferImagem(largura, altura, passo, null, cinza);
+    }
+
+    // janela sobre um array existente, com a linha primeiraLinha no início dele
+    public static BufferImagem envolverJanela(int largura, int altura, int primeiraLinha, int fimLinhas, int[] rgb,
+            byte[] cinza) {
+        return new BufferImagem(largura, altura, largura, rgb, cinza, primeiraLinha, fimLinhas);
+    }
+
+    // janela com as linhas [primeiraLinha, fimLinhas) de uma imagem largura x altura
+    public static BufferImagem criarJanela(int largura, int altura, int primeiraLinha, int fimLinhas,
+            boolean cinza) {
+        int tamanho = largura * (fimLinhas - primeiraLinha);
+        return cinza ? new BufferImagem(largura, altura, largura, null, new byte[tamanho], primeiraLinha, fimLinhas)
+                : new BufferImagem(largura, altura, largura, new int[tamanho], null, primeiraLinha, fimLinhas);
+    }
+
+    // lê a imagem inteira para um buffer RGB numa única passada sobre o DataBuffer
+    public static BufferImagem deImagem(BufferedImage imagem) {
+        int largura = imagem.getWidth();
+        int altura = imagem.getHeight();
+        BufferImagem buffer = PoolBuffers.get().criarRGB(largura, altura);
+        int[] destino = buffer.rgb;
+        Raster raster = imagem.getRaster();
+
+        switch (imagem.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB ->
+                lerInt(raster, destino, largura, altura);
+            case BufferedImage.TYPE_3BYTE_BGR ->
+                lerBytesBGR(raster, destino, largura, altura);
+            case BufferedImage.TYPE_BYTE_GRAY ->
+                lerBytesCinza(raster, destino, largura, altura);
+            default ->
+                lerGenerico(imagem, destino, largura, altura);
+        }
+        return buffer;
+    }
+
+    // caminho genérico: uma linha por chamada, sem alocação por pixel
+    private static void lerGenerico(BufferedImage imagem, int[] destino, int largura, int altura) {
+        for (int y = 0; y < altura; y++) {
+            imagem.getRGB(0, y, largura, 1, destino, y * largura, largura);
+        }
+        for (int i = 0; i < largura * altura; i++) {
+            destino[i] &= 0xffffff;
+        }
+    }
+
+    private static void lerInt(Raster raster, int[] destino, int largura, int altura) {
+        SinglePixelPackedSampleModel modelo = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        int[] origem = dataBuffer.getData();
+        int passoOrigem = modelo.getScanlineStride();
+        int inicio = dataBuffer.getOffset() + deslocamento(raster, passoOrigem, 1);
+
+        for (int y = 0; y < altura; y++) {
+            int linha = inicio + y * passoOrigem;
+            int saida = y * largura;
+            for (int x = 0; x < largura; x++) {
+                destino[saida + x] = origem[linha + x] & 0xffffff;
+            }
+        }
+    }
+
+    private static void lerBytesBGR(Raster raster, int[] destino, int largura, int altura) {
+        ComponentSampleModel modelo = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] origem = dataBuffer.getData();
+        int passoOrigem = modelo.getScanlineStride();
+        int passoPixel = modelo.getPixelStride();
+        int[] deslocamentos = modelo.getBandOffsets();
+        int inicio = dataBuffer.getOffset() + deslocamento(raster, passoOrigem, passoPixel);
+        int dr = deslocamentos[0];
+        int dg = deslocamentos[1];
+        int db = deslocamentos[2];
+
+        for (int y = 0; y < altura; y++) {
+            int posicao = inicio + y * passoOrigem;
+            int saida = y * largura;
+            for (int x = 0; x < largura; x++) {
+                destino[saida + x] = ((origem[posicao + dr] & 0xff) << 16)
+                        | ((origem[posicao + dg] & 0xff) << 8)
+                        | (origem[posicao + db] & 0xff);
+                posicao += passoPixel;
+            }
+        }
+    }
+
+    private static void lerBytesCinza(Raster raster, int[] destino, int largura, int altura) {
+        ComponentSampleModel modelo = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] origem = dataBuffer.getData();
+        int passoOrigem = modelo.getScanlineStride();
+        int passoPixel = modelo.getPixelStride();
+        int inicio = dataBuffer.getOffset() + deslocamento(raster, passoOrigem, passoPixel)
+                + modelo.getBandOffsets()[0];
+
+        for (int y = 0; y < altura; y++) {
+            int posicao = inicio + y * passoOrigem;
+            int saida = y * largura;
+            for (int x = 0; x < largura; x++) {
+                int v = origem[posicao] & 0xff;
+                destino[saida + x] = (v << 16) | (v << 8) | v;
+                posicao += passoPixel;
+            }
+        }
+    }
+
+    // posição do primeiro pixel quando o raster é uma sub-imagem de outro
+    private static int deslocamento(Raster raster, int passoLinha, int passoPixel) {
+        int x = raster.getMinX() - raster.getSampleModelTranslateX();
+        int y = raster.getMinY() - raster.getSampleModelTranslateY();
+        return y * passoLinha + x * passoPixel;
+    }
+
+    // BufferedImage que usa o próprio array do buffer como DataBuffer, sem cópia
+    public BufferedImage paraImagem() {
+        exigirImagemInteira();
+        int tamanho = (altura - 1) * passo + largura;
+        WritableRaster raster;
+        if (rgb != null) {
+            raster = Raster.createPackedRaster(new DataBufferInt(rgb, tamanho), largura, altura, passo,
+                    MASCARAS_RGB, null);
+            return new BufferedImage(MODELO_RGB, raster, false, null);
+        }
+        raster = Raster.createInterleavedRaster(new DataBufferByte(cinza, tamanho), largura, altura, passo, 1,
+                new int[]{0}, null);
+        return new BufferedImage(MODELO_CINZA, raster, false, null);
+    }
+
+    // buffer que escreve diretamente no raster de uma imagem TYPE_INT_RGB ou TYPE_BYTE_GRAY
+    public static BufferImagem envolverImagem(BufferedImage imagem) {
+        Raster raster = imagem.getRaster();
+        int largura = imagem.getWidth();
+        int altura = imagem.getHeight();
+        switch (imagem.getType()) {
+            case BufferedImage.TYPE_INT_RGB -> {
+                SinglePixelPackedSampleModel modelo = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+                if (dataBuffer.getOffset() == 0 && deslocamento(raster, modelo.getScanlineStride(), 1) == 0) {
+                    return envolverRGB(largura, altura, modelo.getScanlineStride(), dataBuffer.getData());
+                }
+            }
+            case BufferedImage.TYPE_BYTE_GRAY -> {
+                ComponentSampleModel modelo = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+                if (dataBuffer.getOffset() == 0 && deslocamento(raster, modelo.getScanlineStride(), 1) == 0
+                        && modelo.getPixelStride() == 1) {
+                    return envolverCinza(largura, altura, modelo.getScanlineStride(), dataBuffer.getData());
+                }
+            }
+            default -> {
+            }
+        }
+        throw new IllegalArgumentException("Imagem sem layout compatível com BufferImagem: tipo " + imagem.getType());
+    }
+
+    // novo buffer com as mesmas dimensões e canais
+    public BufferImagem criarSemelhante() {
+        if (isJanela()) {
+            return criarJanela(largura, altura, primeiraLinha, fimLinhas, isCinza());
+        }
+        return isCinza() ? criarCinza(largura, altura) : criarRGB(largura, altura);
+    }
+
+    public int getLargura() {
+        return largura;
+    }
+
+    public int getAltura() {
+        return altura;
+    }
+
+    public int getPasso() {
+        return passo;
+    }
+
+    public int getCanais() {
+        return canais;
+    }
+
+    public boolean isCinza() {
+        return canais == CANAIS_CINZA;
+    }
+
+    public int[] getDadosRGB() {
+        return rgb;
+    }
+
+    public byte[] getDadosCinza() {
+        return cinza;
+    }
+
+    public boolean isJanela() {
+        return primeiraLinha != 0 || fimLinhas != altura;
+    }
+
+    public int getPrimeiraLinha() {
+        return primeiraLinha;
+    }
+
+    public int getFimLinhas() {
+        return fimLinhas;
+    }
+
+    // as linhas da janela como um buffer comum, com a linha 0 sendo a primeira linha guardada
+    public BufferImagem semJanela() {
+        return new BufferImagem(largura, fimLinhas - primeiraLinha, passo, rgb, cinza);
+    }
+
+    public int indice(int x, int y) {
+        return (y - primeiraLinha) * passo + x;
+    }
+
+    // pixel no formato 0x00RRGGBB, replicando o canal em imagens de cinza
+    public int getRGB(int x, int y) {
+        int i = indice(x, y);
+        if (rgb != null) {
+            return rgb[i];
+        }
+        int v = cinza[i] & 0xff;
+        return empacotar(v, v, v);
+    }
+
+    public void setRGB(int x, int y, int pixel) {
+        int i = indice(x, y);
+        if (rgb != null) {
+            rgb[i] = pixel & 0xffffff;
+        } else {
+            cinza[i] = (byte) media(pixel);
+        }
+    }
+
+    // valor do canal (0 = vermelho, 1 = verde, 2 = azul)
+    public int getCanal(int x, int y, int canal) {
+        int i = indice(x, y);
+        if (rgb == null) {
+            return cinza[i] & 0xff;
+        }
+        return (rgb[i] >> (16 - 8 * canal)) & 0xff;
+    }
+
+    // buffer colorido equivalente; devolve o próprio buffer quando já é RGB
+    public BufferImagem comoRGB() {
+        if (rgb != null) {
+            return this;
+        }
+        exigirImagemInteira();
+        BufferImagem novo = criarRGB(largura, altura);
+        int[] destino = novo.rgb;
+        for (int y = 0; y < altura; y++) {
+            int origem = y * passo;
+            int saida = y * largura;
+            for (int x = 0; x < largura; x++) {
+                int v = cinza[origem + x] & 0xff;
+                destino[saida + x] = empacotar(v, v, v);
+            }
+        }
+        return novo;
+    }
+
+    public BufferImagem copiar() {
+        exigirImagemInteira();
+        BufferImagem novo = criarSemelhante();
+        for (int y = 0; y < altura; y++) {
+            if (rgb != null) {
+                System.arraycopy(rgb, y * passo, novo.rgb, y * largura, largura);
+            } else {
+                System.arraycopy(cinza, y * passo, novo.cinza, y * largura, largura);
+            }
+        }
+        return novo;
+    }
+
+    private void exigirImagemInteira() {
+        if (isJanela()) {
+            throw new IllegalStateException("Operação indisponível para uma janela de linhas; use semJanela().");
+        }
+    }
+
+    public static int vermelho(int pixel) {
+        return (pixel >> 16) & 0xff;
+    }
+
+    public static int verde(int pixel) {
+        return (pixel >> 8) & 0xff;
+    }
+
+    public static int azul(int pixel) {
+        return pixel & 0xff;
+    }
+
+    // (r + g + b) / 3, consultado numa tabela indexada pela soma dos canais
+    public static int media(int pixel) {
+        return TERCOS[vermelho(pixel) + verde(pixel) + azul(pixel)];
+    }
+
+    public static int empacotar(int r, int g, int b) {
+        return (r << 16) | (g << 8) | b;
+    }
+}
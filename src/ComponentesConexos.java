@@ -0,0 +1,365 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Rotulação dos componentes conexos de pixels pretos de uma MascaraBinaria,
+ * com as medidas de cada objeto: área, retângulo envolvente, centroide e
+ * orientação.
+ *
+ * A rotulação trabalha sobre trechos contínuos de cada linha, lidos direto das
+ * palavras da máscara, e junta os trechos que se tocam em linhas vizinhas com
+ * union-find. Cada faixa do ExecutorFaixas une só os seus próprios trechos; as
+ * junções entre faixas são feitas no fim, uma linha por faixa. As medidas saem
+ * de uma passada pelos trechos, por fórmulas fechadas, então o custo é linear
+ * no número de trechos e não no de pixels.
+ */
+public final class ComponentesConexos {
+
+    public enum Vizinhanca {
+        QUATRO, OITO
+    }
+
+    public static final class Componente {
+
+        private final int rotulo;
+        private final long area;
+        private final int xMinimo;
+        private final int yMinimo;
+        private final int xMaximo;
+        private final int yMaximo;
+        private final double centroX;
+        private final double centroY;
+        private final double orientacao;
+        private final double eixoMaior;
+        private final double eixoMenor;
+
+        private Componente(int rotulo, long area, int xMinimo, int yMinimo, int xMaximo, int yMaximo, long somaX,
+                long somaY, long somaXX, long somaYY, long somaXY) {
+            this.rotulo = rotulo;
+            this.area = area;
+            this.xMinimo = xMinimo;
+            this.yMinimo = yMinimo;
+            this.xMaximo = xMaximo;
+            this.yMaximo = yMaximo;
+            this.centroX = somaX / (double) area;
+            this.centroY = somaY / (double) area;
+            // momentos centrais de segunda ordem
+            double mxx = somaXX / (double) area - centroX * centroX;
+            double myy = somaYY / (double) area - centroY * centroY;
+            double mxy = somaXY / (double) area - centroX * centroY;
+            this.orientacao = 0.5 * Math.atan2(2 * mxy, mxx - myy);
+            double meio = (mxx + myy) / 2;
+            double raiz = Math.sqrt((mxx - myy) * (mxx - myy) / 4 + mxy * mxy);
+            this.eixoMaior = 4 * Math.sqrt(meio + raiz);
+            this.eixoMenor = 4 * Math.sqrt(Math.max(0, meio - raiz));
+        }
+
+        // de 1 até a quantidade de componentes, na ordem do primeiro pixel (linha a linha)
+        public int getRotulo() {
+            return rotulo;
+        }
+
+        public long getArea() {
+            return area;
+        }
+
+        // retângulo envolvente, com os extremos inclusivos
+        public int getXMinimo() {
+            return xMinimo;
+        }
+
+        public int getYMinimo() {
+            return yMinimo;
+        }
+
+        public int getXMaximo() {
+            return xMaximo;
+        }
+
+        public int getYMaximo() {
+            return yMaximo;
+        }
+
+        public int getLargura() {
+            return xMaximo - xMinimo + 1;
+        }
+
+        public int getAltura() {
+            return yMaximo - yMinimo + 1;
+        }
+
+        public double getCentroX() {
+            return centroX;
+        }
+
+        public double getCentroY() {
+            return centroY;
+        }
+
+        // ângulo do eixo maior com o eixo x, em radianos de -π/2 a π/2; positivo no sentido de y (para baixo)
+        public double getOrientacao() {
+            return orientacao;
+        }
+
+        // eixos da elipse com os mesmos momentos de segunda ordem
+        public double getEixoMaior() {
+            return eixoMaior;
+        }
+
+        public double getEixoMenor() {
+            return eixoMenor;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Componente %d: área %d, caixa (%d, %d)-(%d, %d), centro (%.1f, %.1f), %.1f°",
+                    rotulo, area, xMinimo, yMinimo, xMaximo, yMaximo, centroX, centroY, Math.toDegrees(orientacao));
+        }
+    }
+
+    private final int largura;
+    private final int altura;
+    // trechos da linha y: [primeiroTrecho[y], primeiroTrecho[y + 1])
+    private final int[] primeiroTrecho;
+    // colunas de cada trecho, com o fim exclusivo
+    private final int[] inicios;
+    private final int[] fins;
+    private final int[] rotulos;
+    private final List<Componente> componentes;
+
+    private ComponentesConexos(int largura, int altura, int[] primeiroTrecho, int[] inicios, int[] fins,
+            int[] rotulos, List<Componente> componentes) {
+        this.largura = largura;
+        this.altura = altura;
+        this.primeiroTrecho = primeiroTrecho;
+        this.inicios = inicios;
+        this.fins = fins;
+        this.rotulos = rotulos;
+        this.componentes = componentes;
+    }
+
+    public static ComponentesConexos rotular(MascaraBinaria mascara, Vizinhanca vizinhanca) {
+        int largura = mascara.getLargura();
+        int altura = mascara.getAltura();
+        // com vizinhança 8, trechos de linhas vizinhas que só se tocam na diagonal também se unem
+        int folga = vizinhanca == Vizinhanca.OITO ? 1 : 0;
+
+        int[] primeiroTrecho = new int[altura + 1];
+        if (largura == 0 || altura == 0) {
+            return new ComponentesConexos(largura, altura, primeiroTrecho, new int[0], new int[0], new int[0],
+                    List.of());
+        }
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                primeiroTrecho[y + 1] = mascara.contarTrechos(y);
+            }
+        });
+        for (int y = 0; y < altura; y++) {
+            primeiroTrecho[y + 1] += primeiroTrecho[y];
+        }
+
+        int quantidadeTrechos = primeiroTrecho[altura];
+        int[] inicios = new int[quantidadeTrechos];
+        int[] fins = new int[quantidadeTrechos];
+        int[] pai = new int[quantidadeTrechos];
+        boolean[] inicioFaixa = new boolean[altura];
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            inicioFaixa[inicio] = true;
+            for (int y = inicio; y < fim; y++) {
+                int t = primeiroTrecho[y];
+                int x = mascara.proximoPreto(0, y);
+                while (x < largura) {
+                    int f = mascara.proximoBranco(x, y);
+                    inicios[t] = x;
+                    fins[t] = f;
+                    pai[t] = t;
+                    t++;
+                    x = mascara.proximoPreto(f, y);
+                }
+                // só trechos desta faixa: as árvores de faixas diferentes não se misturam até o fim
+                if (y > inicio) {
+                    unirLinhas(pai, inicios, fins, primeiroTrecho, y, folga);
+                }
+            }
+        });
+        for (int y = 1; y < altura; y++) {
+            if (inicioFaixa[y]) {
+                unirLinhas(pai, inicios, fins, primeiroTrecho, y, folga);
+            }
+        }
+
+        // a raiz é sempre o menor trecho do componente, então aparece antes dos demais
+        int[] rotulos = new int[quantidadeTrechos];
+        int quantidade = 0;
+        for (int t = 0; t < quantidadeTrechos; t++) {
+            int raiz = encontrar(pai, t);
+            rotulos[t] = raiz == t ? ++quantidade : rotulos[raiz];
+        }
+        return new ComponentesConexos(largura, altura, primeiroTrecho, inicios, fins, rotulos,
+                medir(quantidade, primeiroTrecho, inicios, fins, rotulos, altura));
+    }
+
+    // une os trechos da linha y com os da linha anterior que os tocam, percorrendo as duas em ordem
+    private static void unirLinhas(int[] pai, int[] inicios, int[] fins, int[] primeiroTrecho, int y, int folga) {
+        int a = primeiroTrecho[y - 1];
+        int fimA = primeiroTrecho[y];
+        int b = fimA;
+        int fimB = primeiroTrecho[y + 1];
+        while (a < fimA && b < fimB) {
+            if (inicios[b] < fins[a] + folga && inicios[a] < fins[b] + folga) {
+                unir(pai, a, b);
+            }
+            // o trecho que termina antes não toca nenhum dos seguintes da outra linha
+            if (fins[a] < fins[b]) {
+                a++;
+            } else {
+                b++;
+            }
+        }
+    }
+
+    private static int encontrar(int[] pai, int t) {
+        while (pai[t] != t) {
+            pai[t] = pai[pai[t]];
+            t = pai[t];
+        }
+        return t;
+    }
+
+    private static void unir(int[] pai, int a, int b) {
+        int raizA = encontrar(pai, a);
+        int raizB = encontrar(pai, b);
+        if (raizA < raizB) {
+            pai[raizB] = raizA;
+        } else if (raizB < raizA) {
+            pai[raizA] = raizB;
+        }
+    }
+
+    private static List<Componente> medir(int quantidade, int[] primeiroTrecho, int[] inicios, int[] fins,
+            int[] rotulos, int altura) {
+        long[] areas = new long[quantidade + 1];
+        int[] xMinimos = new int[quantidade + 1];
+        int[] yMinimos = new int[quantidade + 1];
+        int[] xMaximos = new int[quantidade + 1];
+        int[] yMaximos = new int[quantidade + 1];
+        long[] somasX = new long[quantidade + 1];
+        long[] somasY = new long[quantidade + 1];
+        long[] somasXX = new long[quantidade + 1];
+        long[] somasYY = new long[quantidade + 1];
+        long[] somasXY = new long[quantidade + 1];
+        for (int y = 0; y < altura; y++) {
+            for (int t = primeiroTrecho[y]; t < primeiroTrecho[y + 1]; t++) {
+                int c = rotulos[t];
+                int primeiro = inicios[t];
+                int ultimo = fins[t] - 1;
+                long n = ultimo - primeiro + 1;
+                // somas de x e de x² sobre o trecho, por progressão
+                long somaX = n * (primeiro + ultimo) / 2;
+                long somaXX = somaQuadrados(ultimo) - somaQuadrados(primeiro - 1);
+                if (areas[c] == 0) {
+                    xMinimos[c] = primeiro;
+                    yMinimos[c] = y;
+                    xMaximos[c] = ultimo;
+                } else {
+                    xMinimos[c] = Math.min(xMinimos[c], primeiro);
+                    xMaximos[c] = Math.max(xMaximos[c], ultimo);
+                }
+                yMaximos[c] = y;
+                areas[c] += n;
+                somasX[c] += somaX;
+                somasY[c] += y * n;
+                somasXX[c] += somaXX;
+                somasYY[c] += (long) y * y * n;
+                somasXY[c] += y * somaX;
+            }
+        }
+        List<Componente> componentes = new ArrayList<>(quantidade);
+        for (int c = 1; c <= quantidade; c++) {
+            componentes.add(new Componente(c, areas[c], xMinimos[c], yMinimos[c], xMaximos[c], yMaximos[c],
+                    somasX[c], somasY[c], somasXX[c], somasYY[c], somasXY[c]));
+        }
+        return Collections.unmodifiableList(componentes);
+    }
+
+    // 0² + 1² + ... + k²
+    private static long somaQuadrados(long k) {
+        return k * (k + 1) * (2 * k + 1) / 6;
+    }
+
+    public int getLargura() {
+        return largura;
+    }
+
+    public int getAltura() {
+        return altura;
+    }
+
+    public int getQuantidade() {
+        return componentes.size();
+    }
+
+    // na ordem dos rótulos: o componente de rótulo r está na posição r - 1
+    public List<Componente> getComponentes() {
+        return componentes;
+    }
+
+    public Componente getComponente(int rotulo) {
+        return componentes.get(rotulo - 1);
+    }
+
+    // o de maior área (o primeiro, em empate), ou null se não há pixels pretos
+    public Componente maior() {
+        Componente maior = null;
+        for (Componente componente : componentes) {
+            if (maior == null || componente.area > maior.area) {
+                maior = componente;
+            }
+        }
+        return maior;
+    }
+
+    // rótulo do pixel, ou 0 se ele é branco
+    public int rotulo(int x, int y) {
+        int a = primeiroTrecho[y];
+        int b = primeiroTrecho[y + 1] - 1;
+        while (a <= b) {
+            int meio = (a + b) >>> 1;
+            if (fins[meio] <= x) {
+                a = meio + 1;
+            } else if (inicios[meio] > x) {
+                b = meio - 1;
+            } else {
+                return rotulos[meio];
+            }
+        }
+        return 0;
+    }
+
+    // imagem RGB com cada pixel na cor do seu rótulo (0x00RRGGBB); cor(0) é o fundo
+    public BufferImagem pintar(IntUnaryOperator cor) {
+        BufferImagem resultado = BufferImagem.criarRGB(largura, altura);
+        int[] pixels = resultado.getDadosRGB();
+        int fundo = cor.applyAsInt(0) & 0xffffff;
+        int[] cores = new int[componentes.size() + 1];
+        for (int c = 1; c < cores.length; c++) {
+            cores[c] = cor.applyAsInt(c) & 0xffffff;
+        }
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int linha = resultado.indice(0, y);
+                int x = 0;
+                for (int t = primeiroTrecho[y]; t < primeiroTrecho[y + 1]; t++) {
+                    Arrays.fill(pixels, linha + x, linha + inicios[t], fundo);
+                    Arrays.fill(pixels, linha + inicios[t], linha + fins[t], cores[rotulos[t]]);
+                    x = fins[t];
+                }
+                Arrays.fill(pixels, linha + x, linha + largura, fundo);
+            }
+        });
+        return resultado;
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * Conversão entre RGB e os espaços HSV, HSL, YCbCr e Lab, com um ajuste de
+ * componentes aplicado no meio.
+ *
+ * Ida, ajuste e volta acontecem pixel a pixel numa única passada, em variáveis
+ * locais: nenhuma imagem intermediária de float é criada. O ajuste vira uma
+ * EtapaPonto, que o Pipeline funde com as demais operações de ponto.
+ *
+ * Faixas dos componentes: HSV e HSL com matiz em [0, 360) e os demais em
+ * [0, 1]; YCbCr (JPEG, faixa completa) de 0 a 255; Lab (D65) com L de 0 a 100.
+ * Como no conversor original, matiz fora de [0, 360) resulta em cinza.
+ */
+public final class ConversorCores {
+
+    public enum Espaco {
+        HSV("hsv"), HSL("hsl"), YCBCR("ybr"), LAB("lab");
+
+        // letra de cada componente, usada por RegistroOperacoes
+        private final String letras;
+
+        Espaco(String letras) {
+            this.letras = letras;
+        }
+
+        public String getLetras() {
+            return letras;
+        }
+    }
+
+    // altera no lugar os três componentes de um pixel já convertido
+    @FunctionalInterface
+    public interface Ajuste {
+
+        void ajustar(float[] componentes);
+    }
+
+    // Lab: sRGB -> linear por tabela e linear -> sRGB por uma tabela fina construída com os pontos médios
+    private static final float[] LINEAR = new float[256];
+    private static final int TAMANHO_SRGB = 1 << 16;
+    private static final byte[] SRGB = new byte[TAMANHO_SRGB];
+    private static final float BRANCO_X = 0.95047f;
+    private static final float BRANCO_Z = 1.08883f;
+    private static final float DELTA = 6f / 29;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        int nivel = 0;
+        for (int i = 0; i < TAMANHO_SRGB; i++) {
+            float linear = i / (float) (TAMANHO_SRGB - 1);
+            while (nivel < 255 && linear >= (LINEAR[nivel] + LINEAR[nivel + 1]) / 2) {
+                nivel++;
+            }
+            SRGB[i] = (byte) nivel;
+        }
+    }
+
+    private ConversorCores() {
+    }
+
+    public static Ajuste fixar(int componente, float valor) {
+        return c -> c[componente] = valor;
+    }
+
+    // c = c * fator + soma; na matiz de HSV e HSL o resultado dá a volta no círculo
+    public static Ajuste escalar(Espaco espaco, int componente, float fator, float soma) {
+        if (componente == 0 && (espaco == Espaco.HSV || espaco == Espaco.HSL)) {
+            return c -> c[0] = circular(c[0] * fator + soma);
+        }
+        return c -> c[componente] = c[componente] * fator + soma;
+    }
+
+    // soma graus à matiz de HSV ou HSL, dando a volta no círculo
+    public static Ajuste girarMatiz(float graus) {
+        return c -> c[0] = circular(c[0] + graus);
+    }
+
+    private static float circular(float graus) {
+        float h = graus % 360;
+        // um negativo muito pequeno somado a 360 arredonda para 360
+        return h < 0 && h + 360 < 360 ? h + 360 : Math.max(h, 0);
+    }
+
+    public static BufferImagem ajustar(BufferImagem buffer, Espaco espaco, Ajuste ajuste) {
+        return etapa(espaco, ajuste).aplicar(buffer);
+    }
+
+    public static EtapaPonto etapa(Espaco espaco, Ajuste ajuste) {
+        return EtapaPonto.colorida((linha, quantidade) -> ajustarLinha(linha, quantidade, espaco, ajuste), false);
+    }
+
+    // um laço por espaço, para que as conversões sejam chamadas estáticas dentro do laço
+    static void ajustarLinha(int[] linha, int quantidade, Espaco espaco, Ajuste ajuste) {
+        float[] c = new float[3];
+        switch (espaco) {
+            case HSV:
+                for (int x = 0; x < quantidade; x++) {
+                    rgbParaHSV(linha[x], c);
+                    ajuste.ajustar(c);
+                    linha[x] = hsvParaRGB(c[0], c[1], c[2]);
+                }
+                break;
+            case HSL:
+                for (int x = 0; x < quantidade; x++) {
+                    rgbParaHSL(linha[x], c);
+                    ajuste.ajustar(c);
+                    linha[x] = hslParaRGB(c[0], c[1], c[2]);
+                }
+                break;
+            case YCBCR:
+                for (int x = 0; x < quantidade; x++) {
+                    rgbParaYCbCr(linha[x], c);
+                    ajuste.ajustar(c);
+                    linha[x] = yCbCrParaRGB(c[0], c[1], c[2]);
+                }
+                break;
+            default:
+                for (int x = 0; x < quantidade; x++) {
+                    rgbParaLab(linha[x], c);
+                    ajuste.ajustar(c);
+                    linha[x] = labParaRGB(c[0], c[1], c[2]);
+                }
+        }
+    }
+
+    // as três imagens de ProcessadorImagem.converterHSV (H, S e V no máximo) numa única passada
+    public static BufferImagem[] maximosHSV(BufferImagem buffer) {
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        PoolBuffers pool = PoolBuffers.get();
+        BufferImagem[] resultado = {
+            pool.criarRGB(largura, altura), pool.criarRGB(largura, altura), pool.criarRGB(largura, altura)
+        };
+        int[] h = resultado[0].getDadosRGB();
+        int[] s = resultado[1].getDadosRGB();
+        int[] v = resultado[2].getDadosRGB();
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            float[] c = new float[3];
+            for (int y = inicio; y < fim; y++) {
+                for (int x = 0; x < largura; x++) {
+                    rgbParaHSV(buffer.getRGB(x, y), c);
+                    int i = y * largura + x;
+                    h[i] = hsvParaRGB(360, c[1], c[2]);
+                    s[i] = hsvParaRGB(c[0], 1, c[2]);
+                    v[i] = hsvParaRGB(c[0], c[1], 1);
+                }
+            }
+        });
+        return resultado;
+    }
+
+    static void rgbParaHSV(int pixel, float[] c) {
+        float r = BufferImagem.vermelho(pixel) / 255.0f;
+        float g = BufferImagem.verde(pixel) / 255.0f;
+        float b = BufferImagem.azul(pixel) / 255.0f;
+        float max = Math.max(r, Math.max(g, b));
+        float min = Math.min(r, Math.min(g, b));
+        c[0] = matiz(r, g, b, max, min);
+        c[1] = (max == 0) ? 0 : (max - min) / max;
+        c[2] = max;
+    }
+
+    static int hsvParaRGB(float h, float s, float v) {
+        float croma = v * s;
+        return deSetor(h, croma, v - croma);
+    }
+
+    static void rgbParaHSL(int pixel, float[] c) {
+        float r = BufferImagem.vermelho(pixel) / 255.0f;
+        float g = BufferImagem.verde(pixel) / 255.0f;
+        float b = BufferImagem.azul(pixel) / 255.0f;
+        float max = Math.max(r, Math.max(g, b));
+        float min = Math.min(r, Math.min(g, b));
+        float l = (max + min) / 2;
+        c[0] = matiz(r, g, b, max, min);
+        c[1] = max == min ? 0 : (max - min) / (1 - Math.abs(2 * l - 1));
+        c[2] = l;
+    }
+
+    static int hslParaRGB(float h, float s, float l) {
+        float croma = (1 - Math.abs(2 * l - 1)) * s;
+        return deSetor(h, croma, l - croma / 2);
+    }
+
+    // mesma fórmula do conversor HSV original
+    private static float matiz(float r, float g, float b, float max, float min) {
+        if (max == min) {
+            return 0;
+        }
+        float h;
+        if (max == r) {
+            h = (g - b) / (max - min);
+        } else if (max == g) {
+            h = 2 + (b - r) / (max - min);
+        } else {
+            h = 4 + (r - g) / (max - min);
+        }
+        h *= 60;
+        return h < 0 ? h + 360 : h;
+    }
+
+    // RGB a partir da matiz, do croma e do mínimo m comum aos três canais
+    private static int deSetor(float h, float croma, float m) {
+        float r = 0;
+        float g = 0;
+        float b = 0;
+        if (h >= 0 && h < 360) {
+            float posicao = h / 60;
+            int setor = (int) posicao;
+            // posicao - (setor & ~1) é exatamente posicao % 2, sem o custo do resto de float
+            float x = croma * (1 - Math.abs(posicao - (setor & ~1) - 1));
+            switch (setor) {
+                case 0:
+                    r = croma;
+                    g = x;
+                    break;
+                case 1:
+                    r = x;
+                    g = croma;
+                    break;
+                case 2:
+                    g = croma;
+                    b = x;
+                    break;
+                case 3:
+                    g = x;
+                    b = croma;
+                    break;
+                case 4:
+                    r = x;
+                    b = croma;
+                    break;
+                default:
+                    r = croma;
+                    b = x;
+            }
+        }
+        return BufferImagem.empacotar(limitar(Math.round((r + m) * 255)), limitar(Math.round((g + m) * 255)),
+                limitar(Math.round((b + m) * 255)));
+    }
+
+    static void rgbParaYCbCr(int pixel, float[] c) {
+        int r = BufferImagem.vermelho(pixel);
+        int g = BufferImagem.verde(pixel);
+        int b = BufferImagem.azul(pixel);
+        c[0] = 0.299f * r + 0.587f * g + 0.114f * b;
+        c[1] = 128 - 0.168736f * r - 0.331264f * g + 0.5f * b;
+        c[2] = 128 + 0.5f * r - 0.418688f * g - 0.081312f * b;
+    }
+
+    static int yCbCrParaRGB(float y, float cb, float cr) {
+        float azul = cb - 128;
+        float vermelho = cr - 128;
+        return BufferImagem.empacotar(limitar(Math.round(y + 1.402f * vermelho)),
+                limitar(Math.round(y - 0.344136f * azul - 0.714136f * vermelho)),
+                limitar(Math.round(y + 1.772f * azul)));
+    }
+
+    static void rgbParaLab(int pixel, float[] c) {
+        float r = LINEAR[BufferImagem.vermelho(pixel)];
+        float g = LINEAR[BufferImagem.verde(pixel)];
+        float b = LINEAR[BufferImagem.azul(pixel)];
+        float fx = f((0.4124564f * r + 0.3575761f * g + 0.1804375f * b) / BRANCO_X);
+        float fy = f(0.2126729f * r + 0.7151522f * g + 0.0721750f * b);
+        float fz = f((0.0193339f * r + 0.1191920f * g + 0.9503041f * b) / BRANCO_Z);
+        c[0] = 116 * fy - 16;
+        c[1] = 500 * (fx - fy);
+        c[2] = 200 * (fy - fz);
+    }
+
+    static int labParaRGB(float l, float a, float b) {
+        float fy = (l + 16) / 116;
+        float x = BRANCO_X * fInversa(fy + a / 500);
+        float y = fInversa(fy);
+        float z = BRANCO_Z * fInversa(fy - b / 200);
+        return BufferImagem.empacotar(
+                paraSRGB(3.2404542f * x - 1.5371385f * y - 0.4985314f * z),
+                paraSRGB(-0.9692660f * x + 1.8760108f * y + 0.0415560f * z),
+                paraSRGB(0.0556434f * x - 0.2040259f * y + 1.0572252f * z));
+    }
+
+    private static float f(float t) {
+        return t > DELTA * DELTA * DELTA ? (float) Math.cbrt(t) : t / (3 * DELTA * DELTA) + 4f / 29;
+    }
+
+    private static float fInversa(float t) {
+        return t > DELTA ? t * t * t : 3 * DELTA * DELTA * (t - 4f / 29);
+    }
+
+    private static int paraSRGB(float linear) {
+        if (linear <= 0) {
+            return 0;
+        }
+        if (linear >= 1) {
+            return 255;
+        }
+        return SRGB[(int) (linear * (TAMANHO_SRGB - 1) + 0.5f)] & 0xff;
+    }
+
+    private static int limitar(int valor) {
+        return Math.max(0, Math.min(255, valor));
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Desfoque gaussiano separável: uma passada horizontal seguida de uma vertical,
+ * com kernels 1D em ponto fixo gerados a partir do sigma e guardados em cache.
+ *
+ * As bordas são replicadas fora do laço interno, então o custo por pixel é
+ * O(2 * tamanho do kernel) e não depende de verificações de limite.
+ */
+public final class ConvolucaoGaussiana {
+
+    // pesos somam 1 << BITS_PESO; a passada horizontal guarda 8 bits de fração
+    private static final int BITS_PESO = 14;
+    private static final int BITS_INTERMEDIARIO = 8;
+    private static final int DESLOCAMENTO_HORIZONTAL = BITS_PESO - BITS_INTERMEDIARIO;
+    private static final int DESLOCAMENTO_VERTICAL = BITS_PESO + BITS_INTERMEDIARIO;
+    private static final int ARREDONDAMENTO_HORIZONTAL = 1 << (DESLOCAMENTO_HORIZONTAL - 1);
+    private static final int ARREDONDAMENTO_VERTICAL = 1 << (DESLOCAMENTO_VERTICAL - 1);
+
+    /*
+     * Acima disso os pesos das caudas arredondam para zero em 14 bits e o erro
+     * todo vai para o peso central, que passa a destoar dos vizinhos.
+     */
+    public static final double SIGMA_MAXIMO = 100;
+
+    // kernels guardados; os menos usados saem primeiro
+    private static final int LIMITE_KERNELS = 32;
+    private static final Map<String, int[]> kernels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> maisAntigo) {
+            return size() > LIMITE_KERNELS;
+        }
+    };
+
+    private ConvolucaoGaussiana() {
+    }
+
+    public static int raioPadrao(double sigma) {
+        return Math.max(1, (int) Math.ceil(3 * sigma));
+    }
+
+    public static void validarSigma(double sigma) {
+        if (!(sigma > 0 && sigma <= SIGMA_MAXIMO)) {
+            throw new IllegalArgumentException("O sigma deve ser maior que zero e no máximo " + SIGMA_MAXIMO + ": "
+                    + sigma);
+        }
+    }
+
+    // além da maior dimensão o kernel só pesaria as bordas replicadas; aplicar e etapa usam a mesma regra
+    private static int[] kernelPara(double sigma, int raio, BufferImagem buffer) {
+        return obterKernel(sigma, Math.min(raio, Math.max(1, Math.max(buffer.getLargura(), buffer.getAltura()) - 1)));
+    }
+
+    public static BufferImagem aplicar(BufferImagem buffer, double sigma) {
+        return aplicar(buffer, sigma, raioPadrao(sigma));
+    }
+
+    public static BufferImagem aplicar(BufferImagem buffer, double sigma, int raio) {
+        BufferImagem resultado = PoolBuffers.get().criarSemelhante(buffer);
+        aplicar(buffer, resultado, sigma, raio);
+        return resultado;
+    }
+
+    public static void aplicar(BufferImagem origem, BufferImagem destino, double sigma, int raio) {
+        int[] kernel = kernelPara(sigma, raio, origem);
+        ExecutorFaixas.executar(origem.getLargura(), origem.getAltura(), kernel.length / 2,
+                (inicio, fim) -> aplicarFaixa(origem, destino, kernel, inicio, fim));
+    }
+
+    /*
+     * Etapa de Pipeline equivalente a aplicar(buffer, sigma). O kernel só é
+     * escolhido na faixa, quando a imagem é conhecida; o raio declarado é o
+     * maior possível, que serve de halo para qualquer tamanho.
+     */
+    public static EtapaVizinhanca etapa(double sigma) {
+        validarSigma(sigma);
+        int raio = raioPadrao(sigma);
+        return new EtapaVizinhanca(raio, (origem, destino, inicio, fim) -> aplicarFaixa(origem, destino,
+                kernelPara(sigma, raio, origem), inicio, fim));
+    }
+
+    // kernel 1D normalizado em ponto fixo, com 2 * raio + 1 pesos
+    public static int[] obterKernel(double sigma, int raio) {
+        validarSigma(sigma);
+        if (raio < 1) {
+            throw new IllegalArgumentException("O raio deve ser positivo: " + raio);
+        }
+        synchronized (kernels) {
+            return kernels.computeIfAbsent(sigma + ":" + raio, chave -> gerarKernel(sigma, raio));
+        }
+    }
+
+    private static int[] gerarKernel(double sigma, int raio) {
+        double[] pesos = new double[2 * raio + 1];
+        double soma = 0;
+        for (int i = -raio; i <= raio; i++) {
+            pesos[i + raio] = Math.exp(-(i * i) / (2 * sigma * sigma));
+            soma += pesos[i + raio];
+        }
+
+        int[] kernel = new int[pesos.length];
+        int total = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            kernel[i] = (int) Math.round(pesos[i] / soma * (1 << BITS_PESO));
+            total += kernel[i];
+        }
+        // o erro de arredondamento vai para o peso central para a soma ficar exata
+        kernel[raio] += (1 << BITS_PESO) - total;
+        return kernel;
+    }
+
+    // processa as linhas [inicio, fim) usando as linhas vizinhas da origem como halo
+    static void aplicarFaixa(BufferImagem origem, BufferImagem destino, int[] kernel, int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int raio = kernel.length / 2;
+        int primeira = Math.max(0, inicio - raio);
+        int ultima = Math.min(altura, fim + raio);
+        int linhas = ultima - primeira;
+        int canais = origem.getCanais();
+
+        NucleosPixel nucleos = Nucleos.get();
+        PoolBuffers pool = PoolBuffers.get();
+        try (PoolBuffers.Emprestimo<int[][]> planos = pool.emprestarPlanos(canais, linhas * largura);
+                PoolBuffers.Emprestimo<int[][]> bordas = pool.emprestarPlanos(canais, largura + 2 * raio);
+                PoolBuffers.Emprestimo<int[][]> somas = pool.emprestarPlanos(canais, largura)) {
+            int[][] horizontal = planos.get();
+            int[][] linhaComBorda = bordas.get();
+            int[][] acumulador = somas.get();
+
+            for (int y = primeira; y < ultima; y++) {
+                carregarLinha(origem, y, raio, linhaComBorda);
+                int saida = (y - primeira) * largura;
+                for (int c = 0; c < canais; c++) {
+                    nucleos.convoluirLinha(linhaComBorda[c], kernel, horizontal[c], saida, largura,
+                            ARREDONDAMENTO_HORIZONTAL, DESLOCAMENTO_HORIZONTAL);
+                }
+            }
+
+            for (int y = inicio; y < fim; y++) {
+                for (int c = 0; c < canais; c++) {
+                    int[] soma = acumulador[c];
+                    int[] plano = horizontal[c];
+                    Arrays.fill(soma, 0, largura, ARREDONDAMENTO_VERTICAL);
+                    for (int k = 0; k < kernel.length; k++) {
+                        int linha = Math.min(altura - 1, Math.max(0, y + k - raio)) - primeira;
+                        nucleos.acumularPonderado(soma, plano, linha * largura, kernel[k], largura);
+                    }
+                }
+                escreverLinha(destino, y, acumulador);
+            }
+        }
+    }
+
+    private static void carregarLinha(BufferImagem origem, int y, int raio, int[][] linhaComBorda) {
+        int largura = origem.getLargura();
+        int inicio = origem.indice(0, y);
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            int[] linha = linhaComBorda[0];
+            for (int x = 0; x < largura; x++) {
+                linha[raio + x] = cinza[inicio + x] & 0xff;
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            int[] r = linhaComBorda[0];
+            int[] g = linhaComBorda[1];
+            int[] b = linhaComBorda[2];
+            for (int x = 0; x < largura; x++) {
+                int pixel = pixels[inicio + x];
+                r[raio + x] = BufferImagem.vermelho(pixel);
+                g[raio + x] = BufferImagem.verde(pixel);
+                b[raio + x] = BufferImagem.azul(pixel);
+            }
+        }
+        for (int[] linha : linhaComBorda) {
+            Arrays.fill(linha, 0, raio, linha[raio]);
+            Arrays.fill(linha, raio + largura, largura + 2 * raio, linha[raio + largura - 1]);
+        }
+    }
+
+    private static void escreverLinha(BufferImagem destino, int y, int[][] acumulador) {
+        int largura = destino.getLargura();
+        int inicio = destino.indice(0, y);
+        if (destino.isCinza()) {
+            byte[] cinza = destino.getDadosCinza();
+            int[] v = acumulador[0];
+            for (int x = 0; x < largura; x++) {
+                cinza[inicio + x] = (byte) (v[x] >> DESLOCAMENTO_VERTICAL);
+            }
+        } else {
+            int[] pixels = destino.getDadosRGB();
+            int[] r = acumulador[0];
+            int[] g = acumulador[1];
+            int[] b = acumulador[2];
+            for (int x = 0; x < largura; x++) {
+                pixels[inicio + x] = BufferImagem.empacotar(r[x] >> DESLOCAMENTO_VERTICAL,
+                        g[x] >> DESLOCAMENTO_VERTICAL, b[x] >> DESLOCAMENTO_VERTICAL);
+            }
+        }
+    }
+}
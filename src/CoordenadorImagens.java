@@ -0,0 +1,123 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Junta as imagens escolhidas pelo usuário para operações de várias entradas
+ * (união, interseção, diferença, mescla).
+ *
+ * Cada operação pede N imagens com aguardar() e recebe um CompletableFuture,
+ * então nenhuma thread fica parada esperando. As imagens oferecidas vão para o
+ * pedido mais antigo ainda incompleto; a mesma imagem não entra duas vezes no
+ * mesmo pedido. Fila e pedidos são atualizados sem travas, por CAS.
+ */
+public final class CoordenadorImagens {
+
+    public final class Pedido {
+
+        private final String nome;
+        private final int quantidade;
+        // lista imutável trocada inteira a cada imagem recebida
+        private final AtomicReference<List<BufferedImage>> recebidas = new AtomicReference<>(List.of());
+        private final CompletableFuture<List<BufferedImage>> futuro = new CompletableFuture<>();
+
+        private Pedido(String nome, int quantidade) {
+            this.nome = nome;
+            this.quantidade = quantidade;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public int getQuantidade() {
+            return quantidade;
+        }
+
+        public int getRecebidas() {
+            return recebidas.get().size();
+        }
+
+        public CompletableFuture<List<BufferedImage>> getFuturo() {
+            return futuro;
+        }
+
+        // false se o pedido já está completo ou já tem esta imagem
+        private boolean adicionar(BufferedImage imagem) {
+            while (true) {
+                List<BufferedImage> atuais = recebidas.get();
+                if (futuro.isDone() || atuais.size() == quantidade || contem(atuais, imagem)) {
+                    return false;
+                }
+                List<BufferedImage> novas = new ArrayList<>(atuais);
+                novas.add(imagem);
+                novas = Collections.unmodifiableList(novas);
+                if (recebidas.compareAndSet(atuais, novas)) {
+                    if (novas.size() == quantidade) {
+                        futuro.complete(novas);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        // poucas imagens por pedido: a busca linear por identidade basta
+        private boolean contem(List<BufferedImage> imagens, BufferedImage imagem) {
+            for (BufferedImage existente : imagens) {
+                if (existente == imagem) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Pedido> pendentes = new ConcurrentLinkedQueue<>();
+    private final Runnable aoMudar;
+
+    // aoMudar é chamado, na thread que fez a mudança, sempre que um pedido é criado, recebe uma imagem ou sai
+    public CoordenadorImagens(Runnable aoMudar) {
+        this.aoMudar = aoMudar;
+    }
+
+    public Pedido aguardar(String nome, int quantidade) {
+        if (quantidade < 1) {
+            throw new IllegalArgumentException("Quantidade de imagens inválida: " + quantidade);
+        }
+        Pedido pedido = new Pedido(nome, quantidade);
+        // sai da fila ao terminar, inclusive se quem pediu cancelar o futuro
+        pedido.futuro.whenComplete((imagens, erro) -> {
+            pendentes.remove(pedido);
+            aoMudar.run();
+        });
+        pendentes.add(pedido);
+        aoMudar.run();
+        return pedido;
+    }
+
+    // entrega a imagem ao pedido mais antigo que ainda a aceite; false se nenhum aceitou
+    public boolean oferecer(BufferedImage imagem) {
+        for (Pedido pedido : pendentes) {
+            if (pedido.adicionar(imagem)) {
+                aoMudar.run();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Pedido> getPendentes() {
+        return new ArrayList<>(pendentes);
+    }
+
+    public void cancelarTodos() {
+        for (Pedido pedido : pendentes) {
+            pedido.futuro.completeExceptionally(new CancellationException("Seleção de imagens cancelada."));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operação de ponto: cada pixel de saída depende só do pixel de mesma posição.
+ *
+ * A transformação trabalha sobre uma linha de pixels 0x00RRGGBB, alterada no
+ * lugar, o que permite encadear várias etapas numa única passada pela imagem:
+ * a linha é lida uma vez, passa por todas as etapas enquanto está no cache e é
+ * gravada uma vez. Etapas feitas de TabelaTons consecutivas são compostas numa
+ * única tabela.
+ */
+public final class EtapaPonto implements OperacaoImagem {
+
+    @FunctionalInterface
+    public interface Transformacao {
+
+        // altera os pixels [0, quantidade) da linha
+        void aplicar(int[] linha, int quantidade);
+    }
+
+    // grava direto num buffer de um canal o nível de cinza de cada pixel 0x00RRGGBB
+    @FunctionalInterface
+    public interface ConversaoCinza {
+
+        void converter(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade);
+    }
+
+    private final Transformacao transformacao;
+    private final ConversaoCinza conversaoCinza;
+    private final boolean produzCinza;
+    private final boolean preservaCinza;
+    private final TabelaTons tabela;
+
+    private EtapaPonto(Transformacao transformacao, ConversaoCinza conversaoCinza, boolean produzCinza,
+            boolean preservaCinza, TabelaTons tabela) {
+        this.transformacao = transformacao;
+        this.conversaoCinza = conversaoCinza;
+        this.produzCinza = produzCinza;
+        this.preservaCinza = preservaCinza;
+        this.tabela = tabela;
+    }
+
+    // o resultado sempre tem r == g == b e pode ser guardado num buffer de um canal
+    public static EtapaPonto cinza(Transformacao transformacao, ConversaoCinza conversaoCinza) {
+        return new EtapaPonto(transformacao, conversaoCinza, true, true, null);
+    }
+
+    // resultado colorido; preservaCinza indica se uma entrada cinza continua cinza
+    public static EtapaPonto colorida(Transformacao transformacao, boolean preservaCinza) {
+        return new EtapaPonto(transformacao, null, false, preservaCinza, null);
+    }
+
+    public static EtapaPonto deTabela(TabelaTons tabela) {
+        return new EtapaPonto(tabela::aplicarLinha, tabela.produzCinza() ? tabela::aplicarCinza : null,
+                tabela.produzCinza(), tabela.preservaCinza(), tabela);
+    }
+
+    // a mesma tabela, executada por rotinas equivalentes mais rápidas enquanto não for composta
+    public static EtapaPonto deTabela(TabelaTons tabela, Transformacao equivalente, ConversaoCinza conversaoCinza) {
+        return new EtapaPonto(equivalente, conversaoCinza, tabela.produzCinza(), tabela.preservaCinza(), tabela);
+    }
+
+    // acrescenta a etapa ao grupo, compondo-a com a última quando as duas são tabelas
+    public static void adicionar(List<EtapaPonto> grupo, EtapaPonto etapa) {
+        if (!grupo.isEmpty() && etapa.tabela != null) {
+            EtapaPonto ultima = grupo.get(grupo.size() - 1);
+            TabelaTons composta = ultima.tabela != null ? ultima.tabela.depois(etapa.tabela) : null;
+            if (composta != null) {
+                grupo.set(grupo.size() - 1, deTabela(composta));
+                return;
+            }
+        }
+        grupo.add(etapa);
+    }
+
+    @Override
+    public BufferImagem aplicar(BufferImagem buffer) {
+        return aplicar(buffer, this);
+    }
+
+    // todas as etapas numa passada, devolvendo um buffer novo
+    public static BufferImagem aplicar(BufferImagem buffer, EtapaPonto... etapas) {
+        List<EtapaPonto> grupo = new ArrayList<>();
+        for (EtapaPonto etapa : etapas) {
+            adicionar(grupo, etapa);
+        }
+        EtapaPonto[] fundidas = grupo.toArray(new EtapaPonto[0]);
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        BufferImagem resultado = PoolBuffers.get().criar(largura, altura, saiCinza(buffer.isCinza(), fundidas));
+        ExecutorFaixas.executar(largura, altura,
+                (inicio, fim) -> aplicarFaixa(buffer, resultado, fundidas, inicio, fim));
+        return resultado;
+    }
+
+    // se a saída das etapas, aplicadas a uma entrada cinza ou não, é sempre cinza
+    public static boolean saiCinza(boolean entradaCinza, EtapaPonto... etapas) {
+        boolean cinza = entradaCinza;
+        for (EtapaPonto etapa : etapas) {
+            cinza = etapa.produzCinza || (cinza && etapa.preservaCinza);
+        }
+        return cinza;
+    }
+
+    // aplica as etapas às linhas [inicio, fim); origem e destino podem ser o mesmo buffer
+    public static void aplicarFaixa(BufferImagem origem, BufferImagem destino, EtapaPonto[] etapas, int inicio,
+            int fim) {
+        int largura = origem.getLargura();
+        // uma conversão direta de RGB para cinza dispensa a linha intermediária
+        if (etapas.length == 1 && etapas[0].conversaoCinza != null && !origem.isCinza() && destino.isCinza()) {
+            for (int y = inicio; y < fim; y++) {
+                etapas[0].conversaoCinza.converter(origem.getDadosRGB(), origem.indice(0, y),
+                        destino.getDadosCinza(), destino.indice(0, y), largura);
+            }
+            return;
+        }
+        try (PoolBuffers.Emprestimo<int[]> emprestimo = PoolBuffers.get().emprestarInteiros(largura)) {
+            int[] linha = emprestimo.get();
+            for (int y = inicio; y < fim; y++) {
+                lerLinha(origem, y, linha, largura);
+                for (EtapaPonto etapa : etapas) {
+                    etapa.transformacao.aplicar(linha, largura);
+                }
+                escreverLinha(destino, y, linha, largura);
+            }
+        }
+    }
+
+    private static void lerLinha(BufferImagem origem, int y, int[] linha, int largura) {
+        int inicio = origem.indice(0, y);
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            for (int x = 0; x < largura; x++) {
+                linha[x] = (cinza[inicio + x] & 0xff) * 0x010101;
+            }
+        } else {
+            System.arraycopy(origem.getDadosRGB(), inicio, linha, 0, largura);
+        }
+    }
+
+    // num destino cinza os três canais são iguais e basta gravar o azul
+    private static void escreverLinha(BufferImagem destino, int y, int[] linha, int largura) {
+        int inicio = destino.indice(0, y);
+        if (destino.isCinza()) {
+            byte[] cinza = destino.getDadosCinza();
+            for (int x = 0; x < largura; x++) {
+                cinza[inicio + x] = (byte) linha[x];
+            }
+        } else {
+            System.arraycopy(linha, 0, destino.getDadosRGB(), inicio, largura);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Operação de vizinhança que pode ser executada faixa a faixa: cada linha de
+ * saída depende apenas das linhas da origem até "raio" de distância.
+ *
+ * O resultado tem a mesma quantidade de canais da origem. A faixa deve gravar
+ * todos os pixels das suas linhas, porque o destino pode ser um buffer reaproveitado.
+ */
+public final class EtapaVizinhanca implements OperacaoImagem {
+
+    @FunctionalInterface
+    public interface Faixa {
+
+        // grava no destino as linhas [inicio, fim), lendo a origem
+        void processar(BufferImagem origem, BufferImagem destino, int inicio, int fim);
+    }
+
+    private final int raio;
+    private final Faixa faixa;
+
+    public EtapaVizinhanca(int raio, Faixa faixa) {
+        if (raio < 0) {
+            throw new IllegalArgumentException("Raio inválido: " + raio);
+        }
+        this.raio = raio;
+        this.faixa = faixa;
+    }
+
+    public int getRaio() {
+        return raio;
+    }
+
+    public void processarFaixa(BufferImagem origem, BufferImagem destino, int inicio, int fim) {
+        faixa.processar(origem, destino, inicio, fim);
+    }
+
+    @Override
+    public BufferImagem aplicar(BufferImagem buffer) {
+        BufferImagem resultado = PoolBuffers.get().criarSemelhante(buffer);
+        aplicar(buffer, resultado);
+        return resultado;
+    }
+
+    public void aplicar(BufferImagem origem, BufferImagem destino) {
+        ExecutorFaixas.executar(origem.getLargura(), origem.getAltura(), raio,
+                (inicio, fim) -> faixa.processar(origem, destino, inicio, fim));
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Divide a imagem em faixas de linhas e processa as faixas em paralelo num
+ * ForkJoinPool próprio.
+ *
+ * Filtros de vizinhança informam o halo (quantas linhas acima e abaixo da
+ * faixa eles leem) para que as faixas não fiquem tão finas que o trabalho
+ * repetido nas bordas domine o custo.
+ *
+ * Uma thread pode registrar um Acompanhamento (como faz ExecutorOperacoes):
+ * cada chamada a executar feita por ela conta como uma etapa, cada faixa
+ * concluída é informada e um pedido de cancelamento interrompe o trabalho na
+ * próxima faixa com CancellationException. Com acompanhamento, mesmo imagens
+ * processadas numa única thread são divididas em faixas.
+ */
+public final class ExecutorFaixas {
+
+    @FunctionalInterface
+    public interface OperacaoFaixa {
+
+        // processa as linhas [linhaInicio, linhaFim)
+        void processar(int linhaInicio, int linhaFim);
+    }
+
+    // chamado pelas threads das faixas, então precisa ser seguro entre threads
+    public interface Acompanhamento {
+
+        void iniciarEtapa(int linhas);
+
+        void faixaConcluida(int linhas);
+
+        boolean isCancelado();
+    }
+
+    public static final String PROPRIEDADE_PARALELISMO = "imageifmg.paralelismo";
+
+    private static final int LINHAS_MINIMAS = 16;
+    private static final int FAIXAS_POR_THREAD = 4;
+    private static final long PIXELS_MINIMOS_PARALELO = 64 * 1024;
+    // faixas por etapa quando há acompanhamento e a etapa seria feita de uma vez
+    private static final int FAIXAS_ACOMPANHADAS = 32;
+
+    private static final ThreadLocal<Acompanhamento> acompanhamento = new ThreadLocal<>();
+
+    private static volatile PoolFaixas pool = criarPool(Integer.getInteger(PROPRIEDADE_PARALELISMO,
+            Runtime.getRuntime().availableProcessors()));
+
+    private ExecutorFaixas() {
+    }
+
+    public static int getParalelismo() {
+        return pool.forkJoin.getParallelism();
+    }
+
+    public static synchronized void setParalelismo(int paralelismo) {
+        if (paralelismo == getParalelismo()) {
+            return;
+        }
+        PoolFaixas antigo = pool;
+        pool = criarPool(paralelismo);
+        antigo.aposentar();
+    }
+
+    public static void executar(int largura, int altura, OperacaoFaixa operacao) {
+        executar(largura, altura, 0, operacao);
+    }
+
+    // acompanhamento das chamadas feitas pela thread atual; null remove
+    public static void setAcompanhamento(Acompanhamento novo) {
+        if (novo == null) {
+            acompanhamento.remove();
+        } else {
+            acompanhamento.set(novo);
+        }
+    }
+
+    public static void executar(int largura, int altura, int halo, OperacaoFaixa operacao) {
+        Acompanhamento atualAcompanhamento = acompanhamento.get();
+        if (atualAcompanhamento != null) {
+            executarAcompanhado(largura, altura, halo, operacao, atualAcompanhamento);
+            return;
+        }
+        int paralelismo = getParalelismo();
+        if (paralelismo == 1 || (long) largura * altura < PIXELS_MINIMOS_PARALELO) {
+            operacao.processar(0, altura);
+            return;
+        }
+        int linhasPorFaixa = Math.max(Math.max(LINHAS_MINIMAS, 4 * halo),
+                altura / (paralelismo * FAIXAS_POR_THREAD));
+        if (linhasPorFaixa >= altura) {
+            operacao.processar(0, altura);
+            return;
+        }
+        invocar(new TarefaFaixa(operacao, 0, altura, linhasPorFaixa));
+    }
+
+    private static void executarAcompanhado(int largura, int altura, int halo, OperacaoFaixa operacao,
+            Acompanhamento acompanhamento) {
+        acompanhamento.iniciarEtapa(altura);
+        OperacaoFaixa acompanhada = (inicio, fim) -> {
+            if (acompanhamento.isCancelado()) {
+                throw new CancellationException("Operação cancelada.");
+            }
+            operacao.processar(inicio, fim);
+            acompanhamento.faixaConcluida(fim - inicio);
+        };
+        int paralelismo = getParalelismo();
+        int minimo = Math.max(LINHAS_MINIMAS, 4 * halo);
+        if (paralelismo > 1 && (long) largura * altura >= PIXELS_MINIMOS_PARALELO) {
+            int linhasPorFaixa = Math.max(minimo, altura / (paralelismo * FAIXAS_POR_THREAD));
+            if (linhasPorFaixa < altura) {
+                invocar(new TarefaFaixa(acompanhada, 0, altura, linhasPorFaixa));
+                return;
+            }
+        }
+        // numa thread só, em faixas sucessivas para dar notícia e poder parar no meio
+        int linhasPorFaixa = (long) largura * altura < PIXELS_MINIMOS_PARALELO ? altura
+                : Math.max(minimo, (altura + FAIXAS_ACOMPANHADAS - 1) / FAIXAS_ACOMPANHADAS);
+        for (int inicio = 0; inicio < altura; inicio += linhasPorFaixa) {
+            acompanhada.processar(inicio, Math.min(altura, inicio + linhasPorFaixa));
+        }
+    }
+
+    // usa o pool atual; um pool trocado por setParalelismo no meio continua aceitando as faixas até o fim
+    private static void invocar(TarefaFaixa tarefa) {
+        PoolFaixas atual;
+        while (true) {
+            atual = pool;
+            atual.usos.incrementAndGet();
+            if (atual == pool) {
+                break;
+            }
+            atual.liberar();
+        }
+        try {
+            atual.forkJoin.invoke(tarefa);
+        } finally {
+            atual.liberar();
+        }
+    }
+
+    private static PoolFaixas criarPool(int paralelismo) {
+        if (paralelismo < 1) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero: " + paralelismo);
+        }
+        return new PoolFaixas(new ForkJoinPool(paralelismo));
+    }
+
+    // ForkJoinPool com a contagem de chamadas em andamento, encerrado quando aposentado e sem uso
+    private static final class PoolFaixas {
+
+        private final ForkJoinPool forkJoin;
+        private final AtomicInteger usos = new AtomicInteger();
+        private volatile boolean aposentado;
+
+        PoolFaixas(ForkJoinPool forkJoin) {
+            this.forkJoin = forkJoin;
+        }
+
+        void aposentar() {
+            aposentado = true;
+            if (usos.get() == 0) {
+                forkJoin.shutdown();
+            }
+        }
+
+        void liberar() {
+            if (usos.decrementAndGet() == 0 && aposentado) {
+                forkJoin.shutdown();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TarefaFaixa extends RecursiveAction {
+
+        private final OperacaoFaixa operacao;
+        private final int inicio;
+        private final int fim;
+        private final int linhasPorFaixa;
+
+        TarefaFaixa(OperacaoFaixa operacao, int inicio, int fim, int linhasPorFaixa) {
+            this.operacao = operacao;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.linhasPorFaixa = linhasPorFaixa;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio <= linhasPorFaixa) {
+                operacao.processar(inicio, fim);
+                return;
+            }
+            int meio = (inicio + fim) >>> 1;
+            invokeAll(new TarefaFaixa(operacao, inicio, meio, linhasPorFaixa),
+                    new TarefaFaixa(operacao, meio, fim, linhasPorFaixa));
+        }
+    }
+}
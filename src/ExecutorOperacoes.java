@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Executa operações demoradas em poucas threads próprias, fora da thread que
+ * as pede (na interface, a EDT do Swing).
+ *
+ * Cada operação vira uma Tarefa que registra um acompanhamento no
+ * ExecutorFaixas: o progresso é atualizado a cada faixa concluída e
+ * cancelar() interrompe o trabalho na faixa seguinte. Progresso, resultado e
+ * erro são entregues pelo Executor de entrega (SwingUtilities::invokeLater na
+ * interface), com no máximo uma notícia de progresso pendente por tarefa.
+ *
+ * Um pedido com a mesma chave de uma tarefa que ainda não terminou não é
+ * executado de novo: quem pediu recebe a tarefa em andamento.
+ */
+public final class ExecutorOperacoes {
+
+    public enum Estado {
+        ESPERANDO, EXECUTANDO, CONCLUIDA, FALHOU, CANCELADA
+    }
+
+    // recebe, pelo Executor de entrega, cada mudança de estado ou de progresso
+    @FunctionalInterface
+    public interface Ouvinte {
+
+        void tarefaAtualizada(Tarefa<?> tarefa);
+    }
+
+    private final ExecutorService trabalhadores;
+    private final Executor entrega;
+    private final Ouvinte ouvinte;
+    // tarefas esperando ou executando, em ordem de pedido
+    private final Map<Object, Tarefa<?>> ativas = new LinkedHashMap<>();
+
+    public ExecutorOperacoes(int quantidadeTrabalhadores, Executor entrega, Ouvinte ouvinte) {
+        if (quantidadeTrabalhadores < 1) {
+            throw new IllegalArgumentException("Quantidade de trabalhadores inválida: " + quantidadeTrabalhadores);
+        }
+        AtomicInteger numero = new AtomicInteger();
+        this.trabalhadores = Executors.newFixedThreadPool(quantidadeTrabalhadores, tarefa -> {
+            Thread thread = new Thread(tarefa, "imageifmg-operacao-" + numero.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.entrega = entrega;
+        this.ouvinte = ouvinte;
+    }
+
+    /*
+     * trabalho roda numa thread do executor; aoConcluir recebe o resultado e
+     * aoFalhar a exceção, ambos pelo Executor de entrega. Uma tarefa cancelada
+     * não chama nenhum dos dois.
+     */
+    public <T> Tarefa<?> executar(Object chave, String nome, Callable<T> trabalho, Consumer<? super T> aoConcluir,
+            Consumer<? super Exception> aoFalhar) {
+        Tarefa<T> tarefa;
+        synchronized (ativas) {
+            Tarefa<?> existente = ativas.get(chave);
+            if (existente != null) {
+                return existente;
+            }
+            tarefa = new Tarefa<>(chave, nome, trabalho, aoConcluir, aoFalhar);
+            ativas.put(chave, tarefa);
+        }
+        tarefa.futuro = trabalhadores.submit(tarefa::executar);
+        avisar(tarefa);
+        return tarefa;
+    }
+
+    public List<Tarefa<?>> getAtivas() {
+        synchronized (ativas) {
+            return new ArrayList<>(ativas.values());
+        }
+    }
+
+    public void cancelarTodas() {
+        for (Tarefa<?> tarefa : getAtivas()) {
+            tarefa.cancelar();
+        }
+    }
+
+    // cancela o que estiver ativo e não aceita novas tarefas
+    public void encerrar() {
+        cancelarTodas();
+        trabalhadores.shutdown();
+    }
+
+    private void avisar(Tarefa<?> tarefa) {
+        if (ouvinte != null) {
+            entrega.execute(() -> ouvinte.tarefaAtualizada(tarefa));
+        }
+    }
+
+    public final class Tarefa<T> implements ExecutorFaixas.Acompanhamento {
+
+        private final Object chave;
+        private final String nome;
+        private final Callable<T> trabalho;
+        private final Consumer<? super T> aoConcluir;
+        private final Consumer<? super Exception> aoFalhar;
+        private final AtomicBoolean progressoPendente = new AtomicBoolean();
+        private final AtomicInteger linhasConcluidas = new AtomicInteger();
+        private volatile Estado estado = Estado.ESPERANDO;
+        private volatile boolean cancelada;
+        private volatile int etapa;
+        private volatile int linhasEtapa;
+        private volatile Future<?> futuro;
+
+        private Tarefa(Object chave, String nome, Callable<T> trabalho, Consumer<? super T> aoConcluir,
+                Consumer<? super Exception> aoFalhar) {
+            this.chave = chave;
+            this.nome = nome;
+            this.trabalho = trabalho;
+            this.aoConcluir = aoConcluir;
+            this.aoFalhar = aoFalhar;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        public boolean isAtiva() {
+            return estado == Estado.ESPERANDO || estado == Estado.EXECUTANDO;
+        }
+
+        // número da etapa atual (cada chamada ao ExecutorFaixas), a partir de 1; 0 antes de começar
+        public int getEtapa() {
+            return etapa;
+        }
+
+        // fração concluída da etapa atual, de 0 a 1
+        public double getProgresso() {
+            int linhas = linhasEtapa;
+            return linhas == 0 ? 0 : Math.min(1, linhasConcluidas.get() / (double) linhas);
+        }
+
+        // em execução, para na próxima faixa; se ainda não começou, sai da fila
+        public void cancelar() {
+            synchronized (ativas) {
+                cancelada = true;
+                if (estado != Estado.ESPERANDO) {
+                    return;
+                }
+            }
+            Future<?> atual = futuro;
+            if (atual != null) {
+                atual.cancel(false);
+            }
+            terminar(Estado.CANCELADA, null, null);
+        }
+
+        @Override
+        public boolean isCancelado() {
+            return cancelada;
+        }
+
+        @Override
+        public void iniciarEtapa(int linhas) {
+            linhasConcluidas.set(0);
+            linhasEtapa = linhas;
+            etapa++;
+            publicarProgresso();
+        }
+
+        @Override
+        public void faixaConcluida(int linhas) {
+            linhasConcluidas.addAndGet(linhas);
+            publicarProgresso();
+        }
+
+        private void publicarProgresso() {
+            if (ouvinte != null && progressoPendente.compareAndSet(false, true)) {
+                entrega.execute(() -> {
+                    progressoPendente.set(false);
+                    ouvinte.tarefaAtualizada(this);
+                });
+            }
+        }
+
+        private void executar() {
+            synchronized (ativas) {
+                if (cancelada) {
+                    return;
+                }
+                estado = Estado.EXECUTANDO;
+            }
+            avisar(this);
+            ExecutorFaixas.setAcompanhamento(this);
+            try {
+                T resultado = trabalho.call();
+                if (cancelada) {
+                    terminar(Estado.CANCELADA, null, null);
+                } else {
+                    terminar(Estado.CONCLUIDA, resultado, null);
+                }
+            } catch (CancellationException e) {
+                terminar(Estado.CANCELADA, null, null);
+            } catch (Exception | OutOfMemoryError e) {
+                terminar(Estado.FALHOU, null, e instanceof Exception ? (Exception) e
+                        : new IllegalStateException("Memória insuficiente para " + nome + ".", e));
+            } finally {
+                ExecutorFaixas.setAcompanhamento(null);
+            }
+        }
+
+        private void terminar(Estado fim, T resultado, Exception erro) {
+            synchronized (ativas) {
+                if (!isAtiva()) {
+                    return;
+                }
+                estado = fim;
+                ativas.remove(chave, this);
+            }
+            entrega.execute(() -> {
+                if (fim == Estado.CONCLUIDA && aoConcluir != null) {
+                    aoConcluir.accept(resultado);
+                } else if (fim == Estado.FALHOU && aoFalhar != null) {
+                    aoFalhar.accept(erro);
+                }
+                if (ouvinte != null) {
+                    ouvinte.tarefaAtualizada(this);
+                }
+            });
+        }
+    }
+}
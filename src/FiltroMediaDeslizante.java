@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * Filtro da média com somas deslizantes: cada faixa mantém a soma de cada coluna
+ * dentro da janela vertical e percorre a linha com uma soma horizontal corrente.
+ *
+ * O custo por pixel não depende do tamanho da janela. Nas bordas a janela é
+ * truncada e a média considera apenas os vizinhos dentro da imagem.
+ */
+public final class FiltroMediaDeslizante {
+
+    private FiltroMediaDeslizante() {
+    }
+
+    public static BufferImagem aplicar(BufferImagem buffer, int tamanhoJanela) {
+        BufferImagem resultado = PoolBuffers.get().criarSemelhante(buffer);
+        aplicar(buffer, resultado, tamanhoJanela / 2);
+        return resultado;
+    }
+
+    public static void aplicar(BufferImagem origem, BufferImagem destino, int raio) {
+        if (raio < 0) {
+            throw new IllegalArgumentException("Raio inválido: " + raio);
+        }
+        ExecutorFaixas.executar(origem.getLargura(), origem.getAltura(), raio,
+                (inicio, fim) -> aplicarFaixa(origem, destino, raio, inicio, fim));
+    }
+
+    // etapa de Pipeline equivalente a aplicar(buffer, tamanhoJanela)
+    public static EtapaVizinhanca etapa(int tamanhoJanela) {
+        int raio = tamanhoJanela / 2;
+        return new EtapaVizinhanca(raio, (origem, destino, inicio, fim) -> aplicarFaixa(origem, destino, raio, inicio,
+                fim));
+    }
+
+    static void aplicarFaixa(BufferImagem origem, BufferImagem destino, int raio, int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int canais = origem.getCanais();
+        try (PoolBuffers.Emprestimo<int[][]> somas = PoolBuffers.get().emprestarPlanos(canais, largura)) {
+            int[][] somaColunas = somas.get();
+            for (int[] soma : somaColunas) {
+                Arrays.fill(soma, 0, largura, 0);
+            }
+
+            for (int y = Math.max(0, inicio - raio); y <= Math.min(altura - 1, inicio + raio); y++) {
+                acumularLinha(origem, y, somaColunas, 1);
+            }
+
+            for (int y = inicio; y < fim; y++) {
+                int linhasValidas = Math.min(altura - 1, y + raio) - Math.max(0, y - raio) + 1;
+                if (canais == 1) {
+                    escreverLinhaCinza(destino, y, somaColunas[0], raio, linhasValidas);
+                } else {
+                    escreverLinhaRGB(destino, y, somaColunas, raio, linhasValidas);
+                }
+
+                // a última linha da faixa não precisa preparar a seguinte, que pode estar fora do halo
+                if (y + 1 == fim) {
+                    break;
+                }
+                if (y + raio + 1 < altura) {
+                    acumularLinha(origem, y + raio + 1, somaColunas, 1);
+                }
+                if (y - raio >= 0) {
+                    acumularLinha(origem, y - raio, somaColunas, -1);
+                }
+            }
+        }
+    }
+
+    private static void escreverLinhaCinza(BufferImagem destino, int y, int[] colunas, int raio, int linhasValidas) {
+        int largura = destino.getLargura();
+        byte[] cinza = destino.getDadosCinza();
+        int saida = destino.indice(0, y);
+        long soma = 0;
+        for (int x = 0; x <= Math.min(largura - 1, raio); x++) {
+            soma += colunas[x];
+        }
+        for (int x = 0; x < largura; x++) {
+            long quantidade = (long) (Math.min(largura - 1, x + raio) - Math.max(0, x - raio) + 1) * linhasValidas;
+            cinza[saida + x] = (byte) (soma / quantidade);
+            if (x + raio + 1 < largura) {
+                soma += colunas[x + raio + 1];
+            }
+            if (x - raio >= 0) {
+                soma -= colunas[x - raio];
+            }
+        }
+    }
+
+    private static void escreverLinhaRGB(BufferImagem destino, int y, int[][] somaColunas, int raio,
+            int linhasValidas) {
+        int largura = destino.getLargura();
+        int[] pixels = destino.getDadosRGB();
+        int saida = destino.indice(0, y);
+        int[] r = somaColunas[0];
+        int[] g = somaColunas[1];
+        int[] b = somaColunas[2];
+        long somaR = 0, somaG = 0, somaB = 0;
+        for (int x = 0; x <= Math.min(largura - 1, raio); x++) {
+            somaR += r[x];
+            somaG += g[x];
+            somaB += b[x];
+        }
+        for (int x = 0; x < largura; x++) {
+            long quantidade = (long) (Math.min(largura - 1, x + raio) - Math.max(0, x - raio) + 1) * linhasValidas;
+            pixels[saida + x] = BufferImagem.empacotar((int) (somaR / quantidade), (int) (somaG / quantidade),
+                    (int) (somaB / quantidade));
+            int entra = x + raio + 1;
+            if (entra < largura) {
+                somaR += r[entra];
+                somaG += g[entra];
+                somaB += b[entra];
+            }
+            int sai = x - raio;
+            if (sai >= 0) {
+                somaR -= r[sai];
+                somaG -= g[sai];
+                somaB -= b[sai];
+            }
+        }
+    }
+
+    // soma (sinal = 1) ou subtrai (sinal = -1) a linha y das somas de coluna
+    private static void acumularLinha(BufferImagem origem, int y, int[][] somaColunas, int sinal) {
+        int largura = origem.getLargura();
+        int inicio = origem.indice(0, y);
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            int[] v = somaColunas[0];
+            for (int x = 0; x < largura; x++) {
+                v[x] += sinal * (cinza[inicio + x] & 0xff);
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            int[] r = somaColunas[0];
+            int[] g = somaColunas[1];
+            int[] b = somaColunas[2];
+            for (int x = 0; x < largura; x++) {
+                int pixel = pixels[inicio + x];
+                r[x] += sinal * BufferImagem.vermelho(pixel);
+                g[x] += sinal * BufferImagem.verde(pixel);
+                b[x] += sinal * BufferImagem.azul(pixel);
+            }
+        }
+    }
+}
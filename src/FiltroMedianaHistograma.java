@@ -0,0 +1,310 @@
+import java.util.Arrays;
+
+/**
+ * Filtro da mediana com histogramas de 256 posições e nenhuma alocação por pixel.
+ *
+ * Janelas pequenas usam o algoritmo de Huang: o histograma da janela desliza ao
+ * longo da linha trocando uma coluna de 2r + 1 valores por vez. Janelas grandes
+ * usam o de Perreault-Hébert, que mantém um histograma por coluna e torna o custo
+ * por pixel constante. Em ambos a mediana é ajustada a partir da anterior.
+ *
+ * Nas bordas a janela é truncada; com quantidade par de vizinhos o resultado é
+ * a média dos dois valores centrais.
+ */
+public final class FiltroMedianaHistograma {
+
+    private static final int NIVEIS = 256;
+
+    // acima desse raio somar histogramas de coluna fica mais barato que trocar valores
+    private static final int RAIO_PERREAULT_HEBERT = 64;
+
+    private FiltroMedianaHistograma() {
+    }
+
+    public static BufferImagem aplicar(BufferImagem buffer, int tamanhoJanela) {
+        BufferImagem resultado = PoolBuffers.get().criarSemelhante(buffer);
+        aplicar(buffer, resultado, tamanhoJanela / 2);
+        return resultado;
+    }
+
+    public static void aplicar(BufferImagem origem, BufferImagem destino, int raio) {
+        if (raio < 0) {
+            throw new IllegalArgumentException("Raio inválido: " + raio);
+        }
+        ExecutorFaixas.executar(origem.getLargura(), origem.getAltura(), raio,
+                (inicio, fim) -> aplicarFaixa(origem, destino, raio, inicio, fim));
+    }
+
+    // etapa de Pipeline equivalente a aplicar(buffer, tamanhoJanela)
+    public static EtapaVizinhanca etapa(int tamanhoJanela) {
+        int raio = tamanhoJanela / 2;
+        return new EtapaVizinhanca(raio, (origem, destino, inicio, fim) -> aplicarFaixa(origem, destino, raio, inicio,
+                fim));
+    }
+
+    static void aplicarFaixa(BufferImagem origem, BufferImagem destino, int raio, int inicio, int fim) {
+        if (raio < RAIO_PERREAULT_HEBERT) {
+            aplicarFaixaHuang(origem, destino, raio, inicio, fim);
+        } else {
+            aplicarFaixaPerreaultHebert(origem, destino, raio, inicio, fim);
+        }
+    }
+
+    static void aplicarFaixaHuang(BufferImagem origem, BufferImagem destino, int raio, int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int canais = origem.getCanais();
+        Histograma[] histogramas = criarHistogramas(canais);
+        int[] medianas = new int[canais];
+
+        for (int y = inicio; y < fim; y++) {
+            int primeira = Math.max(0, y - raio);
+            int ultima = Math.min(altura - 1, y + raio);
+
+            for (Histograma histograma : histogramas) {
+                histograma.limpar();
+            }
+            for (int x = 0; x <= Math.min(largura - 1, raio); x++) {
+                alterarColuna(origem, x, primeira, ultima, histogramas, 1);
+            }
+
+            for (int x = 0; x < largura; x++) {
+                for (int c = 0; c < canais; c++) {
+                    medianas[c] = histogramas[c].mediana();
+                }
+                escreverPixel(destino, x, y, medianas);
+
+                if (x + raio + 1 < largura) {
+                    alterarColuna(origem, x + raio + 1, primeira, ultima, histogramas, 1);
+                }
+                if (x - raio >= 0) {
+                    alterarColuna(origem, x - raio, primeira, ultima, histogramas, -1);
+                }
+            }
+        }
+    }
+
+    static void aplicarFaixaPerreaultHebert(BufferImagem origem, BufferImagem destino, int raio, int inicio,
+            int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int canais = origem.getCanais();
+        Histograma[] histogramas = criarHistogramas(canais);
+        int[] medianas = new int[canais];
+
+        // histograma de cada coluna restrito às linhas da janela vertical atual
+        try (PoolBuffers.Emprestimo<int[][]> histogramasColunas = PoolBuffers.get().emprestarPlanos(canais,
+                largura * NIVEIS)) {
+            int[][] colunas = histogramasColunas.get();
+            for (int[] coluna : colunas) {
+                Arrays.fill(coluna, 0, largura * NIVEIS, 0);
+            }
+            int linhasNaJanela = 0;
+            for (int y = Math.max(0, inicio - raio); y <= Math.min(altura - 1, inicio + raio); y++) {
+                alterarLinha(origem, y, colunas, 1);
+                linhasNaJanela++;
+            }
+
+            for (int y = inicio; y < fim; y++) {
+                for (Histograma histograma : histogramas) {
+                    histograma.limpar();
+                }
+                for (int x = 0; x <= Math.min(largura - 1, raio); x++) {
+                    for (int c = 0; c < canais; c++) {
+                        histogramas[c].alterarColuna(colunas[c], x * NIVEIS, linhasNaJanela, 1);
+                    }
+                }
+
+                for (int x = 0; x < largura; x++) {
+                    for (int c = 0; c < canais; c++) {
+                        medianas[c] = histogramas[c].mediana();
+                    }
+                    escreverPixel(destino, x, y, medianas);
+
+                    boolean entra = x + raio + 1 < largura;
+                    boolean sai = x - raio >= 0;
+                    for (int c = 0; c < canais; c++) {
+                        if (entra && sai) {
+                            histogramas[c].trocarColunas(colunas[c], (x + raio + 1) * NIVEIS, (x - raio) * NIVEIS);
+                        } else if (entra) {
+                            histogramas[c].alterarColuna(colunas[c], (x + raio + 1) * NIVEIS, linhasNaJanela, 1);
+                        } else if (sai) {
+                            histogramas[c].alterarColuna(colunas[c], (x - raio) * NIVEIS, linhasNaJanela, -1);
+                        }
+                    }
+                }
+
+                // a última linha da faixa não precisa preparar a seguinte, que pode estar fora do halo
+                if (y + 1 == fim) {
+                    break;
+                }
+                if (y + raio + 1 < altura) {
+                    alterarLinha(origem, y + raio + 1, colunas, 1);
+                    linhasNaJanela++;
+                }
+                if (y - raio >= 0) {
+                    alterarLinha(origem, y - raio, colunas, -1);
+                    linhasNaJanela--;
+                }
+            }
+        }
+    }
+
+    private static Histograma[] criarHistogramas(int canais) {
+        Histograma[] histogramas = new Histograma[canais];
+        for (int c = 0; c < canais; c++) {
+            histogramas[c] = new Histograma();
+        }
+        return histogramas;
+    }
+
+    // soma (sinal = 1) ou remove (sinal = -1) os pixels da coluna x entre as linhas dadas
+    private static void alterarColuna(BufferImagem origem, int x, int primeira, int ultima, Histograma[] histogramas,
+            int sinal) {
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            Histograma histograma = histogramas[0];
+            for (int y = primeira; y <= ultima; y++) {
+                histograma.alterar(cinza[origem.indice(x, y)] & 0xff, sinal);
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            for (int y = primeira; y <= ultima; y++) {
+                int pixel = pixels[origem.indice(x, y)];
+                histogramas[0].alterar(BufferImagem.vermelho(pixel), sinal);
+                histogramas[1].alterar(BufferImagem.verde(pixel), sinal);
+                histogramas[2].alterar(BufferImagem.azul(pixel), sinal);
+            }
+        }
+    }
+
+    private static void alterarLinha(BufferImagem origem, int y, int[][] colunas, int sinal) {
+        int largura = origem.getLargura();
+        int inicio = origem.indice(0, y);
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            for (int x = 0; x < largura; x++) {
+                colunas[0][x * NIVEIS + (cinza[inicio + x] & 0xff)] += sinal;
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            for (int x = 0; x < largura; x++) {
+                int pixel = pixels[inicio + x];
+                colunas[0][x * NIVEIS + BufferImagem.vermelho(pixel)] += sinal;
+                colunas[1][x * NIVEIS + BufferImagem.verde(pixel)] += sinal;
+                colunas[2][x * NIVEIS + BufferImagem.azul(pixel)] += sinal;
+            }
+        }
+    }
+
+    private static void escreverPixel(BufferImagem destino, int x, int y, int[] medianas) {
+        int indice = destino.indice(x, y);
+        if (destino.isCinza()) {
+            destino.getDadosCinza()[indice] = (byte) medianas[0];
+        } else {
+            destino.getDadosRGB()[indice] = BufferImagem.empacotar(medianas[0], medianas[1], medianas[2]);
+        }
+    }
+
+    // histograma da janela com a posição da mediana atualizada de forma incremental;
+    // o nível grosso (16 faixas de 16 valores) deixa a busca saltar faixas inteiras
+    private static final class Histograma {
+
+        private static final int BITS_FAIXA = 4;
+        private static final int TAMANHO_FAIXA = 1 << BITS_FAIXA;
+
+        private final int[] contagem = new int[NIVEIS];
+        private final int[] faixas = new int[NIVEIS >> BITS_FAIXA];
+        private int total;
+        private int mediana;
+        // quantidade de valores menores que a mediana atual
+        private int abaixo;
+
+        void limpar() {
+            Arrays.fill(contagem, 0);
+            Arrays.fill(faixas, 0);
+            total = 0;
+            mediana = 0;
+            abaixo = 0;
+        }
+
+        void alterar(int valor, int sinal) {
+            contagem[valor] += sinal;
+            faixas[valor >> BITS_FAIXA] += sinal;
+            total += sinal;
+            if (valor < mediana) {
+                abaixo += sinal;
+            }
+        }
+
+        void alterarColuna(int[] colunas, int inicio, int quantidade, int sinal) {
+            int menores = 0;
+            for (int f = 0; f < faixas.length; f++) {
+                int somaFaixa = 0;
+                int base = f << BITS_FAIXA;
+                for (int v = base; v < base + TAMANHO_FAIXA; v++) {
+                    int n = colunas[inicio + v];
+                    contagem[v] += sinal * n;
+                    somaFaixa += n;
+                    if (v < mediana) {
+                        menores += n;
+                    }
+                }
+                faixas[f] += sinal * somaFaixa;
+            }
+            total += sinal * quantidade;
+            abaixo += sinal * menores;
+        }
+
+        // soma a coluna que entra e remove a que sai numa única passada
+        void trocarColunas(int[] colunas, int entra, int sai) {
+            int menores = 0;
+            for (int f = 0; f < faixas.length; f++) {
+                int somaFaixa = 0;
+                int base = f << BITS_FAIXA;
+                for (int v = base; v < base + TAMANHO_FAIXA; v++) {
+                    int diferenca = colunas[entra + v] - colunas[sai + v];
+                    contagem[v] += diferenca;
+                    somaFaixa += diferenca;
+                }
+                faixas[f] += somaFaixa;
+            }
+            for (int v = 0; v < mediana; v++) {
+                menores += colunas[entra + v] - colunas[sai + v];
+            }
+            abaixo += menores;
+        }
+
+        int mediana() {
+            int posicao = (total - 1) / 2;
+            while (abaixo > posicao) {
+                int faixaAnterior = (mediana >> BITS_FAIXA) - 1;
+                if ((mediana & (TAMANHO_FAIXA - 1)) == 0 && abaixo - faixas[faixaAnterior] > posicao) {
+                    mediana -= TAMANHO_FAIXA;
+                    abaixo -= faixas[faixaAnterior];
+                } else {
+                    mediana--;
+                    abaixo -= contagem[mediana];
+                }
+            }
+            while (abaixo + contagem[mediana] <= posicao) {
+                int faixa = mediana >> BITS_FAIXA;
+                if ((mediana & (TAMANHO_FAIXA - 1)) == 0 && abaixo + faixas[faixa] <= posicao) {
+                    abaixo += faixas[faixa];
+                    mediana += TAMANHO_FAIXA;
+                } else {
+                    abaixo += contagem[mediana];
+                    mediana++;
+                }
+            }
+            if (total % 2 == 1 || abaixo + contagem[mediana] > posicao + 1) {
+                return mediana;
+            }
+            int superior = mediana + 1;
+            while (contagem[superior] == 0) {
+                superior++;
+            }
+            return (mediana + superior) / 2;
+        }
+    }
+}
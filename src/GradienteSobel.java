@@ -0,0 +1,248 @@
+import java.util.Arrays;
+
+/**
+ * Gradiente de Sobel/Scharr separável, percorrendo a imagem linha a linha.
+ *
+ * Para cada linha calcula a suavização vertical e a diferença vertical de cada
+ * coluna e depois combina vizinhos horizontais, sem multiplicar os pesos nulos
+ * do kernel 3x3. Pode produzir a magnitude (L2 ou L1), a direção e os planos
+ * brutos Gx/Gy. As linhas e colunas da borda ficam com zero.
+ */
+public final class GradienteSobel {
+
+    public enum Operador {
+        SOBEL(1, 2), SCHARR(3, 10);
+
+        private final int pesoLateral;
+        private final int pesoCentral;
+
+        Operador(int pesoLateral, int pesoCentral) {
+            this.pesoLateral = pesoLateral;
+            this.pesoCentral = pesoCentral;
+        }
+    }
+
+    public enum Magnitude {
+        // raiz da soma dos quadrados
+        L2,
+        // |Gx| + |Gy|, sem raiz quadrada
+        L1
+    }
+
+    // saídas que podem ser pedidas a calcularCinza, combinadas com |
+    public static final int SAIDA_MAGNITUDE = 1;
+    public static final int SAIDA_DIRECAO = 2;
+    public static final int SAIDA_GX_GY = 4;
+
+    public static final class Resultado {
+
+        // imagem de um canal com a magnitude limitada a 255
+        public final BufferImagem magnitude;
+        // ângulo de -pi a pi mapeado para 0..255
+        public final BufferImagem direcao;
+        // derivadas sem limite, uma por pixel em ordem de linhas
+        public final int[] gx;
+        public final int[] gy;
+
+        private Resultado(BufferImagem magnitude, BufferImagem direcao, int[] gx, int[] gy) {
+            this.magnitude = magnitude;
+            this.direcao = direcao;
+            this.gx = gx;
+            this.gy = gy;
+        }
+    }
+
+    private GradienteSobel() {
+    }
+
+    // magnitude calculada separadamente em cada canal, como no filtro original
+    public static BufferImagem magnitudeColorida(BufferImagem buffer, Operador operador, Magnitude magnitude) {
+        if (buffer.isCinza()) {
+            return calcularCinza(buffer, operador, magnitude, SAIDA_MAGNITUDE).magnitude;
+        }
+        BufferImagem resultado = PoolBuffers.get().criarRGB(buffer.getLargura(), buffer.getAltura());
+        ExecutorFaixas.executar(buffer.getLargura(), buffer.getAltura(), 1,
+                (inicio, fim) -> aplicarFaixa(buffer, resultado, operador, magnitude, inicio, fim));
+        return resultado;
+    }
+
+    // gradiente de um único canal; imagens coloridas são convertidas para cinza antes
+    public static Resultado calcularCinza(BufferImagem buffer, Operador operador, Magnitude magnitude, int saidas) {
+        BufferImagem cinza = buffer.isCinza() ? buffer : ProcessadorImagem.escalaCinza(buffer);
+        int largura = cinza.getLargura();
+        int altura = cinza.getAltura();
+        PoolBuffers pool = PoolBuffers.get();
+        BufferImagem imagemMagnitude = (saidas & SAIDA_MAGNITUDE) != 0 ? pool.criarCinza(largura, altura) : null;
+        BufferImagem imagemDirecao = (saidas & SAIDA_DIRECAO) != 0 ? pool.criarCinza(largura, altura) : null;
+        int[] gx = (saidas & SAIDA_GX_GY) != 0 ? new int[largura * altura] : null;
+        int[] gy = gx != null ? new int[largura * altura] : null;
+        Resultado resultado = new Resultado(imagemMagnitude, imagemDirecao, gx, gy);
+
+        ExecutorFaixas.executar(largura, altura, 1, (inicio, fim) -> {
+            faixaCinza(cinza, resultado, operador, magnitude, inicio, fim);
+            // os arrays do pool não vêm zerados
+            if (imagemMagnitude != null) {
+                zerarBordas(imagemMagnitude, inicio, fim);
+            }
+            if (imagemDirecao != null) {
+                zerarBordas(imagemDirecao, inicio, fim);
+            }
+        });
+        if (cinza != buffer) {
+            pool.devolver(cinza);
+        }
+        return resultado;
+    }
+
+    // etapa de Pipeline com a mesma saída de magnitudeColorida
+    public static EtapaVizinhanca etapa(Operador operador, Magnitude magnitude) {
+        return new EtapaVizinhanca(1, (origem, destino, inicio, fim) -> aplicarFaixa(origem, destino, operador,
+                magnitude, inicio, fim));
+    }
+
+    // como o destino pode ser reaproveitado ou vir do pool, as bordas são zeradas explicitamente
+    static void aplicarFaixa(BufferImagem origem, BufferImagem destino, Operador operador, Magnitude magnitude,
+            int inicio, int fim) {
+        if (origem.isCinza()) {
+            faixaCinza(origem, new Resultado(destino, null, null, null), operador, magnitude, inicio, fim);
+        } else {
+            faixaColorida(origem, destino, operador, magnitude, inicio, fim);
+        }
+        zerarBordas(destino, inicio, fim);
+    }
+
+    private static void zerarBordas(BufferImagem destino, int inicio, int fim) {
+        int largura = destino.getLargura();
+        int altura = destino.getAltura();
+        for (int y = inicio; y < fim; y++) {
+            int linha = destino.indice(0, y);
+            if (y == 0 || y == altura - 1) {
+                zerar(destino, linha, linha + largura);
+            } else {
+                zerar(destino, linha, linha + 1);
+                zerar(destino, linha + largura - 1, linha + largura);
+            }
+        }
+    }
+
+    private static void zerar(BufferImagem destino, int de, int ate) {
+        if (destino.isCinza()) {
+            Arrays.fill(destino.getDadosCinza(), de, ate, (byte) 0);
+        } else {
+            Arrays.fill(destino.getDadosRGB(), de, ate, 0);
+        }
+    }
+
+    private static void faixaCinza(BufferImagem origem, Resultado resultado, Operador operador, Magnitude tipo,
+            int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        byte[] cinza = origem.getDadosCinza();
+        int lateral = operador.pesoLateral;
+        int central = operador.pesoCentral;
+        try (PoolBuffers.Emprestimo<int[][]> linhas = PoolBuffers.get().emprestarPlanos(4, largura)) {
+            int[] suavizada = linhas.get()[0];
+            int[] diferenca = linhas.get()[1];
+            int[] linhaGx = linhas.get()[2];
+            int[] linhaGy = linhas.get()[3];
+            byte[] magnitude = resultado.magnitude != null ? resultado.magnitude.getDadosCinza() : null;
+            byte[] direcao = resultado.direcao != null ? resultado.direcao.getDadosCinza() : null;
+
+            for (int y = Math.max(1, inicio); y < Math.min(altura - 1, fim); y++) {
+                int acima = origem.indice(0, y - 1);
+                int meio = origem.indice(0, y);
+                int abaixo = origem.indice(0, y + 1);
+                for (int x = 0; x < largura; x++) {
+                    int a = cinza[acima + x] & 0xff;
+                    int b = cinza[meio + x] & 0xff;
+                    int c = cinza[abaixo + x] & 0xff;
+                    suavizada[x] = lateral * (a + c) + central * b;
+                    diferenca[x] = c - a;
+                }
+                for (int x = 1; x < largura - 1; x++) {
+                    linhaGx[x] = suavizada[x + 1] - suavizada[x - 1];
+                    linhaGy[x] = lateral * (diferenca[x - 1] + diferenca[x + 1]) + central * diferenca[x];
+                }
+
+                if (magnitude != null) {
+                    int saida = resultado.magnitude.indice(0, y);
+                    for (int x = 1; x < largura - 1; x++) {
+                        magnitude[saida + x] = (byte) magnitude(linhaGx[x], linhaGy[x], tipo);
+                    }
+                }
+                if (direcao != null) {
+                    int saida = resultado.direcao.indice(0, y);
+                    for (int x = 1; x < largura - 1; x++) {
+                        direcao[saida + x] = (byte) direcao(linhaGx[x], linhaGy[x]);
+                    }
+                }
+                if (resultado.gx != null) {
+                    System.arraycopy(linhaGx, 1, resultado.gx, y * largura + 1, largura - 2);
+                    System.arraycopy(linhaGy, 1, resultado.gy, y * largura + 1, largura - 2);
+                }
+            }
+        }
+    }
+
+    private static void faixaColorida(BufferImagem origem, BufferImagem destino, Operador operador, Magnitude tipo,
+            int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int[] pixels = origem.getDadosRGB();
+        int[] novosPixels = destino.getDadosRGB();
+        int lateral = operador.pesoLateral;
+        int central = operador.pesoCentral;
+        PoolBuffers pool = PoolBuffers.get();
+        try (PoolBuffers.Emprestimo<int[][]> suavizadas = pool.emprestarPlanos(3, largura);
+                PoolBuffers.Emprestimo<int[][]> diferencas = pool.emprestarPlanos(3, largura)) {
+            int[][] suavizada = suavizadas.get();
+            int[][] diferenca = diferencas.get();
+
+            for (int y = Math.max(1, inicio); y < Math.min(altura - 1, fim); y++) {
+                int acima = origem.indice(0, y - 1);
+                int meio = origem.indice(0, y);
+                int abaixo = origem.indice(0, y + 1);
+                for (int x = 0; x < largura; x++) {
+                    int pa = pixels[acima + x];
+                    int pb = pixels[meio + x];
+                    int pc = pixels[abaixo + x];
+                    for (int c = 0; c < 3; c++) {
+                        int deslocamento = 16 - 8 * c;
+                        int va = (pa >> deslocamento) & 0xff;
+                        int vb = (pb >> deslocamento) & 0xff;
+                        int vc = (pc >> deslocamento) & 0xff;
+                        suavizada[c][x] = lateral * (va + vc) + central * vb;
+                        diferenca[c][x] = vc - va;
+                    }
+                }
+
+                int saida = destino.indice(0, y);
+                for (int x = 1; x < largura - 1; x++) {
+                    int pixel = 0;
+                    for (int c = 0; c < 3; c++) {
+                        int[] s = suavizada[c];
+                        int[] d = diferenca[c];
+                        int gx = s[x + 1] - s[x - 1];
+                        int gy = lateral * (d[x - 1] + d[x + 1]) + central * d[x];
+                        pixel = (pixel << 8) | magnitude(gx, gy, tipo);
+                    }
+                    novosPixels[saida + x] = pixel;
+                }
+            }
+        }
+    }
+
+    private static int magnitude(int gx, int gy, Magnitude tipo) {
+        if (tipo == Magnitude.L1) {
+            return Math.min(255, Math.abs(gx) + Math.abs(gy));
+        }
+        int quadrado = gx * gx + gy * gy;
+        // acima de 255² o resultado satura e a raiz não precisa ser calculada
+        return quadrado >= 255 * 255 ? 255 : (int) Math.sqrt(quadrado);
+    }
+
+    private static int direcao(int gx, int gy) {
+        double angulo = Math.atan2(gy, gx);
+        return (int) Math.round((angulo + Math.PI) * (255 / (2 * Math.PI)));
+    }
+}
@@ -6,24 +6,26 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Point;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.Callable;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JDesktopPane;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -33,54 +35,15 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 @SuppressWarnings("serial")
 public class ImageIFMG extends JFrame {
 
-    private class ProvedorImagens {
-
-        private static final List<ProvedorImagens> provedoresImagens = new ArrayList<>();
-        private final List<BufferedImage> imagens;
-        private final Object chaveEspera;
-        private final int qtdImagensEsperando;
-
-        public ProvedorImagens obterProvedor(Object chaveEspera, int qtdImagensEsperando) {
-
-            ProvedorImagens provedorImagens = new ProvedorImagens(chaveEspera, qtdImagensEsperando);
-            provedoresImagens.add(provedorImagens);
-            return provedorImagens;
-        }
-
-        public BufferedImage get(int index) {
-            return imagens.get(index);
-        }
-
-        public void atualizarProvedores(BufferedImage imagem) {
-            provedoresImagens.forEach(provedor -> provedor.addImagem(imagem));
-        }
-
-        private ProvedorImagens(Object chaveEspera, int qtdImagensEsperando) {
-            imagens = new ArrayList<>();
-            this.chaveEspera = chaveEspera;
-            this.qtdImagensEsperando = qtdImagensEsperando;
-        }
-
-        private void addImagem(BufferedImage imagem) {
-            if (imagens.contains(imagem)) {
-                return;
-            }
-
-            imagens.add(imagem);
-            synchronized (chaveEspera) {
-                if (imagens.size() == qtdImagensEsperando) {
-                    provedoresImagens.remove(this);
-                    chaveEspera.notifyAll();
-                }
-            }
-        }
-    }
-
     private JDesktopPane jDesktopPaneImagem;
     private JMenuBar jMenuBar;
     private JMenu jMenuAbrir;
@@ -92,333 +55,153 @@ public class ImageIFMG extends JFrame {
     private JMenuItem jMenuItemSalvar;
     private BufferedImage imagemSelecionada;
     private JInternalFrame frameAtual;
-    private List<int[][]> matrizRGB;
-    private List<BufferedImage> imagens = new ArrayList<>();
     private static final int ALTURA_JANELA = 400;
     private static final int LARGURA_JANELA = 600;
-    private static final int DIFERENCA_TOTAL_MAXIMA = 30;
-    private static final int BRANCO = 255;
-    private static final int PRETO = 0;
-
-    public void escalaCinza(List<int[][]> matrizRGB) {
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-        int[][] matrizRed = matrizRGB.get(0);
-        int[][] matrizGreen = matrizRGB.get(1);
-        int[][] matrizBlue = matrizRGB.get(2);
-        int[][] matrizMedia = new int[altura][largura];
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                matrizMedia[i][j] = (matrizRed[i][j] + matrizGreen[i][j] + matrizBlue[i][j]) / 3;
-            }
-        }
-        gerarImagem(matrizMedia, matrizMedia, matrizMedia);
-    }
+    // poucas operações ao mesmo tempo; cada uma já usa todos os núcleos nas faixas
+    private static final int OPERACOES_SIMULTANEAS = 2;
+    private final ExecutorOperacoes executor = new ExecutorOperacoes(OPERACOES_SIMULTANEAS,
+            SwingUtilities::invokeLater, tarefa -> atualizarProgresso());
+    private final CoordenadorImagens coordenador = new CoordenadorImagens(
+            () -> SwingUtilities.invokeLater(this::atualizarProgresso));
+    private JPanel jPanelProgresso;
+    private JProgressBar jProgressBar;
+    private JButton jButtonCancelar;
 
-    public void imagemBinaria(List<int[][]> matrizRGB) {
-        int[][] matrizBinaria = obterImagemBinaria(matrizRGB);
-
-        gerarImagem(matrizBinaria, matrizBinaria, matrizBinaria);
+    public void escalaCinza() {
+        processarImagem("Escala de cinza", ProcessadorImagem::escalaCinza);
     }
 
-    private int[][] obterImagemBinaria(List<int[][]> matrizRGB) {
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-
-        int[][] matrizRed = matrizRGB.get(0);
-        int[][] matrizGreen = matrizRGB.get(1);
-        int[][] matrizBlue = matrizRGB.get(2);
-
-        int[][] matrizBinaria = new int[altura][largura];
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                int media = (matrizRed[i][j] + matrizGreen[i][j] + matrizBlue[i][j]) / 3;
-                matrizBinaria[i][j] = media > 127 ? 255 : 0;
-            }
-        }
-
-        return matrizBinaria;
+    public void imagemBinaria() {
+        processarImagem("Imagem binária", ProcessadorImagem::imagemBinaria);
     }
 
-    public void imagemNegativa(List<int[][]> matrizRGB) {
-        List<int[][]> novaMatrizRGB = new LinkedList<>();
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-        for (int i = 0; i < 3; i++) {
-            int[][] matriz = matrizRGB.get(i);
-            int[][] novaMatriz = new int[altura][largura];
-            for (int j = 0; j < altura; j++) {
-                for (int k = 0; k < largura; k++) {
-                    novaMatriz[j][k] = 255 - matriz[j][k];
-                }
-            }
-            novaMatrizRGB.add(novaMatriz);
-        }
-        gerarImagem(novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
+    public void imagemNegativa() {
+        processarImagem("Negativa", ProcessadorImagem::negativa);
     }
 
-    public void corDominante(List<int[][]> matrizRGB) {
-        List<int[][]> novaMatrizRGB = new LinkedList<>();
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-        int[][] matrizRed = matrizRGB.get(0);
-        int[][] matrizGreen = matrizRGB.get(1);
-        int[][] matrizBlue = matrizRGB.get(2);
-        for (int i = 0; i < 3; i++) {
-            int[][] matriz = matrizRGB.get(i);
-            int[][] novaMatriz = new int[altura][largura];
-            for (int j = 0; j < altura; j++) {
-                for (int k = 0; k < largura; k++) {
-                    int corDominante = Math.max(matrizRed[j][k], Math.max(matrizGreen[j][k], matrizBlue[j][k]));
-                    novaMatriz[j][k] = matriz[j][k] >= corDominante ? corDominante : 0;
-                }
-            }
-            novaMatrizRGB.add(novaMatriz);
-        }
-        gerarImagem(novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
+    public void binariaOtsu() {
+        processarImagem("Binária (Otsu)", ProcessadorImagem::binariaOtsu);
     }
 
-    public void escalaCinzaEscuro(List<int[][]> matrizRGB) {
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-
-        int[][] matrizRed = matrizRGB.get(0);
-        int[][] matrizGreen = matrizRGB.get(1);
-        int[][] matrizBlue = matrizRGB.get(2);
-        int[][] matrizCinzaEscuro = new int[altura][largura];
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                int corMenorValor = Math.min(matrizRed[i][j], Math.min(matrizGreen[i][j], matrizBlue[i][j]));
-                matrizCinzaEscuro[i][j] = corMenorValor;
-            }
-        }
-
-        gerarImagem(matrizCinzaEscuro, matrizCinzaEscuro, matrizCinzaEscuro);
+    public void rotularObjetos() {
+        processarImagem("Rotular objetos", ProcessadorImagem::rotularObjetos);
     }
 
-    public void escalaCinzaClaro(List<int[][]> matrizRGB) {
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-        int[][] matrizRed = matrizRGB.get(0);
-        int[][] matrizGreen = matrizRGB.get(1);
-        int[][] matrizBlue = matrizRGB.get(2);
-        int[][] matrizCinzaClaro = new int[altura][largura];
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                int corMaiorValor = Math.max(matrizRed[i][j], Math.max(matrizGreen[i][j], matrizBlue[i][j]));
-                matrizCinzaClaro[i][j] = corMaiorValor;
-            }
+    public void binariaAdaptativa() {
+        Object metodo = JOptionPane.showInputDialog(null, "Escolha o limiar local", "Binária adaptativa",
+                JOptionPane.QUESTION_MESSAGE, null, Limiarizacao.Metodo.values(), Limiarizacao.Metodo.SAUVOLA);
+        if (metodo == null) {
+            return;
+        }
+        int tamanhoJanela = lerTamanhoJanela("Digite o tamanho da janela (ex.: 15, 31, 101)");
+        if (tamanhoJanela <= 0) {
+            return;
+        }
+        boolean sauvola = metodo == Limiarizacao.Metodo.SAUVOLA;
+        String resposta = JOptionPane.showInputDialog(sauvola ? "Digite o k de Sauvola (ex.: 0.34)"
+                : "Digite a constante subtraída da média (ex.: 5)", sauvola ? "0.34" : "5");
+        double parametro;
+        try {
+            parametro = Double.valueOf(resposta);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Valor inválido digitado!");
+            return;
         }
-        gerarImagem(matrizCinzaClaro, matrizCinzaClaro, matrizCinzaClaro);
+        processarImagem("Binária adaptativa " + metodo + " " + tamanhoJanela + " " + parametro,
+                buffer -> ProcessadorImagem.binariaAdaptativa(buffer, (Limiarizacao.Metodo) metodo, tamanhoJanela,
+                        parametro));
     }
 
-    public void fazerUniao(List<int[][]> matrizRGB) {
-        Object chaveEspera = new Object();
-        ProvedorImagens provedorImagens = null;//ProvedorImagens.obterProvedor(chaveEspera, 2);
-
-        new Thread(() -> {
-            synchronized (chaveEspera) {
-                try {
-                    chaveEspera.wait();
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(getClass().getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-
-            BufferedImage imagem1 = provedorImagens.get(0);
-            BufferedImage imagem2 = provedorImagens.get(1);
-
-            int largura = imagem1.getWidth();
-            int altura = imagemSelecionada.getHeight();
-
-            List<int[][]> matrizRGB1 = obterEArmazenarMatrizRGB(imagem1);
-            List<int[][]> matrizRGB2 = obterEArmazenarMatrizRGB(imagem2);
-
-            int[][] binarizada1 = obterImagemBinaria(matrizRGB1);
-            int[][] binarizada2 = obterImagemBinaria(matrizRGB2);
-
-            int[][] uniao = binarizada1;
-
-            for (int i = 0; i < altura; i++) {
-                for (int j = 0; j < largura; j++) {
-                    if (binarizada2[i][j] == PRETO) {
-                        uniao[i][j] = PRETO;
-                    }
-                }
-            }
-
-            gerarImagem(uniao, uniao, uniao);
-
-        }).start();
+    public void corDominante() {
+        processarImagem("Cor dominante", ProcessadorImagem::corDominante);
     }
 
-    public void fazerIntersecao(List<int[][]> matrizRGB) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
+    public void escalaCinzaEscuro() {
+        processarImagem("Cinza escuro", ProcessadorImagem::escalaCinzaEscuro);
+    }
 
-        BufferedImage imagemSelecionadaAntiga = imagemSelecionada;
+    public void escalaCinzaClaro() {
+        processarImagem("Cinza claro", ProcessadorImagem::escalaCinzaClaro);
+    }
 
-        imagemSelecionada = imagens.get(0);
-        List<int[][]> matrizRGB1 = obterEArmazenarMatrizRGB();
-        imagemSelecionada = imagens.get(1);
-        List<int[][]> matrizRGB2 = obterEArmazenarMatrizRGB();
+    public void fazerUniao() {
+        operacaoBinaria("União", ProcessadorImagem::uniao);
+    }
 
-        BufferedImage imagemSelecionada = imagemSelecionadaAntiga;
-        obterEArmazenarMatrizRGB();
+    public void fazerIntersecao() {
+        operacaoBinaria("Interseção", ProcessadorImagem::intersecao);
+    }
 
-        int[][] binarizada1 = obterImagemBinaria(matrizRGB1);
-        int[][] binarizada2 = obterImagemBinaria(matrizRGB2);
+    public void fazerDiferenca() {
+        operacaoBinaria("Diferença", ProcessadorImagem::diferenca);
+    }
 
-        int[][] intersecao = binarizada1;
+    public void fazerOuExclusivo() {
+        operacaoBinaria("Ou exclusivo", ProcessadorImagem::ouExclusivo);
+    }
 
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                if (binarizada1[i][j] != binarizada2[i][j]) {
-                    intersecao[i][j] = BRANCO;
-                }
+    public void mesclarImagens() {
+        double alfa;
+        try {
+            alfa = Double.valueOf(JOptionPane.showInputDialog("Digite o peso da primeira imagem (de 0 a 1)", "0.5"));
+            if (alfa < 0 || alfa > 1) {
+                throw new IllegalArgumentException("O peso deve estar entre 0 e 1.");
             }
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Valor inválido digitado!");
+            return;
         }
-
-        gerarImagem("PintarImagem", intersecao, intersecao, intersecao);
+        operacaoBinaria("Mesclar " + alfa, (primeira, segunda) -> ProcessadorImagem.mesclar(primeira, segunda, alfa));
+    }
+
+    /*
+     * As duas imagens são escolhidas teclando Enter nas janelas, na ordem
+     * desejada (Esc ou Cancelar desiste). Nenhuma thread fica esperando: a
+     * operação só é enviada ao executor quando a segunda imagem chega.
+     */
+    private void operacaoBinaria(String nome, BinaryOperator<BufferImagem> operacao) {
+        coordenador.aguardar(nome, 2).getFuturo().thenAcceptAsync(escolhidas -> {
+            BufferedImage primeira = escolhidas.get(0);
+            BufferedImage segunda = escolhidas.get(1);
+            processar(Arrays.asList(primeira, segunda, nome), nome, () -> {
+                BufferImagem a = BufferImagem.deImagem(primeira);
+                BufferImagem b = BufferImagem.deImagem(segunda);
+                BufferImagem resultado = null;
+                try {
+                    resultado = operacao.apply(a, b);
+                    return resultado;
+                } finally {
+                    devolverEntrada(a, resultado);
+                    devolverEntrada(b, resultado);
+                }
+            }, this::gerarImagem);
+        }, SwingUtilities::invokeLater);
     }
 
-    public void escolhaDoUsuario(List<int[][]> matrizRGB) {
-        int altura = matrizRGB.get(0).length;
-        int largura = matrizRGB.get(0)[0].length;
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
+    public void escolhaDoUsuario() {
         String corEscolhida = JOptionPane.showInputDialog("Escolha uma cor: r, g ou b");
-        if (!corEscolhida.matches("[rgb]")) {
+        if (corEscolhida == null || !corEscolhida.matches("[rgb]")) {
             JOptionPane.showMessageDialog(null, "Cor inválida");
             return;
         }
         int matrizIndexSelecionado = corEscolhida.equals("r") ? 0 : corEscolhida.equals("g") ? 1 : 2;
-        for (int linha = 0; linha < altura; linha++) {
-            for (int coluna = 0; coluna < largura; coluna++) {
-                if (isPixelCorIgualEscolhida(linha, coluna, matrizIndexSelecionado)) {
-                    // System.out.println("foi, linha: " + linha + ", coluna: " + coluna);
-                    continue;
-                }
-                // System.out.println("não foi, linha: " + linha + ", coluna: " + coluna);
-                // Tornar pixel Cinza
-                int media = (matrizRed[linha][coluna] + matrizGreen[linha][coluna] + matrizBlue[linha][coluna]) / 3;
-                matrizRed[linha][coluna] = media;
-                matrizGreen[linha][coluna] = media;
-                matrizBlue[linha][coluna] = media;
-            }
-        }
-        gerarImagem(matrizRed, matrizGreen, matrizBlue);
-    }
-
-    private boolean isPixelCorIgualEscolhida(int linha, int coluna, int matrizIndexSelecionado) {
-        for (int matrizIndexAtual = 0; matrizIndexAtual < 3; matrizIndexAtual++) {
-            int[][] matrizCor = matrizRGB.get(matrizIndexAtual);
-            int corAtual = matrizCor[linha][coluna];
-            boolean isMatrizDaCorSelecionada = (matrizIndexAtual == matrizIndexSelecionado);
-            if (isCorInvalida(isMatrizDaCorSelecionada, corAtual)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean isCorInvalida(boolean isMatrizDaCorSelecionada, int corAtual) {
-        return (!isMatrizDaCorSelecionada && corAtual >= 167) || (isMatrizDaCorSelecionada && corAtual < 167);
+        processarImagem("Escolha do usuário (" + corEscolhida + ")",
+                buffer -> ProcessadorImagem.escolhaDoUsuario(buffer, matrizIndexSelecionado));
     }
 
-    private void qualODispositivo(List<int[][]> matrizRGB) {
-        int meio_largura = imagemSelecionada.getWidth() / 2;
-        int meio_altura = imagemSelecionada.getHeight() / 2;
-
-        Point[] coordenadas = new Point[4];
-
-        coordenadas[0] = encontrarPonto(Direcoes.BAIXO, matrizRGB, meio_largura);
-        coordenadas[1] = encontrarPonto(Direcoes.CIMA, matrizRGB, meio_largura);
-        coordenadas[2] = encontrarPonto(Direcoes.DIREITA, matrizRGB, meio_altura);
-        coordenadas[3] = encontrarPonto(Direcoes.ESQUERDA, matrizRGB, meio_altura);
-
-        for (Point coordenada : coordenadas) {
-            if (coordenada == null) {
+    private void qualODispositivo() {
+        processarImagem("Qual o dispositivo", ProcessadorImagem::medirDispositivo, dispositivo -> {
+            if (dispositivo == null) {
                 JOptionPane.showMessageDialog(null, "Não foi possível medir o dispositivo");
-                return;
-            }
-        }
-
-        int altura_dispositivo = coordenadas[1].y - coordenadas[0].y;
-        int largura_dispositivo = coordenadas[3].x - coordenadas[2].x;
-
-        if (largura_dispositivo > altura_dispositivo) {
-            JOptionPane.showMessageDialog(null, "É um celular!");
-        } else {
-            JOptionPane.showMessageDialog(null, "É uma caneta!");
-        }
-    }
-
-    private enum Direcoes {
-        CIMA, BAIXO, ESQUERDA, DIREITA
-    }
-
-    private Point encontrarPonto(Direcoes direcao, List<int[][]> matrizRGB, int coord) {
-        int matrizRed[][] = matrizRGB.get(0);
-        int matrizGreen[][] = matrizRGB.get(1);
-        int matrizBlue[][] = matrizRGB.get(2);
-
-        int inicio = 0, passo = 0, limite = 0;
-        int altura = matrizRed.length, largura = matrizRed[0].length;
-
-        switch (direcao) {
-            case BAIXO -> {
-                inicio = 0;
-                limite = altura - 1;
-                passo = 1;
-            }
-            case CIMA -> {
-                inicio = altura - 1;
-                limite = 0;
-                passo = -1;
-            }
-            case DIREITA -> {
-                inicio = 0;
-                limite = largura - 1;
-                passo = 1;
-            }
-            case ESQUERDA -> {
-                inicio = largura - 1;
-                limite = 0;
-                passo = -1;
-            }
-        }
-
-        for (int i = inicio; i != limite + passo; i += passo) {
-            int x = coord, y = i;
-
-            if (direcao == Direcoes.ESQUERDA || direcao == Direcoes.DIREITA) {
-                x = i;
-                y = coord;
-            }
-
-            int r = matrizRed[y][x];
-            int g = matrizGreen[y][x];
-            int b = matrizBlue[y][x];
-            int menorCor = Math.min(r, Math.min(g, b));
-
-            int somaDiferenca = Math.abs(r - menorCor) + Math.abs(g - menorCor) + Math.abs(b - menorCor);
-
-            if (somaDiferenca > DIFERENCA_TOTAL_MAXIMA) {
-                return new Point(x, y);
+            } else if (dispositivo.width > dispositivo.height) {
+                JOptionPane.showMessageDialog(null, "É um celular!");
+            } else {
+                JOptionPane.showMessageDialog(null, "É uma caneta!");
             }
-        }
-
-        return null;
+        });
     }
 
-    private void redimensionarImagem(List<int[][]> matrizRGB) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
+    private void redimensionarImagem() {
         String resposta = JOptionPane.showInputDialog("Digite o fator de redimensionamento");
         double fator = 0;
 
@@ -432,581 +215,184 @@ public class ImageIFMG extends JFrame {
             return;
         }
 
-        fator /= 100;
-
-        int novaLargura = (int) (largura * fator);
-        int novaAltura = (int) (altura * fator);
-
-        double proporcao = 1 / fator;
-
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
-
-        int[][] novaMatrizRed = new int[novaAltura][novaLargura];
-        int[][] novaMatrizGreen = new int[novaAltura][novaLargura];
-        int[][] novaMatrizBlue = new int[novaAltura][novaLargura];
-
-        for (int i = 0; i < novaAltura; i++) {
-            for (int j = 0; j < novaLargura; j++) {
-                novaMatrizRed[i][j] = matrizRed[(int) (i * proporcao)][(int) (j * proporcao)];
-                novaMatrizGreen[i][j] = matrizGreen[(int) (i * proporcao)][(int) (j * proporcao)];
-                novaMatrizBlue[i][j] = matrizBlue[(int) (i * proporcao)][(int) (j * proporcao)];
-            }
+        Redimensionador.Interpolacao[] opcoes = Redimensionador.Interpolacao.values();
+        Object interpolacao = JOptionPane.showInputDialog(null, "Escolha a interpolação", "Redimensionar",
+                JOptionPane.QUESTION_MESSAGE, null, opcoes, Redimensionador.Interpolacao.padrao(fator / 100));
+        if (interpolacao == null) {
+            return;
         }
 
-        gerarImagem(novaMatrizRed, novaMatrizGreen, novaMatrizBlue);
+        double escala = fator / 100;
+        processarImagem("Redimensionar " + resposta.trim() + "% " + interpolacao,
+                buffer -> ProcessadorImagem.redimensionar(buffer, escala, (Redimensionador.Interpolacao) interpolacao));
     }
 
-    private void rotacionarImagem(List<int[][]> matrizRGB) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-        List<int[][]> novaMatrizRGB = new LinkedList<>();
-        for (int i = 0; i < 3; i++) {
-            int[][] novaMatrizCor = new int[largura][altura];
-            int[][] matrizAtual = matrizRGB.get(i);
-            for (int j = 0; j < altura; j++) {
-                for (int k = 0; k < largura; k++) {
-                    novaMatrizCor[k][j] = matrizAtual[j][k];
-                }
-            }
-            novaMatrizRGB.add(novaMatrizCor);
-        }
-        gerarImagem(novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
+    private void rotacionarImagem() {
+        processarImagem("Rotacionar", ProcessadorImagem::transpor);
     }
 
-    private void rotacionarPersonalizado(List<int[][]> matrizRGB) {
-
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        int alturaAdicional = 0;
-
-        double angulo = 0;
-
-        int maiorX = 0, menorY = 0;
+    private void orientar(Orientacao orientacao) {
+        processarImagem(orientacao.toString(), orientacao::aplicar);
+    }
 
+    private void rotacionarPersonalizado() {
+        double angulo;
         try {
             angulo = Double.valueOf(JOptionPane.showInputDialog("Digite o ângulo em graus"));
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Digite um valor válido", "Erro!", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        angulo = Math.toRadians(angulo);
 
-        angulo = angulo % 360;
-        if (angulo < 0) {
-            angulo = angulo + 360;
-        }
+        processarImagem("Rotacionar " + angulo + "°", buffer -> ProcessadorImagem.rotacionar(buffer, angulo));
+    }
 
-        if (angulo < 90) {
-            maiorX = obterX(0, altura, angulo);
-            menorY = obterY(0, altura, angulo);
-        }/*
-        else if(angulo < 180) {
-            maiorX = obterX(largura, altura, angulo);
-            menorY = obterY(largura, altura, angulo);
-        }
-        else if(angulo < 270) {
-            maiorX = obterX(largura, 0, angulo);
-            menorY = obterY(largura, 0, angulo);
+    private void FiltroMedia() {
+        int tamanhoMatriz = lerTamanhoJanela("Digite o tamanho da janela do filtro de média (ex.: 3, 5, 31)");
+        if (tamanhoMatriz > 0) {
+            processarImagem("Filtro Média " + tamanhoMatriz,
+                    buffer -> ProcessadorImagem.filtroMedia(buffer, tamanhoMatriz));
         }
-        else {
-            maiorX = obterX(0, 0, angulo);
-            menorY = obterY(0, 0, angulo);
-        }*/
-
-        int diferencaX = largura - maiorX;
-        int diferencaY = -menorY;
-
-        int novaLargura = largura + (2 * diferencaX);
-        int novaAltura = altura + (2 * diferencaY);
-
-        System.out.println("maiorX: " + maiorX + ", menorY: " + menorY);
-        System.out.println("diferencaX: " + diferencaX + ", menorY: " + diferencaY);
-
-        int[][] matrizRed = new int[novaAltura][novaLargura];
-        int[][] matrizBlue = new int[novaAltura][novaLargura];
-        int[][] matrizGreen = new int[novaAltura][novaLargura];
-
-        int novoX = 0;
-        int novoY = 0;
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                novoX = diferencaX + obterX(j, i, angulo);
-                novoY = diferencaY + obterY(j, i, angulo);
+    }
 
-                matrizRed[novoY][novoX] = matrizRGB.get(0)[i][j];
-                matrizGreen[novoY][novoX] = matrizRGB.get(1)[i][j];
-                matrizBlue[novoY][novoX] = matrizRGB.get(2)[i][j];
+    // tamanho da janela digitado pelo usuário, ou -1 se o valor for inválido
+    private int lerTamanhoJanela(String mensagem) {
+        String resposta = JOptionPane.showInputDialog(mensagem, "3");
+        try {
+            int tamanho = Integer.parseInt(resposta.trim());
+            if (tamanho <= 0) {
+                throw new IllegalArgumentException("O tamanho da janela deve ser maior que zero.");
             }
+            return tamanho;
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Valor inválido digitado!");
+            return -1;
         }
-
-        gerarImagem(matrizRed, matrizGreen, matrizBlue);
     }
 
-    private int obterX(int x, int y, double angulo) {
-        return (int) (x * Math.cos(angulo) - y * Math.sin(angulo));
+    private void FiltroMediana() {
+        int tamanhoMatriz = lerTamanhoJanela("Digite o tamanho da janela do filtro da mediana (ex.: 3, 5, 7)");
+        if (tamanhoMatriz > 0) {
+            processarImagem("Filtro da Mediana " + tamanhoMatriz,
+                    buffer -> ProcessadorImagem.filtroMediana(buffer, tamanhoMatriz));
+        }
     }
 
-    private int obterY(int x, int y, double angulo) {
-        return (int) (x * Math.sin(angulo) - y * Math.cos(angulo));
+    private void filtroSobel() {
+        processarImagem("Filtro Sobel", ProcessadorImagem::filtroSobel);
     }
 
-    private void FiltroMedia(List<int[][]> matrizRGB) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        // Solicita ao usuário o tamanho da matriz
-        String[] options = {"3x3", "5x5"};
-        int resposta = JOptionPane.showOptionDialog(null, "Escolha o tamanho da matriz para o filtro de média:",
-                "Tamanho da Matriz", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
-                null, options, options[0]);
-
-        int tamanhoMatriz;
-        if (resposta == 0) {
-            tamanhoMatriz = 3;
-        } else {
-            tamanhoMatriz = 5;
-        }
-
-        int[][] resultadoRed = new int[altura][largura];
-        int[][] resultadoGreen = new int[altura][largura];
-        int[][] resultadoBlue = new int[altura][largura];
-
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
-
-        // Percorre cada pixel da imagem
-        for (int x = 0; x < largura; x++) {
-            for (int y = 0; y < altura; y++) {
-                int somaRed = 0;
-                int somaGreen = 0;
-                int somaBlue = 0;
-                int count = 0;
-
-                // Percorre os pixels vizinhos em uma janela tamanhoMatriz x tamanhoMatriz
-                for (int i = -tamanhoMatriz / 2; i <= tamanhoMatriz / 2; i++) {
-                    for (int j = -tamanhoMatriz / 2; j <= tamanhoMatriz / 2; j++) {
-                        int pixelX = x + i;
-                        int pixelY = y + j;
-
-                        // Verifica se o pixel vizinho está dentro dos limites da imagem
-                        if (pixelX >= 0 && pixelX < largura && pixelY >= 0 && pixelY < altura) {
-                            somaRed += matrizRed[pixelY][pixelX];
-                            somaGreen += matrizGreen[pixelY][pixelX];
-                            somaBlue += matrizBlue[pixelY][pixelX];
-                            count++;
-                        }
-                    }
-                }
+    private void FiltroGaussiano() {
+        String resposta = JOptionPane.showInputDialog("Digite o sigma do filtro gaussiano (ex.: 1.0; no máximo "
+                + (int) ConvolucaoGaussiana.SIGMA_MAXIMO + ")");
+        double sigma;
 
-                // Calcula a média dos valores RGB apenas se houver vizinhos válidos
-                if (count > 0) {
-                    resultadoRed[y][x] = somaRed / count;
-                    resultadoGreen[y][x] = somaGreen / count;
-                    resultadoBlue[y][x] = somaBlue / count;
-                } else {
-                    // Se nenhum vizinho válido for encontrado, mantém o valor original
-                    resultadoRed[y][x] = matrizRed[y][x];
-                    resultadoGreen[y][x] = matrizGreen[y][x];
-                    resultadoBlue[y][x] = matrizBlue[y][x];
-                }
-            }
+        try {
+            sigma = Double.valueOf(resposta);
+            ConvolucaoGaussiana.validarSigma(sigma);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Valor inválido digitado!");
+            return;
         }
 
-        // Gerar a imagem processada com os novos valores RGB
-        gerarImagem(resultadoRed, resultadoGreen, resultadoBlue);
+        processarImagem("Filtro Gaussiano " + sigma, buffer -> ProcessadorImagem.filtroGaussiano(buffer, sigma));
     }
 
-    private void FiltroMediana(List<int[][]> matrizRGB) {
-
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        // Solicita ao usuário o tamanho da matriz
-        String[] options = {"3x3", "5x5", "7x7"};
-        int resposta = JOptionPane.showOptionDialog(null, "Escolha o tamanho da matriz para o filtro de mediana:",
-                "Tamanho da Matriz", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
-                null, options, options[0]);
-
-        int tamanhoMatriz;
-
-        if (resposta == 0) {
-            tamanhoMatriz = 3;
-
-        } else if (resposta == 5) {
-            tamanhoMatriz = 5;
-        } else {
-            tamanhoMatriz = 7;
-        }
-
-        // Simulação das matrizes de canal de cores
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
-
-        int[][] resultadoRed = new int[altura][largura];
-        int[][] resultadoGreen = new int[altura][largura];
-        int[][] resultadoBlue = new int[altura][largura];
-
-        // Percorre cada pixel da imagem
-        for (int x = 0; x < largura; x++) {
-            for (int y = 0; y < altura; y++) {
-                List<Integer> vizinhosRed = new ArrayList<>();
-                List<Integer> vizinhosGreen = new ArrayList<>();
-                List<Integer> vizinhosBlue = new ArrayList<>();
-                int index = 0;
-
-                // Percorre os pixels vizinhos em uma janela tamanhoMatriz x tamanhoMatriz
-                for (int i = -tamanhoMatriz / 2; i <= tamanhoMatriz / 2; i++) {
-                    for (int j = -tamanhoMatriz / 2; j <= tamanhoMatriz / 2; j++) {
-                        int pixelX = x + i;
-                        int pixelY = y + j;
-
-                        // Verifica se o pixel vizinho está dentro dos limites da imagem
-                        if (pixelX >= 0 && pixelX < largura && pixelY >= 0 && pixelY < altura) {
-                            vizinhosRed.add(matrizRed[pixelY][pixelX]);
-                            vizinhosGreen.add(matrizGreen[pixelY][pixelX]);
-                            vizinhosBlue.add(matrizBlue[pixelY][pixelX]);
-                            index++;
-                        }
-                    }
-                }
-
-                // Ordena os arrays de vizinhos
-                Collections.sort(vizinhosRed);
-                Collections.sort(vizinhosGreen);
-                Collections.sort(vizinhosBlue);
-
-                // Calcula a mediana dos valores RGB
-                int medianaRed = calcularMediana(vizinhosRed);
-                int medianaGreen = calcularMediana(vizinhosGreen);
-                int medianaBlue = calcularMediana(vizinhosBlue);
-
-                // Atualiza os resultados com os valores da mediana
-                resultadoRed[y][x] = medianaRed;
-                resultadoGreen[y][x] = medianaGreen;
-                resultadoBlue[y][x] = medianaBlue;
-
-            }
-        }
-
-        // Gerar a imagem processada com os novos valores RGB
-        gerarImagem(resultadoRed, resultadoGreen, resultadoBlue);
-
-    }
-    
-
-    private void filtroSobel(List<int[][]> matrizRGB) {
-    	int largura = imagemSelecionada.getWidth();
-    	int altura = imagemSelecionada.getHeight();
-
-    	int[][] matrizRed = obterMatrizVermelha();
-    	int[][] matrizGreen = obterMatrizVerde();
-    	int[][] matrizBlue = obterMatrizAzul();
-
-    	int[][] resultadoRed = new int[altura][largura];
-    	int[][] resultadoGreen = new int[altura][largura];
-    	int[][] resultadoBlue = new int[altura][largura];
-
-    	int[][] sobelX = {
-    			{-1, 0, 1},
-    			{-2, 0, 2},
-    			{-1, 0, 1}
-    	};
-
-    	int[][] sobelY = {
-    			{-1, -2, -1},
-    			{ 0,  0,  0},
-    			{ 1,  2,  1}
-    	};
-
-    	for (int x = 1; x < largura - 1; x++) {
-    		for (int y = 1; y < altura - 1; y++) {
-    			int gxRed = 0, gyRed = 0;
-    			int gxGreen = 0, gyGreen = 0;
-    			int gxBlue = 0, gyBlue = 0;
-
-    			for (int i = -1; i <= 1; i++) {
-    				for (int j = -1; j <= 1; j++) {
-    					int pixelX = x + i;
-    					int pixelY = y + j;
-
-    					gxRed += matrizRed[pixelY][pixelX] * sobelX[i + 1][j + 1];
-    					gyRed += matrizRed[pixelY][pixelX] * sobelY[i + 1][j + 1];
-
-    					gxGreen += matrizGreen[pixelY][pixelX] * sobelX[i + 1][j + 1];
-    					gyGreen += matrizGreen[pixelY][pixelX] * sobelY[i + 1][j + 1];
-
-    					gxBlue += matrizBlue[pixelY][pixelX] * sobelX[i + 1][j + 1];
-    					gyBlue += matrizBlue[pixelY][pixelX] * sobelY[i + 1][j + 1];
-    				}
-    			}
-
-    			int magRed = Math.min(255, (int) Math.sqrt(gxRed * gxRed + gyRed * gyRed));
-    			int magGreen = Math.min(255, (int) Math.sqrt(gxGreen * gxGreen + gyGreen * gyGreen));
-    			int magBlue = Math.min(255, (int) Math.sqrt(gxBlue * gxBlue + gyBlue * gyBlue));
-
-    			resultadoRed[y][x] = magRed;
-    			resultadoGreen[y][x] = magGreen;
-    			resultadoBlue[y][x] = magBlue;
-    		}
-    	}
-
-    	gerarImagem(resultadoRed, resultadoGreen, resultadoBlue);
+    private void converterImagem() {
+        processarImagem("Converter Formato", ProcessadorImagem::converterHSV, convertidas -> {
+            gerarImagem("H máximo", convertidas[0]);
+            gerarImagem("S máximo", convertidas[1]);
+            gerarImagem("V máximo", convertidas[2]);
+        });
     }
 
-    
-    
-    private int calcularMediana(List<Integer> valores) {
-        int tamanho = valores.size();
-        if (tamanho == 0) {
-            return 0;
+    private void cadeiaDeOperacoes() {
+        String cadeia = JOptionPane.showInputDialog("Digite as operações separadas por | (ex.: cinza | gaussiano:sigma=2 | sobel)");
+        if (cadeia == null) {
+            return;
         }
-
-        if (tamanho % 2 == 0) {
-            int meio = tamanho / 2;
-            return (valores.get(meio - 1) + valores.get(meio)) / 2;
-        } else {
-            return valores.get(tamanho / 2);
+        Pipeline pipeline;
+        try {
+            pipeline = Pipeline.deTexto(cadeia);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Erro!", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        String titulo = cadeia.trim();
+        processarImagem(titulo, pipeline::aplicar, resultado -> gerarImagem(titulo, resultado));
     }
 
-    private void FiltroGaussiano(List<int[][]> matrizRGB) {
-
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        // Solicita ao usuário o tamanho da matriz
-        String[] options = {"3x3", "5x5", "7x7"};
-        int resposta = JOptionPane.showOptionDialog(null, "Escolha o tamanho da matriz para o filtro de média:",
-                "Tamanho da Matriz", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
-                null, options, options[0]);
-
-        int tamanhoMatriz;
-        if (resposta == 0) {
-            tamanhoMatriz = 3;
-        } else if (resposta == 1) {
-            tamanhoMatriz = 5;
-        } else {
-            tamanhoMatriz = 7;
-        }
-
-        int[][] resultadoRed = new int[altura][largura];
-        int[][] resultadoGreen = new int[altura][largura];
-        int[][] resultadoBlue = new int[altura][largura];
-
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
-
-        int[][] matrizGaussiana = null;
-
-        matrizGaussiana = obterMatrizGaussiana(tamanhoMatriz);
-
-        // Percorre cada pixel da imagem
-        for (int x = 0; x < largura; x++) {
-            for (int y = 0; y < altura; y++) {
-                int somaRed = 0;
-                int somaGreen = 0;
-                int somaBlue = 0;
-                int total = 0;
-
-                // Percorre os pixels vizinhos em uma janela tamanhoMatriz x tamanhoMatriz
-                for (int offSetX = -tamanhoMatriz / 2; offSetX <= tamanhoMatriz / 2; offSetX++) {
-                    for (int offSetY = -tamanhoMatriz / 2; offSetY <= tamanhoMatriz / 2; offSetY++) {
-                        int pixelX = x + offSetX;
-                        int pixelY = y + offSetY;
-
-                        // Verifica se o pixel vizinho está dentro dos limites da imagem
-                        if (pixelX >= 0 && pixelX < largura && pixelY >= 0 && pixelY < altura) {
-                            int pesoMatrizGaussiano = matrizGaussiana[offSetY + tamanhoMatriz / 2][offSetX + tamanhoMatriz / 2];
-                            somaRed += matrizRed[pixelY][pixelX] * pesoMatrizGaussiano;
-                            somaGreen += matrizGreen[pixelY][pixelX] * pesoMatrizGaussiano;
-                            somaBlue += matrizBlue[pixelY][pixelX] * pesoMatrizGaussiano;
-                            total += pesoMatrizGaussiano;
-                        }
-                    }
-                }
+    // aplica a operação à imagem selecionada fora da EDT e abre o resultado numa nova janela
+    private void processarImagem(String nome, Function<BufferImagem, BufferImagem> operacao) {
+        processarImagem(nome, operacao, this::gerarImagem);
+    }
 
-                // Calcula a média dos valores RGB apenas se houver vizinhos válidos
-                if (total > 0) {
-                    resultadoRed[y][x] = somaRed / total;
-                    resultadoGreen[y][x] = somaGreen / total;
-                    resultadoBlue[y][x] = somaBlue / total;
-                } else {
-                    // Se nenhum vizinho válido for encontrado, mantém o valor original
-                    resultadoRed[y][x] = matrizRed[y][x];
-                    resultadoGreen[y][x] = matrizGreen[y][x];
-                    resultadoBlue[y][x] = matrizBlue[y][x];
-                }
+    /*
+     * Só a referência à imagem é tomada na EDT; a cópia dos pixels para um
+     * BufferImagem, que numa foto grande demora tanto quanto muitas operações,
+     * é feita junto com o cálculo, já com a barra de progresso na tela.
+     *
+     * A chave junta a imagem e o nome da operação (com os parâmetros), então
+     * repetir o pedido enquanto ele ainda roda não o executa de novo.
+     */
+    private <T> void processarImagem(String nome, Function<BufferImagem, T> operacao,
+            Consumer<? super T> aoConcluir) {
+        BufferedImage imagem = imagemSelecionada;
+        processar(Arrays.asList(imagem, nome), nome, () -> {
+            if (imagem == null) {
+                throw new IllegalStateException("Nenhuma imagem selecionada.");
             }
-        }
-
-        // Gerar a imagem processada com os novos valores RGB
-        gerarImagem(resultadoRed, resultadoGreen, resultadoBlue);
-
+            BufferImagem entrada = obterEArmazenarMatrizRGB(imagem);
+            T resultado = null;
+            try {
+                resultado = operacao.apply(entrada);
+                return resultado;
+            } finally {
+                devolverEntrada(entrada, resultado);
+            }
+        }, aoConcluir);
     }
 
-    private int[][] obterMatrizGaussiana(int tamanhoMatriz) {
-        int[][] matrizGaussiana = null;
-        if (tamanhoMatriz == 3) {
-            matrizGaussiana = new int[][]{
-                {1, 2, 1},
-                {2, 4, 2},
-                {1, 2, 1}
-
-            };
-        } else if (tamanhoMatriz == 5) {
-            matrizGaussiana = new int[][]{
-                {1, 4, 7, 4, 1},
-                {4, 16, 26, 16, 4},
-                {7, 26, 41, 26, 7},
-                {4, 16, 26, 16, 4},
-                {1, 4, 7, 4, 1}
-            };
-
-        } else {
-            matrizGaussiana = new int[][]{
-                {0, 0, 1, 2, 1, 0, 0},
-                {0, 3, 13, 22, 13, 3, 0},
-                {1, 13, 59, 97, 59, 13, 1},
-                {2, 22, 97, 159, 97, 22, 2},
-                {1, 13, 59, 97, 59, 13, 1},
-                {0, 3, 13, 22, 13, 3, 0},
-                {0, 0, 1, 2, 1, 0, 0}
-            };
+    // a cópia de entrada volta ao pool, salvo quando a própria operação a devolveu como resultado
+    private static void devolverEntrada(BufferImagem entrada, Object resultado) {
+        if (entrada != resultado) {
+            PoolBuffers.get().devolver(entrada);
         }
-
-        return matrizGaussiana;
     }
 
-    private void converterImagem(List<int[][]> matrizRGB) {
-
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        int[][] matrizRed = obterMatrizVermelha();
-        int[][] matrizGreen = obterMatrizVerde();
-        int[][] matrizBlue = obterMatrizAzul();
-
-        float[][] hMatriz = new float[altura][largura];
-        float[][] sMatriz = new float[altura][largura];
-        float[][] vMatriz = new float[altura][largura];
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                float r = matrizRed[i][j] / 255.0f;
-                float g = matrizGreen[i][j] / 255.0f;
-                float b = matrizBlue[i][j] / 255.0f;
-
-                float max = Math.max(r, Math.max(g, b));
-                float min = Math.min(r, Math.min(g, b));
-
-                float v = max;
-                float s = (max == 0) ? 0 : (max - min) / max;
-                float h = 0;
-
-                if (max != min) {
-                    if (max == r) {
-                        h = (g - b) / (max - min);
-                    } else if (max == g) {
-                        h = 2 + (b - r) / (max - min);
-                    } else {
-                        h = 4 + (r - g) / (max - min);
-                    }
-
-                    h *= 60;
-                    if (h < 0) {
-                        h += 360;
-                    }
-                }
-
-                hMatriz[i][j] = h;
-                sMatriz[i][j] = s;
-                vMatriz[i][j] = v;
-            }
-        }
-
-        float[][] novoH = aumentarValorParaMaximo(hMatriz, 'h');
-        float[][] novoS = aumentarValorParaMaximo(sMatriz, 's');
-        float[][] novoV = aumentarValorParaMaximo(vMatriz, 'v');
-
-        List<int[][]> novaMatrizRGB = converterParaRGB(novoH, sMatriz, vMatriz);
-        gerarImagem("H máximo", novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
-
-        novaMatrizRGB = converterParaRGB(hMatriz, novoS, vMatriz);
-        gerarImagem("S máximo", novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
-
-        novaMatrizRGB = converterParaRGB(hMatriz, sMatriz, novoV);
-        gerarImagem("V máximo", novaMatrizRGB.get(0), novaMatrizRGB.get(1), novaMatrizRGB.get(2));
+    private <T> void processar(Object chave, String nome, Callable<T> calculo, Consumer<? super T> aoConcluir) {
+        executor.executar(chave, nome, calculo, aoConcluir, e -> {
+            String mensagem = e.getMessage() != null ? e.getMessage() : e.toString();
+            JOptionPane.showMessageDialog(this, nome + ": " + mensagem, "Erro!", JOptionPane.ERROR_MESSAGE);
+        });
     }
 
-    private float[][] aumentarValorParaMaximo(float[][] matriz, char tipo) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        float[][] novaMatriz = new float[altura][largura];
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                novaMatriz[i][j] = tipo == 'h' ? 360 : 1;
-            }
+    // mostra a primeira operação em andamento ou à espera de imagens; a barra some quando não há nenhuma
+    private void atualizarProgresso() {
+        List<ExecutorOperacoes.Tarefa<?>> ativas = executor.getAtivas();
+        List<CoordenadorImagens.Pedido> pendentes = coordenador.getPendentes();
+        if (ativas.isEmpty() && pendentes.isEmpty()) {
+            jPanelProgresso.setVisible(false);
+            return;
         }
-
-        return novaMatriz;
-    }
-
-    private List<int[][]> converterParaRGB(float[][] hMatriz, float[][] sMatriz, float[][] vMatriz) {
-        int largura = imagemSelecionada.getWidth();
-        int altura = imagemSelecionada.getHeight();
-
-        int[][] rMatriz = new int[altura][largura];
-        int[][] gMatriz = new int[altura][largura];
-        int[][] bMatriz = new int[altura][largura];
-
-        for (int i = 0; i < altura; i++) {
-            for (int j = 0; j < largura; j++) {
-                float h = hMatriz[i][j];
-                float s = sMatriz[i][j];
-                float v = vMatriz[i][j];
-
-                float c = v * s;
-                float x = c * (1 - Math.abs((h / 60) % 2 - 1));
-                float m = v - c;
-
-                float r = 0, g = 0, b = 0;
-
-                if (h >= 0 && h < 60) {
-                    r = c;
-                    g = x;
-                } else if (h < 120) {
-                    r = x;
-                    g = c;
-                } else if (h < 180) {
-                    g = c;
-                    b = x;
-                } else if (h < 240) {
-                    g = x;
-                    b = c;
-                } else if (h < 300) {
-                    r = x;
-                    b = c;
-                } else if (h < 360) {
-                    r = c;
-                    b = x;
-                }
-
-                rMatriz[i][j] = Math.round((r + m) * 255);
-                gMatriz[i][j] = Math.round((g + m) * 255);
-                bMatriz[i][j] = Math.round((b + m) * 255);
-            }
+        if (ativas.isEmpty()) {
+            CoordenadorImagens.Pedido pedido = pendentes.get(0);
+            jProgressBar.setValue(100 * pedido.getRecebidas() / pedido.getQuantidade());
+            jProgressBar.setString(pedido.getNome() + ": tecle Enter em " + pedido.getQuantidade()
+                    + " imagens (" + pedido.getRecebidas() + " escolhida(s))");
+            jPanelProgresso.setVisible(true);
+            return;
         }
-
-        return new LinkedList<>(List.of(rMatriz, gMatriz, bMatriz));
+        ExecutorOperacoes.Tarefa<?> tarefa = ativas.get(0);
+        int etapa = Math.max(1, tarefa.getEtapa());
+        int porcento = (int) Math.round(tarefa.getProgresso() * 100);
+        String texto = tarefa.getNome() + (etapa > 1 ? " (etapa " + etapa + ")" : "") + " - " + porcento + "%";
+        if (ativas.size() > 1) {
+            texto += " + " + (ativas.size() - 1) + " na fila";
+        }
+        jProgressBar.setValue(porcento);
+        jProgressBar.setString(texto);
+        jPanelProgresso.setVisible(true);
     }
 
     public ImageIFMG() {
@@ -1027,12 +413,20 @@ public class ImageIFMG extends JFrame {
         jMenuSalvar = new JMenu("Salvar");
         jMenuItemAbrirImagem = new JMenuItem("Abrir uma imagem de arquivo");
         jMenuItemCriarInternalFrame = new JMenuItem("Internal Frame");
-        jMenuItemsProcessar = new JMenuItem[18];
+        jMenuItemsProcessar = new JMenuItem[30];
         jMenuItemSalvar = new JMenuItem("Salvar Imagem");
+        jPanelProgresso = new JPanel(new BorderLayout());
+        jProgressBar = new JProgressBar(0, 100);
+        jProgressBar.setStringPainted(true);
+        jButtonCancelar = new JButton("Cancelar");
     }
 
     private void adicionarComponentes() {
         getContentPane().add(jDesktopPaneImagem);
+        jPanelProgresso.add(jProgressBar, BorderLayout.CENTER);
+        jPanelProgresso.add(jButtonCancelar, BorderLayout.EAST);
+        jPanelProgresso.setVisible(false);
+        getContentPane().add(jPanelProgresso, BorderLayout.SOUTH);
         jMenuAbrir.add(jMenuItemAbrirImagem);
         jMenuAbrir.add(jMenuItemCriarInternalFrame);
         jMenuSalvar.add(jMenuItemSalvar);
@@ -1042,7 +436,10 @@ public class ImageIFMG extends JFrame {
         setJMenuBar(jMenuBar);
         String[] menuItemTexts = {"Escala de cinza", "Imagem binária", "Negativa", "Cor dominante", "Cinza escuro",
             "Cinza claro", "Escolha do usuário", "Qual o dispositivo", "Redimensionar", "Rotacionar",
-            "Converter Formato", "União", "Interseção", "Rotacionar Personalizado", "Filtro Média", "Filtro Gaussiano", "Filtro da Mediana", "Filtro Sobel"};
+            "Converter Formato", "União", "Interseção", "Rotacionar Personalizado", "Filtro Média", "Filtro Gaussiano", "Filtro da Mediana", "Filtro Sobel", "Cadeia de Operações",
+            "Girar 90° à Esquerda", "Girar 90° à Direita", "Girar 180°", "Espelhar Horizontal",
+            "Espelhar Vertical", "Diferença", "Mesclar", "Ou exclusivo", "Binária (Otsu)",
+            "Binária adaptativa", "Rotular objetos"};
         for (int i = 0; i < menuItemTexts.length; i++) {
             jMenuItemsProcessar[i] = new JMenuItem(menuItemTexts[i]);
             jMenuProcessar.add(jMenuItemsProcessar[i]);
@@ -1050,26 +447,42 @@ public class ImageIFMG extends JFrame {
     }
 
     private void criarListeners() {
-        jMenuItemsProcessar[0].addActionListener(e -> escalaCinza(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[1].addActionListener(e -> imagemBinaria(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[2].addActionListener(e -> imagemNegativa(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[3].addActionListener(e -> corDominante(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[4].addActionListener(e -> escalaCinzaEscuro(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[5].addActionListener(e -> escalaCinzaClaro(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[6].addActionListener(e -> escolhaDoUsuario(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[7].addActionListener(e -> qualODispositivo(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[8].addActionListener(e -> redimensionarImagem(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[9].addActionListener(e -> rotacionarImagem(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[10].addActionListener(e -> converterImagem(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[11].addActionListener(e -> fazerUniao(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[12].addActionListener(e -> fazerIntersecao(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[13].addActionListener(e -> rotacionarPersonalizado(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[14].addActionListener(e -> FiltroMedia(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[15].addActionListener(e -> FiltroGaussiano(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[16].addActionListener(e -> FiltroMediana(obterEArmazenarMatrizRGB()));
-        jMenuItemsProcessar[17].addActionListener(e -> filtroSobel(obterEArmazenarMatrizRGB()));
+        jMenuItemsProcessar[0].addActionListener(e -> escalaCinza());
+        jMenuItemsProcessar[1].addActionListener(e -> imagemBinaria());
+        jMenuItemsProcessar[2].addActionListener(e -> imagemNegativa());
+        jMenuItemsProcessar[3].addActionListener(e -> corDominante());
+        jMenuItemsProcessar[4].addActionListener(e -> escalaCinzaEscuro());
+        jMenuItemsProcessar[5].addActionListener(e -> escalaCinzaClaro());
+        jMenuItemsProcessar[6].addActionListener(e -> escolhaDoUsuario());
+        jMenuItemsProcessar[7].addActionListener(e -> qualODispositivo());
+        jMenuItemsProcessar[8].addActionListener(e -> redimensionarImagem());
+        jMenuItemsProcessar[9].addActionListener(e -> rotacionarImagem());
+        jMenuItemsProcessar[10].addActionListener(e -> converterImagem());
+        jMenuItemsProcessar[11].addActionListener(e -> fazerUniao());
+        jMenuItemsProcessar[12].addActionListener(e -> fazerIntersecao());
+        jMenuItemsProcessar[13].addActionListener(e -> rotacionarPersonalizado());
+        jMenuItemsProcessar[14].addActionListener(e -> FiltroMedia());
+        jMenuItemsProcessar[15].addActionListener(e -> FiltroGaussiano());
+        jMenuItemsProcessar[16].addActionListener(e -> FiltroMediana());
+        jMenuItemsProcessar[17].addActionListener(e -> filtroSobel());
+        jMenuItemsProcessar[18].addActionListener(e -> cadeiaDeOperacoes());
+        jMenuItemsProcessar[19].addActionListener(e -> orientar(Orientacao.ROTACAO_90));
+        jMenuItemsProcessar[20].addActionListener(e -> orientar(Orientacao.ROTACAO_270));
+        jMenuItemsProcessar[21].addActionListener(e -> orientar(Orientacao.ROTACAO_180));
+        jMenuItemsProcessar[22].addActionListener(e -> orientar(Orientacao.ESPELHO_HORIZONTAL));
+        jMenuItemsProcessar[23].addActionListener(e -> orientar(Orientacao.ESPELHO_VERTICAL));
+        jMenuItemsProcessar[24].addActionListener(e -> fazerDiferenca());
+        jMenuItemsProcessar[25].addActionListener(e -> mesclarImagens());
+        jMenuItemsProcessar[26].addActionListener(e -> fazerOuExclusivo());
+        jMenuItemsProcessar[27].addActionListener(e -> binariaOtsu());
+        jMenuItemsProcessar[28].addActionListener(e -> binariaAdaptativa());
+        jMenuItemsProcessar[29].addActionListener(e -> rotularObjetos());
 
         jMenuItemSalvar.addActionListener(e -> salvarImagem());
+        jButtonCancelar.addActionListener(e -> {
+            coordenador.cancelarTodos();
+            executor.cancelarTodas();
+        });
         jMenuItemCriarInternalFrame.addActionListener((e) -> {
             JInternalFrame frame = new JInternalFrame("Exemplo", true, true, true, true);
             JPanelImagem panel = new JPanelImagem(imagemSelecionada);
@@ -1089,7 +502,6 @@ public class ImageIFMG extends JFrame {
             String caminho = fileChooser.getSelectedFile().getAbsolutePath();
             try {
                 imagemSelecionada = ImageIO.read(new File(caminho));
-                imagens.add(imagemSelecionada);
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -1117,79 +529,52 @@ public class ImageIFMG extends JFrame {
         }
     }
 
-    public List<int[][]> obterEArmazenarMatrizRGB() {
-        return obterEArmazenarMatrizRGB(imagemSelecionada);
-    }
-
-    // ler matrizes da imagem
-    public List<int[][]> obterEArmazenarMatrizRGB(BufferedImage imagem) {
-        int altura = imagem.getHeight();
-        int largura = imagem.getWidth();
-
-        int[][] redMatriz = new int[altura][largura];
-        int[][] greenMatriz = new int[altura][largura];
-        int[][] blueMatriz = new int[altura][largura];
-
-        for (int imagemLinha = 0; imagemLinha < altura; imagemLinha++) {
-            for (int imagemColuna = 0; imagemColuna < largura; imagemColuna++) {
-                redMatriz[imagemLinha][imagemColuna] = obterPixelData(imagem, imagemColuna, imagemLinha)[0];
-                greenMatriz[imagemLinha][imagemColuna] = obterPixelData(imagem, imagemColuna, imagemLinha)[1];
-                blueMatriz[imagemLinha][imagemColuna] = obterPixelData(imagem, imagemColuna, imagemLinha)[2];
-            }
-        }
-
-        List<int[][]> pixeisRGB = new LinkedList<>(List.of(redMatriz, greenMatriz, blueMatriz));
-        if (imagemSelecionada == imagem) {
-            matrizRGB = pixeisRGB;
-        }
-        return pixeisRGB;
+    // ler pixels da imagem
+    public BufferImagem obterEArmazenarMatrizRGB(BufferedImage imagem) {
+        return BufferImagem.deImagem(imagem);
     }
 
-    // cria imagem da matriz
-    private void gerarImagem(int matrizRed[][], int matrizGreen[][], int matrizBlue[][]) {
-        gerarImagem("Processada", matrizRed, matrizGreen, matrizBlue);
+    // cria imagem do buffer
+    private void gerarImagem(BufferImagem buffer) {
+        gerarImagem("Processada", buffer);
     }
 
-    private void gerarImagem(String titulo, int matrizRed[][], int matrizGreen[][], int matrizBlue[][]) {
-        int[] pixels = new int[matrizRed.length * matrizRed[0].length * 3];
-        BufferedImage novaImagem = new BufferedImage(matrizRed[0].length, matrizRed.length, BufferedImage.TYPE_INT_RGB);
-        WritableRaster raster = novaImagem.getRaster();
-        int posicao = 0;
-        for (int imagemLinha = 0; imagemLinha < matrizRed.length; imagemLinha++) {
-            for (int imagemColuna = 0; imagemColuna < matrizRed[0].length; imagemColuna++) {
-                pixels[posicao] = matrizRed[imagemLinha][imagemColuna];
-                pixels[posicao + 1] = matrizGreen[imagemLinha][imagemColuna];
-                pixels[posicao + 2] = matrizBlue[imagemLinha][imagemColuna];
-                posicao += 3;
-            }
-        }
-        raster.setPixels(0, 0, matrizRed[0].length, matrizRed.length, pixels);
-        imagens.add(novaImagem);
+    private void gerarImagem(String titulo, BufferImagem buffer) {
+        BufferedImage novaImagem = buffer.paraImagem();
         criarJanelaDaImagem(novaImagem, titulo);
     }
 
     private void criarJanelaDaImagem(BufferedImage novaImagem, String titulo) {
         int antigaLarguraImagem = novaImagem.getWidth();
         int antigaAlturaImagem = novaImagem.getHeight();
-        int novaLarguraFrame;
-        int novaAlturaFrame;
-//        if(antigaLarguraImagem > antigaAlturaImagem) {
-//            novaLarguraFrame = LARGURA_JANELA * 8 / 10;
-//            novaAlturaFrame = antigaAlturaImagem * novaLarguraFrame / antigaLarguraImagem;
-//        }
-//        else {
-//            novaAlturaFrame = ALTURA_JANELA * 8 / 10;
-//            novaLarguraFrame = antigaLarguraImagem * novaAlturaFrame / antigaAlturaImagem;
-//        }
-//      
-//        Image imagemRedimensionada = novaImagem.getScaledInstance(novaLarguraFrame, novaAlturaFrame, java.awt.Image.SCALE_SMOOTH);
+        int larguraJanela = jDesktopPaneImagem.getWidth() > 0 ? jDesktopPaneImagem.getWidth() : LARGURA_JANELA;
+        int alturaJanela = jDesktopPaneImagem.getHeight() > 0 ? jDesktopPaneImagem.getHeight() : ALTURA_JANELA;
+        int novaLarguraFrame = antigaLarguraImagem;
+        int novaAlturaFrame = antigaAlturaImagem;
+        // imagens maiores que 80% da janela abrem reduzidas, mantendo a proporção
+        if (novaLarguraFrame > larguraJanela * 8 / 10) {
+            novaLarguraFrame = larguraJanela * 8 / 10;
+            novaAlturaFrame = antigaAlturaImagem * novaLarguraFrame / antigaLarguraImagem;
+        }
+        if (novaAlturaFrame > alturaJanela * 8 / 10) {
+            novaAlturaFrame = alturaJanela * 8 / 10;
+            novaLarguraFrame = antigaLarguraImagem * novaAlturaFrame / antigaAlturaImagem;
+        }
+
         JInternalFrame frame = new JInternalFrame(titulo, true, true, true, true);
         JPanelImagem panel = new JPanelImagem(novaImagem);
-//        JPanelImagem panel = new JPanelImagem(new ImageIcon(imagemRedimensionada));
+        panel.setPreferredSize(new Dimension(Math.max(1, novaLarguraFrame), Math.max(1, novaAlturaFrame)));
         frame.getContentPane().add(panel, BorderLayout.CENTER);
         frame.pack();
         jDesktopPaneImagem.add(frame);
 
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                panel.descartarPiramide();
+            }
+        });
+
         frame.addFocusListener(new FocusListener() {
             @Override
             public void focusGained(FocusEvent e) {
@@ -1202,39 +587,27 @@ public class ImageIFMG extends JFrame {
             }
         });
 
-        panel.addKeyListener(new KeyListener() {
+        // Enter escolhe a imagem para a operação de várias imagens em espera; Esc desiste
+        panel.setFocusable(true);
+        panel.addMouseListener(new MouseAdapter() {
             @Override
-            public void keyTyped(KeyEvent e) {
-                if (e.equals(KeyEvent.VK_ENTER)) {
-                    //provedorImagensGlobal.atualizarProvedores(panel.getImage());
-                }
+            public void mousePressed(MouseEvent e) {
+                panel.requestFocusInWindow();
             }
-
+        });
+        panel.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-            }
-
-            @Override
-            public void keyReleased(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    coordenador.oferecer(panel.getImage());
+                } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    coordenador.cancelarTodos();
+                }
             }
         });
 
         frame.setVisible(true);
         frame.requestFocus();
-
-        if (titulo.equals("PintarImagem")) {
-            new Thread(() -> {
-                try {
-                    Thread.sleep(3000);
-                    panel.setImageIcon(imagens.get(0));
-                    panel.repaint();
-
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(ImageIFMG.class
-                            .getName()).log(Level.SEVERE, null, ex);
-                }
-            }).start();
-        }
     }
 
     public BufferedImage obterImagemDoFrameAtual() {
@@ -1248,56 +621,46 @@ public class ImageIFMG extends JFrame {
         return null;
     }
 
-    public int[][] obterMatrizVermelha() {
-        return matrizRGB.get(0);
-    }
-
-    public int[][] obterMatrizVerde() {
-        return matrizRGB.get(1);
-    }
-
-    public int[][] obterMatrizAzul() {
-        return matrizRGB.get(2);
-    }
-
-    private static int[] obterPixelData(BufferedImage imagem, int x, int y) {
-        int argb = imagem.getRGB(x, y);
-        int rgb[] = new int[]{(argb >> 16) & 0xff, // red
-            (argb >> 8) & 0xff, // green
-            (argb) & 0xff // blue
-    };
-        return rgb;
-
-    }
-
+    // desenha a imagem ajustada ao painel a partir do nível da pirâmide mais próximo do tamanho na tela
     class JPanelImagem extends JPanel {
 
-        private ImageIcon imageIcon;
-        private BufferedImage bufferedImage;
+        private final PiramideImagem piramide;
 
         public JPanelImagem(BufferedImage bufferedImage) {
-            this.bufferedImage = bufferedImage;
-            this.imageIcon = new ImageIcon(bufferedImage);
+            this.piramide = new PiramideImagem(bufferedImage);
         }
 
-        public void setImageIcon(BufferedImage bufferedImage) {
-            this.bufferedImage = bufferedImage;
-            this.imageIcon = new ImageIcon(bufferedImage);
+        public BufferedImage getImage() {
+            return piramide.getOriginal();
         }
 
-        public BufferedImage getImage() {
-            return bufferedImage;
+        void descartarPiramide() {
+            piramide.descartar();
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            super.paintComponents(g);
-            imageIcon.paintIcon(this, g, 0, 0);
+            super.paintComponent(g);
+            BufferedImage original = piramide.getOriginal();
+            double escala = Math.min((double) getWidth() / original.getWidth(),
+                    (double) getHeight() / original.getHeight());
+            int largura = Math.max(1, (int) Math.round(original.getWidth() * escala));
+            int altura = Math.max(1, (int) Math.round(original.getHeight() * escala));
+            // um nível que ainda não existe é criado fora da EDT e o painel é redesenhado quando ficar pronto
+            BufferedImage nivel = piramide.nivelPara(largura, altura, this::repaint);
+
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(nivel, 0, 0, largura, altura, null);
         }
 
         @Override
         public Dimension getPreferredSize() {
-            return new Dimension(imageIcon.getIconWidth(), imageIcon.getIconHeight());
+            if (isPreferredSizeSet()) {
+                return super.getPreferredSize();
+            }
+            BufferedImage original = piramide.getOriginal();
+            return new Dimension(original.getWidth(), original.getHeight());
         }
     }
 
@@ -0,0 +1,80 @@
+/**
+ * Imagem com giros e espelhos pendentes: cada operação só compõe a orientação,
+ * sem tocar nos pixels, e materializar() faz uma única cópia com o resultado
+ * de todas elas.
+ *
+ * Útil para corrigir a orientação de fotos de câmera, em que vários ajustes
+ * seguidos costumam se anular ou se reduzir a um só.
+ */
+public final class ImagemOrientada {
+
+    private final BufferImagem original;
+    private final Orientacao orientacao;
+    // usada por getRGB em cada pixel
+    private final Orientacao inversa;
+
+    public ImagemOrientada(BufferImagem original) {
+        this(original, Orientacao.IDENTIDADE);
+    }
+
+    public ImagemOrientada(BufferImagem original, Orientacao orientacao) {
+        this.original = original;
+        this.orientacao = orientacao;
+        this.inversa = orientacao.inversa();
+    }
+
+    public BufferImagem getOriginal() {
+        return original;
+    }
+
+    public Orientacao getOrientacao() {
+        return orientacao;
+    }
+
+    public int getLargura() {
+        return orientacao.larguraResultado(original.getLargura(), original.getAltura());
+    }
+
+    public int getAltura() {
+        return orientacao.alturaResultado(original.getLargura(), original.getAltura());
+    }
+
+    public ImagemOrientada orientar(Orientacao outra) {
+        return new ImagemOrientada(original, orientacao.depois(outra));
+    }
+
+    public ImagemOrientada rotacionar90() {
+        return orientar(Orientacao.ROTACAO_90);
+    }
+
+    public ImagemOrientada rotacionar180() {
+        return orientar(Orientacao.ROTACAO_180);
+    }
+
+    public ImagemOrientada rotacionar270() {
+        return orientar(Orientacao.ROTACAO_270);
+    }
+
+    public ImagemOrientada espelharHorizontal() {
+        return orientar(Orientacao.ESPELHO_HORIZONTAL);
+    }
+
+    public ImagemOrientada espelharVertical() {
+        return orientar(Orientacao.ESPELHO_VERTICAL);
+    }
+
+    public ImagemOrientada transpor() {
+        return orientar(Orientacao.TRANSPOSTA);
+    }
+
+    // pixel já orientado, lido direto da original
+    public int getRGB(int x, int y) {
+        int indice = inversa.mapear(x, y, getLargura(), getAltura());
+        return original.getRGB(indice % original.getLargura(), indice / original.getLargura());
+    }
+
+    // sem orientação pendente devolve a própria original, sem copiar
+    public BufferImagem materializar() {
+        return orientacao == Orientacao.IDENTIDADE ? original : orientacao.aplicar(original);
+    }
+}
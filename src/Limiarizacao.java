@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * Binarização por limiar global (Otsu) ou local (média, gaussiana e Sauvola),
+ * sobre o nível de cinza médio dos canais, como imagemBinaria.
+ *
+ * Em todos os métodos o pixel fica preto quando o nível é no máximo o limiar.
+ * Os limiares locais usam janelas truncadas nas bordas. Média e Sauvola vêm de
+ * imagens integrais montadas por blocos de linhas de cada faixa (com o halo da
+ * janela), então o custo por pixel não depende do tamanho da janela; a
+ * gaussiana é aproximada por três médias deslizantes seguidas, também de custo
+ * constante.
+ */
+public final class Limiarizacao {
+
+    public enum Metodo {
+        MEDIA, GAUSSIANA, SAUVOLA
+    }
+
+    private static final int NIVEIS = 256;
+    // as somas da integral são int com estouro: a diferença de quatro cantos é exata enquanto a janela somar menos
+    // de 2^32, ou seja até 16843009 pixels de 255
+    private static final long AREA_MAXIMA = (1L << 32) / 255;
+    // linhas por bloco de integral dentro de uma faixa (ao menos quatro raios), para limitar a memória
+    private static final int LINHAS_BLOCO = 256;
+    // faixa dinâmica do desvio padrão no método de Sauvola
+    private static final double DESVIO_MAXIMO = 128;
+
+    private Limiarizacao() {
+    }
+
+    // contagem de cada nível de cinza, numa única passada em faixas
+    public static long[] histograma(BufferImagem buffer) {
+        int largura = buffer.getLargura();
+        long[] histograma = new long[NIVEIS];
+        ExecutorFaixas.executar(largura, buffer.getAltura(), (inicio, fim) -> {
+            int[] local = new int[NIVEIS];
+            for (int y = inicio; y < fim; y++) {
+                int i = buffer.indice(0, y);
+                if (buffer.isCinza()) {
+                    byte[] cinza = buffer.getDadosCinza();
+                    for (int x = 0; x < largura; x++) {
+                        local[cinza[i + x] & 0xff]++;
+                    }
+                } else {
+                    int[] pixels = buffer.getDadosRGB();
+                    for (int x = 0; x < largura; x++) {
+                        local[BufferImagem.media(pixels[i + x])]++;
+                    }
+                }
+            }
+            synchronized (histograma) {
+                for (int v = 0; v < NIVEIS; v++) {
+                    histograma[v] += local[v];
+                }
+            }
+        });
+        return histograma;
+    }
+
+    // limiar que maximiza a variância entre as classes "<= limiar" e "> limiar"
+    public static int limiarOtsu(long[] histograma) {
+        long total = 0;
+        double somaTotal = 0;
+        for (int v = 0; v < NIVEIS; v++) {
+            total += histograma[v];
+            somaTotal += (double) v * histograma[v];
+        }
+        long pesoEscuro = 0;
+        double somaEscuro = 0;
+        double melhorVariancia = -1;
+        int melhor = 0;
+        for (int t = 0; t < NIVEIS - 1; t++) {
+            pesoEscuro += histograma[t];
+            somaEscuro += (double) t * histograma[t];
+            long pesoClaro = total - pesoEscuro;
+            if (pesoEscuro == 0 || pesoClaro == 0) {
+                continue;
+            }
+            double diferenca = somaEscuro / pesoEscuro - (somaTotal - somaEscuro) / pesoClaro;
+            double variancia = (double) pesoEscuro * pesoClaro * diferenca * diferenca;
+            if (variancia > melhorVariancia) {
+                melhorVariancia = variancia;
+                melhor = t;
+            }
+        }
+        return melhor;
+    }
+
+    public static int limiarOtsu(BufferImagem buffer) {
+        return limiarOtsu(histograma(buffer));
+    }
+
+    public static MascaraBinaria otsu(BufferImagem buffer) {
+        return MascaraBinaria.limiarizar(buffer, limiarOtsu(buffer));
+    }
+
+    // preto onde o nível é no máximo a média da janela menos a constante
+    public static MascaraBinaria media(BufferImagem buffer, int tamanhoJanela, int constante) {
+        return local(buffer, tamanhoJanela, (soma, quadrados, area) -> (int) (soma / area) - constante, false);
+    }
+
+    /*
+     * Sauvola: limiar = m * (1 + k * (s / 128 - 1)), com m e s a média e o
+     * desvio padrão da janela. Resiste a fundos com iluminação desigual;
+     * k costuma ficar entre 0,2 e 0,5.
+     */
+    public static MascaraBinaria sauvola(BufferImagem buffer, int tamanhoJanela, double k) {
+        return local(buffer, tamanhoJanela, (soma, quadrados, area) -> {
+            double media = (double) soma / area;
+            double desvio = Math.sqrt(Math.max(0, (double) quadrados / area - media * media));
+            return (int) Math.floor(media * (1 + k * (desvio / DESVIO_MAXIMO - 1)));
+        }, true);
+    }
+
+    // como media, com a média ponderada por uma gaussiana de sigma 0,3 * ((tamanho - 1) / 2 - 1) + 0,8
+    public static MascaraBinaria gaussiana(BufferImagem buffer, int tamanhoJanela, int constante) {
+        validarJanela(tamanhoJanela);
+        double sigma = 0.3 * ((tamanhoJanela - 1) * 0.5 - 1) + 0.8;
+        // três caixas de lado 2r + 1 somam variância 3 * ((2r + 1)^2 - 1) / 12 = sigma^2
+        int raio = Math.max(0, (int) Math.round((Math.sqrt(4 * sigma * sigma + 1) - 1) / 2));
+        BufferImagem cinza = paraCinza(buffer);
+        PoolBuffers pool = PoolBuffers.get();
+        BufferImagem suavizada = pool.criarCinza(buffer.getLargura(), buffer.getAltura());
+        BufferImagem auxiliar = pool.criarCinza(buffer.getLargura(), buffer.getAltura());
+        try {
+            FiltroMediaDeslizante.aplicar(cinza, suavizada, raio);
+            FiltroMediaDeslizante.aplicar(suavizada, auxiliar, raio);
+            FiltroMediaDeslizante.aplicar(auxiliar, suavizada, raio);
+            return limiarizarPorImagem(cinza, suavizada, constante);
+        } finally {
+            pool.devolver(auxiliar);
+            pool.devolver(suavizada);
+            if (cinza != buffer) {
+                pool.devolver(cinza);
+            }
+        }
+    }
+
+    public static MascaraBinaria aplicar(BufferImagem buffer, Metodo metodo, int tamanhoJanela, double parametro) {
+        switch (metodo) {
+            case MEDIA:
+                return media(buffer, tamanhoJanela, (int) Math.round(parametro));
+            case GAUSSIANA:
+                return gaussiana(buffer, tamanhoJanela, (int) Math.round(parametro));
+            default:
+                return sauvola(buffer, tamanhoJanela, parametro);
+        }
+    }
+
+    @FunctionalInterface
+    private interface LimiarJanela {
+
+        // soma e soma dos quadrados dos níveis dos area pixels da janela
+        int calcular(long soma, long quadrados, int area);
+    }
+
+    private static MascaraBinaria local(BufferImagem buffer, int tamanhoJanela, LimiarJanela limiar,
+            boolean comQuadrados) {
+        validarJanela(tamanhoJanela);
+        BufferImagem cinza = paraCinza(buffer);
+        try {
+            int largura = cinza.getLargura();
+            int altura = cinza.getAltura();
+            int raio = tamanhoJanela / 2;
+            MascaraBinaria mascara = new MascaraBinaria(largura, altura);
+            int linhasBloco = Math.max(LINHAS_BLOCO, 4 * raio);
+            ExecutorFaixas.executar(largura, altura, raio, (inicio, fim) -> {
+                int tamanho = (Math.min(linhasBloco, fim - inicio) + 2 * raio + 1) * (largura + 1);
+                PoolBuffers pool = PoolBuffers.get();
+                // os quadrados passam de 2^32 em janelas de poucos milhares de pixels, então ficam em long
+                try (PoolBuffers.Emprestimo<int[]> somas = pool.emprestarInteiros(tamanho);
+                        PoolBuffers.Emprestimo<int[]> limiares = pool.emprestarInteiros(largura);
+                        PoolBuffers.Emprestimo<long[]> quadrados = comQuadrados ? pool.emprestarLongos(tamanho)
+                                : null) {
+                    for (int bloco = inicio; bloco < fim; bloco += linhasBloco) {
+                        limiarizarBloco(cinza, mascara, raio, limiar, somas.get(),
+                                quadrados == null ? null : quadrados.get(), limiares.get(), bloco,
+                                Math.min(fim, bloco + linhasBloco));
+                    }
+                }
+            });
+            return mascara;
+        } finally {
+            if (cinza != buffer) {
+                PoolBuffers.get().devolver(cinza);
+            }
+        }
+    }
+
+    /*
+     * Integral das linhas [inicio - raio, fim + raio) do bloco: a posição
+     * (y, x) guarda a soma do retângulo de cima à esquerda até a linha y - 1 e
+     * a coluna x - 1 dessa janela de linhas.
+     */
+    private static void limiarizarBloco(BufferImagem cinza, MascaraBinaria mascara, int raio, LimiarJanela limiar,
+            int[] somas, long[] quadrados, int[] limiares, int inicio, int fim) {
+        int largura = cinza.getLargura();
+        int altura = cinza.getAltura();
+        byte[] dados = cinza.getDadosCinza();
+        int primeira = Math.max(0, inicio - raio);
+        int ultima = Math.min(altura, fim + raio);
+        int colunas = largura + 1;
+        Arrays.fill(somas, 0, colunas, 0);
+        if (quadrados != null) {
+            Arrays.fill(quadrados, 0, colunas, 0);
+        }
+        for (int y = primeira; y < ultima; y++) {
+            int origem = cinza.indice(0, y);
+            int acima = (y - primeira) * colunas;
+            int linha = acima + colunas;
+            int somaLinha = 0;
+            long quadradosLinha = 0;
+            somas[linha] = 0;
+            for (int x = 0; x < largura; x++) {
+                int v = dados[origem + x] & 0xff;
+                somaLinha += v;
+                somas[linha + x + 1] = somas[acima + x + 1] + somaLinha;
+            }
+            if (quadrados != null) {
+                quadrados[linha] = 0;
+                for (int x = 0; x < largura; x++) {
+                    int v = dados[origem + x] & 0xff;
+                    quadradosLinha += v * v;
+                    quadrados[linha + x + 1] = quadrados[acima + x + 1] + quadradosLinha;
+                }
+            }
+        }
+
+        for (int y = inicio; y < fim; y++) {
+            int topo = (Math.max(0, y - raio) - primeira) * colunas;
+            int base = (Math.min(altura, y + raio + 1) - primeira) * colunas;
+            int linhas = (base - topo) / colunas;
+            for (int x = 0; x < largura; x++) {
+                int esquerda = Math.max(0, x - raio);
+                int direita = Math.min(largura, x + raio + 1);
+                int area = linhas * (direita - esquerda);
+                long soma = Integer.toUnsignedLong(somas[base + direita] - somas[topo + direita]
+                        - somas[base + esquerda] + somas[topo + esquerda]);
+                long somaQuadrados = quadrados == null ? 0 : quadrados[base + direita] - quadrados[topo + direita]
+                        - quadrados[base + esquerda] + quadrados[topo + esquerda];
+                limiares[x] = limitar(limiar.calcular(soma, somaQuadrados, area));
+            }
+            mascara.limiarizarLinha(y, dados, cinza.indice(0, y), limiares);
+        }
+    }
+
+    // preto onde o nível é no máximo o da imagem suavizada menos a constante
+    private static MascaraBinaria limiarizarPorImagem(BufferImagem cinza, BufferImagem suavizada, int constante) {
+        int largura = cinza.getLargura();
+        MascaraBinaria mascara = new MascaraBinaria(largura, cinza.getAltura());
+        byte[] niveis = suavizada.getDadosCinza();
+        ExecutorFaixas.executar(largura, cinza.getAltura(), (inicio, fim) -> {
+            try (PoolBuffers.Emprestimo<int[]> emprestimo = PoolBuffers.get().emprestarInteiros(largura)) {
+                int[] limiares = emprestimo.get();
+                for (int y = inicio; y < fim; y++) {
+                    int i = suavizada.indice(0, y);
+                    for (int x = 0; x < largura; x++) {
+                        limiares[x] = limitar((niveis[i + x] & 0xff) - constante);
+                    }
+                    mascara.limiarizarLinha(y, cinza.getDadosCinza(), cinza.indice(0, y), limiares);
+                }
+            }
+        });
+        return mascara;
+    }
+
+    private static void validarJanela(int tamanhoJanela) {
+        if (tamanhoJanela < 1 || (long) tamanhoJanela * tamanhoJanela > AREA_MAXIMA) {
+            throw new IllegalArgumentException("Tamanho de janela inválido: " + tamanhoJanela);
+        }
+    }
+
+    // o próprio buffer se já for de cinza; senão, um buffer do pool com a média dos canais
+    private static BufferImagem paraCinza(BufferImagem buffer) {
+        return buffer.isCinza() ? buffer : ProcessadorImagem.escalaCinza(buffer);
+    }
+
+    // -1 deixa tudo branco e 255 tudo preto; evita estouro na comparação de MascaraBinaria
+    private static int limitar(int limiar) {
+        return Math.max(-1, Math.min(255, limiar));
+    }
+}
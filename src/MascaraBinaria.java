@@ -0,0 +1,360 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Imagem binária com um bit por pixel, guardada em linhas de long.
+ *
+ * Um bit ligado é um pixel preto (o objeto, como em ProcessadorImagem.uniao).
+ * União, interseção, ou exclusivo, diferença e negação tratam 64 pixels por
+ * operação de long, e a área é contada com Long.bitCount. Os bits que sobram
+ * depois da largura na última palavra de cada linha ficam sempre desligados.
+ *
+ * As palavras vêm de PoolBuffers; devolver() as entrega de volta quando a
+ * máscara era só um passo intermediário, e depois disso ela não pode mais ser
+ * usada.
+ */
+public final class MascaraBinaria {
+
+    private enum Operacao {
+        UNIAO, INTERSECAO, OU_EXCLUSIVO, DIFERENCA
+    }
+
+    private final int largura;
+    private final int altura;
+    private final int palavrasPorLinha;
+    private final int palavras;
+    private final long[] bits;
+
+    // toda branca
+    public MascaraBinaria(int largura, int altura) {
+        this(largura, altura, true);
+    }
+
+    // sem limpar, para quem vai escrever todas as palavras
+    private MascaraBinaria(int largura, int altura, boolean limpar) {
+        if (largura < 0 || altura < 0) {
+            throw new IllegalArgumentException("Tamanho inválido: " + largura + "x" + altura);
+        }
+        this.largura = largura;
+        this.altura = altura;
+        this.palavrasPorLinha = (largura + 63) >>> 6;
+        long total = (long) palavrasPorLinha * altura;
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Máscara grande demais: " + largura + "x" + altura);
+        }
+        this.palavras = (int) total;
+        // o array do pool pode ser maior e vem com conteúdo indefinido
+        this.bits = PoolBuffers.get().obterLongos(palavras);
+        if (limpar) {
+            Arrays.fill(bits, 0, palavras, 0);
+        }
+    }
+
+    // preto onde a média dos canais é no máximo limite, como ProcessadorImagem.BINARIA com limite 127
+    public static MascaraBinaria limiarizar(BufferImagem buffer, int limite) {
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        MascaraBinaria mascara = new MascaraBinaria(largura, altura, false);
+        // média = soma / 3 arredondada para baixo, então média <= limite equivale a soma <= 3 * limite + 2
+        int somaMaxima = 3 * limite + 2;
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int origem = buffer.indice(0, y);
+                int palavra = y * mascara.palavrasPorLinha;
+                for (int x = 0; x < largura; x += 64, palavra++) {
+                    int quantidade = Math.min(64, largura - x);
+                    mascara.bits[palavra] = buffer.isCinza()
+                            ? palavraCinza(buffer.getDadosCinza(), origem + x, quantidade, limite)
+                            : palavraRGB(buffer.getDadosRGB(), origem + x, quantidade, somaMaxima);
+                }
+            }
+        });
+        return mascara;
+    }
+
+    private static long palavraCinza(byte[] cinza, int inicio, int quantidade, int limite) {
+        long palavra = 0;
+        // sem desvios: o sinal de (valor - limite - 1) é o bit, e imagens ruidosas não erram previsões
+        for (int b = 0; b < quantidade; b++) {
+            palavra |= (long) (((cinza[inicio + b] & 0xff) - limite - 1) >>> 31) << b;
+        }
+        return palavra;
+    }
+
+    private static long palavraRGB(int[] rgb, int inicio, int quantidade, int somaMaxima) {
+        long palavra = 0;
+        for (int b = 0; b < quantidade; b++) {
+            int pixel = rgb[inicio + b];
+            int soma = BufferImagem.vermelho(pixel) + BufferImagem.verde(pixel) + BufferImagem.azul(pixel);
+            palavra |= (long) ((soma - somaMaxima - 1) >>> 31) << b;
+        }
+        return palavra;
+    }
+
+    // preto onde o teste aceita o pixel (0x00RRGGBB, cinza replicado nos três canais)
+    public static MascaraBinaria selecionar(BufferImagem buffer, IntPredicate preto) {
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        MascaraBinaria mascara = new MascaraBinaria(largura, altura, false);
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int palavra = y * mascara.palavrasPorLinha;
+                for (int x = 0; x < largura; x += 64, palavra++) {
+                    int quantidade = Math.min(64, largura - x);
+                    long valor = 0;
+                    for (int b = 0; b < quantidade; b++) {
+                        if (preto.test(buffer.getRGB(x + b, y))) {
+                            valor |= 1L << b;
+                        }
+                    }
+                    mascara.bits[palavra] = valor;
+                }
+            }
+        });
+        return mascara;
+    }
+
+    // linha y preta onde o nível de cinza é no máximo o limiar da mesma coluna; usada por Limiarizacao
+    void limiarizarLinha(int y, byte[] cinza, int inicio, int[] limiares) {
+        int palavra = y * palavrasPorLinha;
+        for (int x = 0; x < largura; x += 64, palavra++) {
+            int quantidade = Math.min(64, largura - x);
+            long valor = 0;
+            for (int b = 0; b < quantidade; b++) {
+                valor |= (long) (((cinza[inicio + x + b] & 0xff) - limiares[x + b] - 1) >>> 31) << b;
+            }
+            bits[palavra] = valor;
+        }
+    }
+
+    // imagem de cinza com PRETO nos bits ligados e BRANCO nos demais
+    public BufferImagem paraBuffer() {
+        BufferImagem buffer = PoolBuffers.get().criarCinza(largura, altura);
+        byte[] cinza = buffer.getDadosCinza();
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int destino = y * largura;
+                int palavra = y * palavrasPorLinha;
+                for (int x = 0; x < largura; x += 64, palavra++) {
+                    long valor = bits[palavra];
+                    int quantidade = Math.min(64, largura - x);
+                    // bit ligado vira 0 (PRETO) e desligado vira -1, ou seja 255 (BRANCO)
+                    for (int b = 0; b < quantidade; b++) {
+                        cinza[destino + x + b] = (byte) (((int) (valor >>> b) & 1) - 1);
+                    }
+                }
+            }
+        });
+        return buffer;
+    }
+
+    public int getLargura() {
+        return largura;
+    }
+
+    public int getAltura() {
+        return altura;
+    }
+
+    // entrega as palavras ao pool; a máscara não pode mais ser usada
+    public void devolver() {
+        PoolBuffers.get().devolverLongos(bits);
+    }
+
+    public boolean get(int x, int y) {
+        verificar(x, y);
+        return (bits[y * palavrasPorLinha + (x >>> 6)] >>> x & 1) != 0;
+    }
+
+    // fora da máscara, um bit ligado cairia no preenchimento da última palavra, que area() e os trechos supõem zero
+    public void set(int x, int y, boolean preto) {
+        verificar(x, y);
+        int i = y * palavrasPorLinha + (x >>> 6);
+        if (preto) {
+            bits[i] |= 1L << x;
+        } else {
+            bits[i] &= ~(1L << x);
+        }
+    }
+
+    private void verificar(int x, int y) {
+        if (x < 0 || x >= largura || y < 0 || y >= altura) {
+            throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y + ") fora da máscara " + largura + "x"
+                    + altura);
+        }
+    }
+
+    // primeiro pixel preto da linha y a partir de x, ou a largura se não houver
+    public int proximoPreto(int x, int y) {
+        if (x >= largura) {
+            return largura;
+        }
+        int linha = y * palavrasPorLinha;
+        int p = x >>> 6;
+        long palavra = bits[linha + p] & (-1L << x);
+        while (palavra == 0) {
+            if (++p == palavrasPorLinha) {
+                return largura;
+            }
+            palavra = bits[linha + p];
+        }
+        return (p << 6) + Long.numberOfTrailingZeros(palavra);
+    }
+
+    // primeiro pixel branco da linha y a partir de x, ou a largura se não houver
+    public int proximoBranco(int x, int y) {
+        if (x >= largura) {
+            return largura;
+        }
+        int linha = y * palavrasPorLinha;
+        int p = x >>> 6;
+        long palavra = ~bits[linha + p] & (-1L << x);
+        while (palavra == 0) {
+            if (++p == palavrasPorLinha) {
+                return largura;
+            }
+            palavra = ~bits[linha + p];
+        }
+        // os bits depois da largura estão desligados, então a busca para nela
+        return Math.min(largura, (p << 6) + Long.numberOfTrailingZeros(palavra));
+    }
+
+    // quantidade de trechos contínuos de pixels pretos na linha y
+    public int contarTrechos(int y) {
+        int linha = y * palavrasPorLinha;
+        int trechos = 0;
+        long anterior = 0;
+        for (int p = 0; p < palavrasPorLinha; p++) {
+            long palavra = bits[linha + p];
+            // bits ligados cujo vizinho da esquerda está desligado: inícios de trecho
+            trechos += Long.bitCount(palavra & ~(palavra << 1 | anterior >>> 63));
+            anterior = palavra;
+        }
+        return trechos;
+    }
+
+    // as operações entre duas máscaras usam a área comum, como as de ProcessadorImagem
+    public MascaraBinaria uniao(MascaraBinaria outra) {
+        return combinar(outra, Operacao.UNIAO);
+    }
+
+    public MascaraBinaria intersecao(MascaraBinaria outra) {
+        return combinar(outra, Operacao.INTERSECAO);
+    }
+
+    public MascaraBinaria ouExclusivo(MascaraBinaria outra) {
+        return combinar(outra, Operacao.OU_EXCLUSIVO);
+    }
+
+    // preto nesta e branco na outra
+    public MascaraBinaria diferenca(MascaraBinaria outra) {
+        return combinar(outra, Operacao.DIFERENCA);
+    }
+
+    public MascaraBinaria negar() {
+        MascaraBinaria resultado = new MascaraBinaria(largura, altura, false);
+        long sobra = mascaraUltimaPalavra(largura);
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int i = y * palavrasPorLinha;
+                for (int p = 0; p < palavrasPorLinha; p++) {
+                    resultado.bits[i + p] = ~bits[i + p];
+                }
+                if (palavrasPorLinha > 0) {
+                    resultado.bits[i + palavrasPorLinha - 1] &= sobra;
+                }
+            }
+        });
+        return resultado;
+    }
+
+    private MascaraBinaria combinar(MascaraBinaria outra, Operacao operacao) {
+        int novaLargura = Math.min(largura, outra.largura);
+        int novaAltura = Math.min(altura, outra.altura);
+        MascaraBinaria resultado = new MascaraBinaria(novaLargura, novaAltura, false);
+        int palavras = resultado.palavrasPorLinha;
+        long sobra = mascaraUltimaPalavra(novaLargura);
+        ExecutorFaixas.executar(novaLargura, novaAltura, (inicio, fim) -> {
+            for (int y = inicio; y < fim; y++) {
+                int destino = y * palavras;
+                combinarLinha(bits, y * palavrasPorLinha, outra.bits, y * outra.palavrasPorLinha, resultado.bits,
+                        destino, palavras, operacao);
+                // a mais larga das duas pode ter pixels pretos depois da nova largura
+                if (palavras > 0) {
+                    resultado.bits[destino + palavras - 1] &= sobra;
+                }
+            }
+        });
+        return resultado;
+    }
+
+    // um laço por operação, para que o corpo seja só uma instrução sobre longs
+    private static void combinarLinha(long[] a, int inicioA, long[] b, int inicioB, long[] destino, int inicio,
+            int quantidade, Operacao operacao) {
+        switch (operacao) {
+            case UNIAO:
+                for (int p = 0; p < quantidade; p++) {
+                    destino[inicio + p] = a[inicioA + p] | b[inicioB + p];
+                }
+                break;
+            case INTERSECAO:
+                for (int p = 0; p < quantidade; p++) {
+                    destino[inicio + p] = a[inicioA + p] & b[inicioB + p];
+                }
+                break;
+            case OU_EXCLUSIVO:
+                for (int p = 0; p < quantidade; p++) {
+                    destino[inicio + p] = a[inicioA + p] ^ b[inicioB + p];
+                }
+                break;
+            default:
+                for (int p = 0; p < quantidade; p++) {
+                    destino[inicio + p] = a[inicioA + p] & ~b[inicioB + p];
+                }
+        }
+    }
+
+    // bits válidos da última palavra de uma linha com a largura dada
+    private static long mascaraUltimaPalavra(int largura) {
+        int resto = largura & 63;
+        return resto == 0 ? -1L : (1L << resto) - 1;
+    }
+
+    // quantidade de pixels pretos
+    public long area() {
+        long area = 0;
+        for (int i = 0; i < palavras; i++) {
+            area += Long.bitCount(bits[i]);
+        }
+        return area;
+    }
+
+    // pixels pretos no retângulo [x0, x1) x [y0, y1), recortado à máscara
+    public long area(int x0, int y0, int x1, int y1) {
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(largura, x1);
+        y1 = Math.min(altura, y1);
+        if (x0 >= x1 || y0 >= y1) {
+            return 0;
+        }
+        int primeira = x0 >>> 6;
+        int ultima = (x1 - 1) >>> 6;
+        long mascaraInicio = -1L << x0;
+        long mascaraFim = -1L >>> (63 - ((x1 - 1) & 63));
+        long area = 0;
+        for (int y = y0; y < y1; y++) {
+            int linha = y * palavrasPorLinha;
+            if (primeira == ultima) {
+                area += Long.bitCount(bits[linha + primeira] & mascaraInicio & mascaraFim);
+                continue;
+            }
+            area += Long.bitCount(bits[linha + primeira] & mascaraInicio);
+            for (int p = primeira + 1; p < ultima; p++) {
+                area += Long.bitCount(bits[linha + p]);
+            }
+            area += Long.bitCount(bits[linha + ultima] & mascaraFim);
+        }
+        return area;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Escolhe, uma vez por execução, a implementação de NucleosPixel.
+ *
+ * A versão vetorial é usada quando o módulo jdk.incubator.vector está presente
+ * e a propriedade imageifmg.vetorial não é "false". Antes de ser adotada ela é
+ * comparada com a escalar em linhas aleatórias de vários comprimentos; qualquer
+ * diferença faz o programa continuar com a escalar.
+ */
+public final class Nucleos {
+
+    public static final String PROPRIEDADE_VETORIAL = "imageifmg.vetorial";
+
+    private static final Logger LOGGER = Logger.getLogger(Nucleos.class.getName());
+    private static final NucleosPixel INSTANCIA = escolher();
+
+    private Nucleos() {
+    }
+
+    public static NucleosPixel get() {
+        return INSTANCIA;
+    }
+
+    public static boolean isVetorial() {
+        return !(INSTANCIA instanceof NucleosEscalares);
+    }
+
+    private static NucleosPixel escolher() {
+        NucleosEscalares escalares = new NucleosEscalares();
+        if ("false".equalsIgnoreCase(System.getProperty(PROPRIEDADE_VETORIAL))) {
+            LOGGER.log(Level.INFO, "Núcleos vetoriais desligados por {0}=false; usando os escalares.",
+                    PROPRIEDADE_VETORIAL);
+            return escalares;
+        }
+        NucleosPixel vetoriais;
+        try {
+            vetoriais = (NucleosPixel) Class.forName("NucleosVetoriais").getDeclaredConstructor().newInstance();
+        } catch (LinkageError | ReflectiveOperationException | RuntimeException e) {
+            // sem --add-modules jdk.incubator.vector a classe não carrega; um erro na inicialização cai aqui também
+            LOGGER.log(Level.WARNING, "Núcleos vetoriais indisponíveis; usando os escalares.", e);
+            return escalares;
+        }
+        String diferenca = comparar(escalares, vetoriais);
+        if (diferenca != null) {
+            LOGGER.log(Level.WARNING, "Núcleos vetoriais divergem dos escalares ({0}); usando os escalares.",
+                    diferenca);
+            return escalares;
+        }
+        return vetoriais;
+    }
+
+    // nome do primeiro núcleo com resultado diferente, ou null
+    static String comparar(NucleosPixel referencia, NucleosPixel candidato) {
+        return comparar(referencia, candidato, 20240917, new int[] {3, 17, 41, 61, 41, 17, 3}, 6,
+                new int[] {0, 1, 7, 8, 15, 16, 17, 33, 64, 255, 1001});
+    }
+
+    /*
+     * Como comparar(referencia, candidato), com a semente dos pixels, o kernel
+     * da convolução (pesos somando no máximo 1 << 14), o deslocamento aplicado
+     * às somas e os comprimentos de linha escolhidos por quem chama.
+     */
+    static String comparar(NucleosPixel referencia, NucleosPixel candidato, long semente, int[] kernel, int bits,
+            int[] quantidades) {
+        Random aleatorio = new Random(semente);
+        // comprimentos ímpares e deslocamentos exercitam as sobras após os vetores
+        for (int quantidade : quantidades) {
+            int deslocamento = quantidade % 5;
+            int[] pixels = new int[deslocamento + quantidade + kernel.length];
+            for (int x = 0; x < pixels.length; x++) {
+                pixels[x] = aleatorio.nextInt() & 0xffffff;
+            }
+            pixels[pixels.length - 1] = 0xffffff;
+
+            byte[] cinzaA = new byte[quantidade + 3];
+            byte[] cinzaB = new byte[quantidade + 3];
+            referencia.mediaParaCinza(pixels, deslocamento, cinzaA, 3, quantidade);
+            candidato.mediaParaCinza(pixels, deslocamento, cinzaB, 3, quantidade);
+            if (!Arrays.equals(cinzaA, cinzaB)) {
+                return "mediaParaCinza";
+            }
+            for (boolean maximo : new boolean[] {false, true}) {
+                referencia.extremoParaCinza(pixels, deslocamento, cinzaA, 3, quantidade, maximo);
+                candidato.extremoParaCinza(pixels, deslocamento, cinzaB, 3, quantidade, maximo);
+                if (!Arrays.equals(cinzaA, cinzaB)) {
+                    return "extremoParaCinza";
+                }
+                int[] a = pixels.clone();
+                int[] b = pixels.clone();
+                referencia.extremoNoLugar(a, quantidade, maximo);
+                candidato.extremoNoLugar(b, quantidade, maximo);
+                if (!Arrays.equals(a, b)) {
+                    return "extremoNoLugar";
+                }
+            }
+
+            int[] a = pixels.clone();
+            int[] b = pixels.clone();
+            referencia.mediaNoLugar(a, quantidade);
+            candidato.mediaNoLugar(b, quantidade);
+            if (!Arrays.equals(a, b)) {
+                return "mediaNoLugar";
+            }
+            referencia.negarNoLugar(a, quantidade);
+            candidato.negarNoLugar(b, quantidade);
+            if (!Arrays.equals(a, b)) {
+                return "negarNoLugar";
+            }
+            a = pixels.clone();
+            b = pixels.clone();
+            referencia.corDominanteNoLugar(a, quantidade);
+            candidato.corDominanteNoLugar(b, quantidade);
+            if (!Arrays.equals(a, b)) {
+                return "corDominanteNoLugar";
+            }
+
+            // a convolução trabalha com canais de 0 a 255 e pesos positivos
+            int[] canal = new int[quantidade + kernel.length - 1];
+            for (int x = 0; x < canal.length; x++) {
+                canal[x] = pixels[x] & 0xff;
+            }
+            a = new int[deslocamento + quantidade];
+            b = new int[deslocamento + quantidade];
+            referencia.convoluirLinha(canal, kernel, a, deslocamento, quantidade, 1 << (bits - 1), bits);
+            candidato.convoluirLinha(canal, kernel, b, deslocamento, quantidade, 1 << (bits - 1), bits);
+            if (!Arrays.equals(a, b)) {
+                return "convoluirLinha";
+            }
+            int[] somaA = Arrays.copyOf(a, quantidade);
+            int[] somaB = Arrays.copyOf(a, quantidade);
+            referencia.acumularPonderado(somaA, canal, kernel.length - 1, 41, quantidade);
+            candidato.acumularPonderado(somaB, canal, kernel.length - 1, 41, quantidade);
+            if (!Arrays.equals(somaA, somaB)) {
+                return "acumularPonderado";
+            }
+        }
+        return null;
+    }
+}
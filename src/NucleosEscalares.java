@@ -0,0 +1,97 @@
+/**
+ * Implementação de referência dos NucleosPixel, em Java comum.
+ */
+final class NucleosEscalares implements NucleosPixel {
+
+    @Override
+    public void mediaParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade) {
+        for (int x = 0; x < quantidade; x++) {
+            destino[inicioDestino + x] = (byte) BufferImagem.media(origem[inicioOrigem + x]);
+        }
+    }
+
+    @Override
+    public void mediaNoLugar(int[] linha, int quantidade) {
+        mediaNoLugar(linha, 0, quantidade);
+    }
+
+    // versões por intervalo, usadas também para as sobras de NucleosVetoriais
+    static void mediaNoLugar(int[] linha, int de, int ate) {
+        for (int x = de; x < ate; x++) {
+            int media = BufferImagem.media(linha[x]);
+            linha[x] = BufferImagem.empacotar(media, media, media);
+        }
+    }
+
+    @Override
+    public void extremoParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade,
+            boolean maximo) {
+        for (int x = 0; x < quantidade; x++) {
+            destino[inicioDestino + x] = (byte) extremo(origem[inicioOrigem + x], maximo);
+        }
+    }
+
+    @Override
+    public void extremoNoLugar(int[] linha, int quantidade, boolean maximo) {
+        extremoNoLugar(linha, 0, quantidade, maximo);
+    }
+
+    static void extremoNoLugar(int[] linha, int de, int ate, boolean maximo) {
+        for (int x = de; x < ate; x++) {
+            int valor = extremo(linha[x], maximo);
+            linha[x] = BufferImagem.empacotar(valor, valor, valor);
+        }
+    }
+
+    private static int extremo(int pixel, boolean maximo) {
+        int r = BufferImagem.vermelho(pixel);
+        int g = BufferImagem.verde(pixel);
+        int b = BufferImagem.azul(pixel);
+        return maximo ? Math.max(r, Math.max(g, b)) : Math.min(r, Math.min(g, b));
+    }
+
+    @Override
+    public void negarNoLugar(int[] linha, int quantidade) {
+        for (int x = 0; x < quantidade; x++) {
+            linha[x] = ~linha[x] & 0xffffff;
+        }
+    }
+
+    @Override
+    public void corDominanteNoLugar(int[] linha, int quantidade) {
+        corDominanteNoLugar(linha, 0, quantidade);
+    }
+
+    static void corDominanteNoLugar(int[] linha, int de, int ate) {
+        for (int x = de; x < ate; x++) {
+            int pixel = linha[x];
+            int r = BufferImagem.vermelho(pixel);
+            int g = BufferImagem.verde(pixel);
+            int b = BufferImagem.azul(pixel);
+            int corDominante = Math.max(r, Math.max(g, b));
+            linha[x] = BufferImagem.empacotar(
+                    r >= corDominante ? corDominante : 0,
+                    g >= corDominante ? corDominante : 0,
+                    b >= corDominante ? corDominante : 0);
+        }
+    }
+
+    @Override
+    public void convoluirLinha(int[] linha, int[] kernel, int[] saida, int deslocamento, int largura,
+            int arredondamento, int bits) {
+        for (int x = 0; x < largura; x++) {
+            int soma = arredondamento;
+            for (int k = 0; k < kernel.length; k++) {
+                soma += linha[x + k] * kernel[k];
+            }
+            saida[deslocamento + x] = soma >> bits;
+        }
+    }
+
+    @Override
+    public void acumularPonderado(int[] soma, int[] plano, int inicio, int peso, int quantidade) {
+        for (int x = 0; x < quantidade; x++) {
+            soma[x] += plano[inicio + x] * peso;
+        }
+    }
+}
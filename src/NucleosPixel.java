@@ -0,0 +1,33 @@
+/**
+ * Laços internos das operações de ponto e da convolução, isolados para que
+ * possam ter uma implementação vetorial. Todas as implementações devem
+ * produzir exatamente o mesmo resultado que NucleosEscalares.
+ *
+ * Pixels coloridos estão no formato 0x00RRGGBB; as rotinas "noLugar" alteram
+ * os pixels [0, quantidade) da linha.
+ */
+public interface NucleosPixel {
+
+    // (r + g + b) / 3 de cada pixel, gravado como byte
+    void mediaParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade);
+
+    void mediaNoLugar(int[] linha, int quantidade);
+
+    // menor (maximo = false) ou maior canal de cada pixel, gravado como byte
+    void extremoParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade,
+            boolean maximo);
+
+    void extremoNoLugar(int[] linha, int quantidade, boolean maximo);
+
+    void negarNoLugar(int[] linha, int quantidade);
+
+    // mantém o(s) canal(is) de maior valor e zera os demais
+    void corDominanteNoLugar(int[] linha, int quantidade);
+
+    // saida[deslocamento + x] = (arredondamento + soma(linha[x + k] * kernel[k])) >> bits
+    void convoluirLinha(int[] linha, int[] kernel, int[] saida, int deslocamento, int largura, int arredondamento,
+            int bits);
+
+    // soma[x] += plano[inicio + x] * peso
+    void acumularPonderado(int[] soma, int[] plano, int inicio, int peso, int quantidade);
+}
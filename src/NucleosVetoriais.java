@@ -0,0 +1,161 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NucleosPixel com a Vector API (jdk.incubator.vector), usando a maior largura
+ * de vetor da máquina. As sobras no fim de cada linha ficam com a versão
+ * escalar.
+ *
+ * Só é carregada por Nucleos quando o módulo está disponível
+ * (--add-modules jdk.incubator.vector).
+ */
+final class NucleosVetoriais implements NucleosPixel {
+
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+    /*
+     * Bytes para receber os ints de INT convertidos. Não existe forma menor que
+     * 64 bits, então com INT de 128 bits sobram lanes e só as primeiras
+     * INT.length() são gravadas.
+     */
+    private static final VectorSpecies<Byte> BYTE = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.max(64, INT.length() * Byte.SIZE)));
+    private static final VectorMask<Byte> BYTES_CONVERTIDOS = BYTE.indexInRange(0, INT.length());
+    // (s * 21846) >>> 16 == s / 3 para toda soma de canais s de 0 a 765
+    private static final int MULTIPLICADOR_TERCO = 21846;
+
+    private final NucleosEscalares escalares = new NucleosEscalares();
+
+    @Override
+    public void mediaParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            gravarBytes(media(IntVector.fromArray(INT, origem, inicioOrigem + x)), destino, inicioDestino + x);
+        }
+        escalares.mediaParaCinza(origem, inicioOrigem + x, destino, inicioDestino + x, quantidade - x);
+    }
+
+    @Override
+    public void mediaNoLugar(int[] linha, int quantidade) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            media(IntVector.fromArray(INT, linha, x)).mul(0x010101).intoArray(linha, x);
+        }
+        NucleosEscalares.mediaNoLugar(linha, x, quantidade);
+    }
+
+    // grava INT.length() bytes com o byte baixo de cada lane
+    private static void gravarBytes(IntVector valores, byte[] destino, int inicio) {
+        ByteVector bytes = (ByteVector) valores.convertShape(VectorOperators.I2B, BYTE, 0);
+        if (BYTE.length() == INT.length()) {
+            bytes.intoArray(destino, inicio);
+        } else {
+            bytes.intoArray(destino, inicio, BYTES_CONVERTIDOS);
+        }
+    }
+
+    private static IntVector media(IntVector pixels) {
+        IntVector soma = canal(pixels, 16).add(canal(pixels, 8)).add(canal(pixels, 0));
+        return soma.mul(MULTIPLICADOR_TERCO).lanewise(VectorOperators.LSHR, 16);
+    }
+
+    @Override
+    public void extremoParaCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade,
+            boolean maximo) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            gravarBytes(extremo(IntVector.fromArray(INT, origem, inicioOrigem + x), maximo), destino,
+                    inicioDestino + x);
+        }
+        escalares.extremoParaCinza(origem, inicioOrigem + x, destino, inicioDestino + x, quantidade - x, maximo);
+    }
+
+    @Override
+    public void extremoNoLugar(int[] linha, int quantidade, boolean maximo) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            extremo(IntVector.fromArray(INT, linha, x), maximo).mul(0x010101).intoArray(linha, x);
+        }
+        NucleosEscalares.extremoNoLugar(linha, x, quantidade, maximo);
+    }
+
+    private static IntVector extremo(IntVector pixels, boolean maximo) {
+        IntVector r = canal(pixels, 16);
+        IntVector g = canal(pixels, 8);
+        IntVector b = canal(pixels, 0);
+        return maximo ? r.max(g).max(b) : r.min(g).min(b);
+    }
+
+    @Override
+    public void negarNoLugar(int[] linha, int quantidade) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            IntVector.fromArray(INT, linha, x).lanewise(VectorOperators.XOR, 0xffffff).intoArray(linha, x);
+        }
+        for (; x < quantidade; x++) {
+            linha[x] = ~linha[x] & 0xffffff;
+        }
+    }
+
+    @Override
+    public void corDominanteNoLugar(int[] linha, int quantidade) {
+        int x = 0;
+        IntVector zero = IntVector.zero(INT);
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            IntVector pixels = IntVector.fromArray(INT, linha, x);
+            IntVector r = canal(pixels, 16);
+            IntVector g = canal(pixels, 8);
+            IntVector b = canal(pixels, 0);
+            IntVector maior = r.max(g).max(b);
+            IntVector novoR = zero.blend(maior, r.compare(VectorOperators.GE, maior));
+            IntVector novoG = zero.blend(maior, g.compare(VectorOperators.GE, maior));
+            IntVector novoB = zero.blend(maior, b.compare(VectorOperators.GE, maior));
+            novoR.lanewise(VectorOperators.LSHL, 16)
+                    .or(novoG.lanewise(VectorOperators.LSHL, 8))
+                    .or(novoB)
+                    .intoArray(linha, x);
+        }
+        NucleosEscalares.corDominanteNoLugar(linha, x, quantidade);
+    }
+
+    private static IntVector canal(IntVector pixels, int deslocamento) {
+        return pixels.lanewise(VectorOperators.LSHR, deslocamento).and(0xff);
+    }
+
+    @Override
+    public void convoluirLinha(int[] linha, int[] kernel, int[] saida, int deslocamento, int largura,
+            int arredondamento, int bits) {
+        int x = 0;
+        IntVector inicial = IntVector.broadcast(INT, arredondamento);
+        for (int limite = INT.loopBound(largura); x < limite; x += INT.length()) {
+            IntVector soma = inicial;
+            for (int k = 0; k < kernel.length; k++) {
+                soma = soma.add(IntVector.fromArray(INT, linha, x + k).mul(kernel[k]));
+            }
+            soma.lanewise(VectorOperators.ASHR, bits).intoArray(saida, deslocamento + x);
+        }
+        for (; x < largura; x++) {
+            int soma = arredondamento;
+            for (int k = 0; k < kernel.length; k++) {
+                soma += linha[x + k] * kernel[k];
+            }
+            saida[deslocamento + x] = soma >> bits;
+        }
+    }
+
+    @Override
+    public void acumularPonderado(int[] soma, int[] plano, int inicio, int peso, int quantidade) {
+        int x = 0;
+        for (int limite = INT.loopBound(quantidade); x < limite; x += INT.length()) {
+            IntVector.fromArray(INT, soma, x)
+                    .add(IntVector.fromArray(INT, plano, inicio + x).mul(peso))
+                    .intoArray(soma, x);
+        }
+        for (; x < quantidade; x++) {
+            soma[x] += plano[inicio + x] * peso;
+        }
+    }
+}
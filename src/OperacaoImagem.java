@@ -0,0 +1,9 @@
+/**
+ * Uma etapa de processamento que recebe uma imagem e devolve o resultado, sem
+ * alterar a imagem recebida.
+ */
+@FunctionalInterface
+public interface OperacaoImagem {
+
+    BufferImagem aplicar(BufferImagem buffer);
+}
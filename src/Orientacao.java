@@ -0,0 +1,164 @@
+/**
+ * As oito orientações de uma imagem obtidas com giros de 90 graus e espelhos,
+ * as mesmas da tag Orientation do EXIF.
+ *
+ * Cada orientação leva o pixel (x, y) da origem a uma posição do resultado por
+ * troca de eixos e inversões, então aplicá-la é só copiar pixels. A cópia é
+ * feita em blocos quadrados para que leitura e escrita fiquem no cache mesmo
+ * quando uma delas percorre colunas.
+ */
+public enum Orientacao implements OperacaoImagem {
+
+    IDENTIDADE(false, false, false),
+    ESPELHO_HORIZONTAL(false, true, false),
+    ESPELHO_VERTICAL(false, false, true),
+    ROTACAO_180(false, true, true),
+    TRANSPOSTA(true, false, false),
+    // 90 graus no sentido anti-horário, como TransformacaoAfim.rotacionar(buffer, 90, ...)
+    ROTACAO_90(true, false, true),
+    ROTACAO_270(true, true, false),
+    TRANSVERSA(true, true, true);
+
+    // 64 x 64 pixels RGB ocupam 16 KB na origem e no destino
+    private static final int LADO_BLOCO = 64;
+
+    private static final Orientacao[][] composicoes = new Orientacao[8][8];
+    private static final Orientacao[] inversas = new Orientacao[8];
+
+    static {
+        for (Orientacao primeira : values()) {
+            for (Orientacao segunda : values()) {
+                composicoes[primeira.ordinal()][segunda.ordinal()] = compor(primeira, segunda);
+            }
+        }
+        for (Orientacao orientacao : values()) {
+            for (Orientacao candidata : values()) {
+                if (orientacao.depois(candidata) == IDENTIDADE) {
+                    inversas[orientacao.ordinal()] = candidata;
+                }
+            }
+        }
+    }
+
+    // (x, y) vira (y, x) antes das inversões
+    private final boolean trocaEixos;
+    private final boolean inverteX;
+    private final boolean inverteY;
+
+    Orientacao(boolean trocaEixos, boolean inverteX, boolean inverteY) {
+        this.trocaEixos = trocaEixos;
+        this.inverteX = inverteX;
+        this.inverteY = inverteY;
+    }
+
+    public boolean trocaEixos() {
+        return trocaEixos;
+    }
+
+    // aplicar esta orientação e depois a outra equivale a aplicar o resultado
+    public Orientacao depois(Orientacao outra) {
+        return composicoes[ordinal()][outra.ordinal()];
+    }
+
+    // orientação que desfaz esta
+    public Orientacao inversa() {
+        return inversas[ordinal()];
+    }
+
+    public int larguraResultado(int largura, int altura) {
+        return trocaEixos ? altura : largura;
+    }
+
+    public int alturaResultado(int largura, int altura) {
+        return trocaEixos ? largura : altura;
+    }
+
+    // posição no resultado do pixel (x, y) de uma origem largura x altura, como x + y * larguraResultado
+    int mapear(int x, int y, int largura, int altura) {
+        int novaLargura = larguraResultado(largura, altura);
+        int novaAltura = alturaResultado(largura, altura);
+        int u = trocaEixos ? y : x;
+        int v = trocaEixos ? x : y;
+        return (inverteX ? novaLargura - 1 - u : u) + (inverteY ? novaAltura - 1 - v : v) * novaLargura;
+    }
+
+    private static Orientacao compor(Orientacao primeira, Orientacao segunda) {
+        // uma origem 3 x 2 distingue as oito orientações
+        int largura = 3;
+        int altura = 2;
+        int larguraIntermediaria = primeira.larguraResultado(largura, altura);
+        int alturaIntermediaria = primeira.alturaResultado(largura, altura);
+        for (Orientacao candidata : values()) {
+            boolean igual = true;
+            for (int y = 0; y < altura && igual; y++) {
+                for (int x = 0; x < largura && igual; x++) {
+                    int meio = primeira.mapear(x, y, largura, altura);
+                    int fim = segunda.mapear(meio % larguraIntermediaria, meio / larguraIntermediaria,
+                            larguraIntermediaria, alturaIntermediaria);
+                    igual = candidata.mapear(x, y, largura, altura) == fim;
+                }
+            }
+            if (igual) {
+                return candidata;
+            }
+        }
+        throw new AssertionError(primeira + " depois de " + segunda);
+    }
+
+    @Override
+    public BufferImagem aplicar(BufferImagem buffer) {
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        int novaLargura = larguraResultado(largura, altura);
+        int novaAltura = alturaResultado(largura, altura);
+        BufferImagem resultado = PoolBuffers.get().criar(novaLargura, novaAltura, buffer.isCinza());
+        // faixas de linhas da origem escrevem pixels distintos do resultado
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> copiarFaixa(buffer, resultado, inicio, fim));
+        return resultado;
+    }
+
+    private void copiarFaixa(BufferImagem origem, BufferImagem destino, int inicio, int fim) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int novaLargura = destino.getLargura();
+        // deslocamento no destino ao andar um pixel em x na origem
+        int passoX = trocaEixos ? (inverteY ? -novaLargura : novaLargura) : (inverteX ? -1 : 1);
+        boolean cinza = origem.isCinza();
+
+        for (int blocoY = inicio; blocoY < fim; blocoY += LADO_BLOCO) {
+            int fimY = Math.min(fim, blocoY + LADO_BLOCO);
+            for (int blocoX = 0; blocoX < largura; blocoX += LADO_BLOCO) {
+                int fimX = Math.min(largura, blocoX + LADO_BLOCO);
+                for (int y = blocoY; y < fimY; y++) {
+                    int de = origem.indice(blocoX, y);
+                    int para = mapear(blocoX, y, largura, altura);
+                    if (cinza) {
+                        copiarLinha(origem.getDadosCinza(), de, destino.getDadosCinza(), para, passoX, fimX - blocoX);
+                    } else {
+                        copiarLinha(origem.getDadosRGB(), de, destino.getDadosRGB(), para, passoX, fimX - blocoX);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copiarLinha(int[] origem, int de, int[] destino, int para, int passo, int quantidade) {
+        if (passo == 1) {
+            System.arraycopy(origem, de, destino, para, quantidade);
+            return;
+        }
+        for (int x = 0; x < quantidade; x++, para += passo) {
+            destino[para] = origem[de + x];
+        }
+    }
+
+    private static void copiarLinha(byte[] origem, int de, byte[] destino, int para, int passo, int quantidade) {
+        if (passo == 1) {
+            System.arraycopy(origem, de, destino, para, quantidade);
+            return;
+        }
+        for (int x = 0; x < quantidade; x++, para += passo) {
+            destino[para] = origem[de + x];
+        }
+    }
+}
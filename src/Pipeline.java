@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cadeia de operações executada com o mínimo de passadas e de buffers.
+ *
+ * Operações de ponto consecutivas viram uma única passada. Quando vêm logo após
+ * um filtro de vizinhança, são aplicadas em cada faixa assim que o filtro a
+ * termina, enquanto as linhas ainda estão no cache. Os resultados
+ * intermediários se revezam entre dois buffers reaproveitados, então a cadeia
+ * nunca guarda mais que a entrada e poucos buffers do tamanho da imagem; ao
+ * final eles voltam ao PoolBuffers para a próxima imagem.
+ *
+ * Giros de 90 graus e espelhos consecutivos (Orientacao) viram uma única cópia.
+ * As demais operações (redimensionar, rotacionar, ...) são executadas como estão,
+ * recebendo sempre uma imagem RGB.
+ */
+public final class Pipeline implements OperacaoImagem {
+
+    private final List<Estagio> estagios = new ArrayList<>();
+
+    public Pipeline(List<? extends OperacaoImagem> operacoes) {
+        Estagio atual = null;
+        for (OperacaoImagem operacao : operacoes) {
+            if (operacao instanceof EtapaPonto ponto) {
+                if (atual == null) {
+                    atual = new Estagio(null);
+                    estagios.add(atual);
+                }
+                EtapaPonto.adicionar(atual.pontos, ponto);
+            } else if (operacao instanceof Orientacao orientacao && atual != null
+                    && atual.operacao instanceof Orientacao anterior && atual.pontos.isEmpty()) {
+                atual = new Estagio(anterior.depois(orientacao));
+                estagios.set(estagios.size() - 1, atual);
+            } else {
+                atual = new Estagio(operacao);
+                estagios.add(atual);
+            }
+        }
+    }
+
+    // cadeia no formato de RegistroOperacoes, por exemplo "cinza | gaussiano:sigma=2 | sobel"
+    public static Pipeline deTexto(String cadeia) {
+        return new Pipeline(RegistroOperacoes.criarCadeia(cadeia));
+    }
+
+    @Override
+    public BufferImagem aplicar(BufferImagem entrada) {
+        List<BufferImagem> livres = new ArrayList<>();
+        BufferImagem atual = entrada;
+        for (Estagio estagio : estagios) {
+            BufferImagem resultado = estagio.executar(atual, entrada, livres);
+            if (atual != entrada && atual != resultado) {
+                livres.add(atual);
+            }
+            atual = resultado;
+        }
+        // os buffers intermediários que sobraram ficam para a próxima imagem
+        for (BufferImagem livre : livres) {
+            PoolBuffers.get().devolver(livre);
+        }
+        return atual;
+    }
+
+    // um buffer livre com as mesmas dimensões, ou um do pool
+    private static BufferImagem obterBuffer(List<BufferImagem> livres, int largura, int altura, boolean cinza) {
+        for (int i = 0; i < livres.size(); i++) {
+            BufferImagem livre = livres.get(i);
+            if (livre.getLargura() == largura && livre.getAltura() == altura && livre.isCinza() == cinza) {
+                return livres.remove(i);
+            }
+        }
+        return PoolBuffers.get().criar(largura, altura, cinza);
+    }
+
+    // uma operação que não é de ponto (ou nenhuma) seguida das operações de ponto que vêm depois dela
+    private static final class Estagio {
+
+        private final OperacaoImagem operacao;
+        private final List<EtapaPonto> pontos = new ArrayList<>();
+
+        Estagio(OperacaoImagem operacao) {
+            this.operacao = operacao;
+        }
+
+        BufferImagem executar(BufferImagem origem, BufferImagem entrada, List<BufferImagem> livres) {
+            EtapaPonto[] etapas = pontos.toArray(new EtapaPonto[0]);
+            int largura = origem.getLargura();
+            int altura = origem.getAltura();
+
+            if (operacao == null) {
+                BufferImagem destino = obterBuffer(livres, largura, altura,
+                        EtapaPonto.saiCinza(origem.isCinza(), etapas));
+                ExecutorFaixas.executar(largura, altura,
+                        (inicio, fim) -> EtapaPonto.aplicarFaixa(origem, destino, etapas, inicio, fim));
+                return destino;
+            }
+
+            if (operacao instanceof EtapaVizinhanca vizinhanca) {
+                BufferImagem filtrada = obterBuffer(livres, largura, altura, origem.isCinza());
+                BufferImagem destino = etapas.length == 0 ? filtrada
+                        : EtapaPonto.saiCinza(filtrada.isCinza(), etapas) == filtrada.isCinza() ? filtrada
+                        : obterBuffer(livres, largura, altura, !filtrada.isCinza());
+                ExecutorFaixas.executar(largura, altura, vizinhanca.getRaio(), (inicio, fim) -> {
+                    vizinhanca.processarFaixa(origem, filtrada, inicio, fim);
+                    if (etapas.length > 0) {
+                        EtapaPonto.aplicarFaixa(filtrada, destino, etapas, inicio, fim);
+                    }
+                });
+                if (destino != filtrada) {
+                    livres.add(filtrada);
+                }
+                return destino;
+            }
+
+            // orientações copiam pixels de um canal sem precisar de RGB
+            BufferImagem resultado = operacao.aplicar(origem.isCinza() && !(operacao instanceof Orientacao)
+                    ? origem.comoRGB() : origem);
+            if (etapas.length == 0) {
+                return resultado;
+            }
+            // o resultado é da cadeia e pode ser alterado no lugar, exceto se for a própria entrada
+            BufferImagem destino = resultado != entrada
+                    && EtapaPonto.saiCinza(resultado.isCinza(), etapas) == resultado.isCinza() ? resultado
+                    : obterBuffer(livres, resultado.getLargura(), resultado.getAltura(),
+                            EtapaPonto.saiCinza(resultado.isCinza(), etapas));
+            ExecutorFaixas.executar(resultado.getLargura(), resultado.getAltura(),
+                    (inicio, fim) -> EtapaPonto.aplicarFaixa(resultado, destino, etapas, inicio, fim));
+            return destino;
+        }
+    }
+}
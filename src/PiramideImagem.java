@@ -0,0 +1,212 @@
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pirâmide de resoluções de uma imagem para exibição: o nível 0 é a imagem
+ * original e cada nível seguinte tem metade da largura e da altura do anterior.
+ *
+ * Os níveis são criados só quando pedidos, por média de área a partir do nível
+ * mais próximo já disponível, e ficam num cache LRU comum a todas as pirâmides
+ * e limitado em bytes. O nível 0 nunca entra no cache.
+ *
+ * A criação roda numa thread própria, para não travar quem desenha: nivelPara
+ * devolve na hora o nível pronto mais próximo do pedido e avisa quando o
+ * pedido fica pronto.
+ */
+public final class PiramideImagem {
+
+    // soma dos níveis reduzidos guardados de todas as imagens abertas
+    public static final long LIMITE_CACHE_BYTES = 128L * 1024 * 1024;
+
+    private static final Map<Chave, BufferedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytesNoCache;
+    private static final ExecutorService construtor = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "imageifmg-piramide");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // o maior nível possível: 2^30 já é mais que qualquer dimensão de imagem
+    private static final int NIVEL_MAXIMO = 30;
+
+    private final BufferedImage original;
+    // níveis já enviados ao construtor e ainda não prontos
+    private final Set<Integer> pedidos = ConcurrentHashMap.newKeySet();
+    private volatile boolean descartada;
+
+    public PiramideImagem(BufferedImage original) {
+        this.original = original;
+    }
+
+    public BufferedImage getOriginal() {
+        return original;
+    }
+
+    /*
+     * O nível menor possível que ainda tenha pelo menos largura x altura, se já
+     * estiver pronto. Senão, pede sua criação e devolve o nível pronto mais
+     * próximo (o maior, em empate, por ter mais detalhe); aoFicarPronto é
+     * chamado na thread do construtor quando o pedido termina.
+     */
+    public BufferedImage nivelPara(int largura, int altura, Runnable aoFicarPronto) {
+        int desejado = nivelDesejado(largura, altura);
+        BufferedImage pronto = emCache(desejado);
+        if (pronto != null) {
+            return pronto;
+        }
+        if (pedidos.add(desejado)) {
+            construtor.execute(() -> {
+                try {
+                    if (!descartada) {
+                        construir(desejado);
+                    }
+                    // uma pirâmide descartada durante a criação não tem mais quem a desenhe
+                    if (!descartada) {
+                        aoFicarPronto.run();
+                    }
+                } finally {
+                    pedidos.remove(desejado);
+                }
+            });
+        }
+        for (int distancia = 1; ; distancia++) {
+            BufferedImage maior = emCache(desejado - distancia);
+            if (maior != null) {
+                return maior;
+            }
+            BufferedImage menor = emCache(desejado + distancia);
+            if (menor != null) {
+                return menor;
+            }
+        }
+    }
+
+    // cria, na thread atual, o nível pedido e os intermediários que faltarem
+    public BufferedImage nivel(int nivel) {
+        BufferedImage pronto = emCache(nivel);
+        return pronto != null ? pronto : construir(nivel);
+    }
+
+    private int nivelDesejado(int largura, int altura) {
+        int nivel = 0;
+        int w = original.getWidth();
+        int h = original.getHeight();
+        while (w / 2 >= Math.max(1, largura) && h / 2 >= Math.max(1, altura)) {
+            w /= 2;
+            h /= 2;
+            nivel++;
+        }
+        return nivel;
+    }
+
+    // o nível se estiver pronto, ou null; o nível 0 está sempre pronto
+    private BufferedImage emCache(int nivel) {
+        if (nivel == 0) {
+            return original;
+        }
+        if (nivel < 0 || nivel > NIVEL_MAXIMO) {
+            return null;
+        }
+        synchronized (cache) {
+            return cache.get(new Chave(this, nivel));
+        }
+    }
+
+    // reduz a partir do maior nível pronto abaixo do pedido, guardando cada nível criado no caminho
+    private BufferedImage construir(int nivel) {
+        int base = nivel - 1;
+        BufferedImage imagem = emCache(base);
+        while (imagem == null) {
+            imagem = emCache(--base);
+        }
+        for (int n = base + 1; n <= nivel; n++) {
+            imagem = reduzir(imagem);
+            if (!descartada) {
+                guardar(new Chave(this, n), imagem);
+            }
+        }
+        return imagem;
+    }
+
+    // metade da largura e da altura, lendo os pixels da própria imagem quando o layout permite
+    private static BufferedImage reduzir(BufferedImage imagem) {
+        BufferImagem origem;
+        boolean copia = false;
+        try {
+            origem = BufferImagem.envolverImagem(imagem);
+        } catch (IllegalArgumentException e) {
+            origem = BufferImagem.deImagem(imagem);
+            copia = true;
+        }
+        BufferImagem reduzida = Redimensionador.redimensionar(origem, Math.max(1, imagem.getWidth() / 2),
+                Math.max(1, imagem.getHeight() / 2), Redimensionador.Interpolacao.AREA);
+        if (copia) {
+            PoolBuffers.get().devolver(origem);
+        }
+        return reduzida.paraImagem();
+    }
+
+    // remove do cache os níveis desta pirâmide, por exemplo ao fechar a janela
+    public void descartar() {
+        descartada = true;
+        synchronized (cache) {
+            Iterator<Map.Entry<Chave, BufferedImage>> entradas = cache.entrySet().iterator();
+            while (entradas.hasNext()) {
+                Map.Entry<Chave, BufferedImage> entrada = entradas.next();
+                if (entrada.getKey().piramide == this) {
+                    bytesNoCache -= tamanho(entrada.getValue());
+                    entradas.remove();
+                }
+            }
+        }
+    }
+
+    private static void guardar(Chave chave, BufferedImage imagem) {
+        synchronized (cache) {
+            BufferedImage anterior = cache.put(chave, imagem);
+            if (anterior != null) {
+                bytesNoCache -= tamanho(anterior);
+            }
+            bytesNoCache += tamanho(imagem);
+            Iterator<BufferedImage> maisAntigas = cache.values().iterator();
+            while (bytesNoCache > LIMITE_CACHE_BYTES && maisAntigas.hasNext()) {
+                BufferedImage antiga = maisAntigas.next();
+                if (antiga != imagem) {
+                    bytesNoCache -= tamanho(antiga);
+                    maisAntigas.remove();
+                }
+            }
+        }
+    }
+
+    private static long tamanho(BufferedImage imagem) {
+        int bytesPorPixel = imagem.getColorModel().getPixelSize() <= 8 ? 1 : 4;
+        return (long) imagem.getWidth() * imagem.getHeight() * bytesPorPixel;
+    }
+
+    private static final class Chave {
+
+        private final PiramideImagem piramide;
+        private final int nivel;
+
+        Chave(PiramideImagem piramide, int nivel) {
+            this.piramide = piramide;
+            this.nivel = nivel;
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            return outro instanceof Chave && ((Chave) outro).piramide == piramide && ((Chave) outro).nivel == nivel;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(piramide) * 31 + nivel;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Arrays de pixels e de rascunho reaproveitados entre operações, para que o
+ * processamento de várias imagens seguidas quase não gere lixo.
+ *
+ * Os arrays são agrupados por classes de tamanho (quatro por potência de dois,
+ * então um array emprestado tem no máximo 25% a mais que o pedido) e o
+ * conteúdo de um array emprestado é indefinido. Os arrays livres guardados
+ * somam no máximo o limite em bytes; o que passar disso fica para o coletor.
+ *
+ * O pool é seguro entre threads. Um array só deve ser devolvido quando nada
+ * mais o usa, inclusive imagens criadas com BufferImagem.paraImagem().
+ */
+public final class PoolBuffers {
+
+    // limite em megabytes dos arrays livres guardados pelo pool padrão
+    public static final String PROPRIEDADE_LIMITE = "imageifmg.pool.mb";
+
+    // arrays menores que isso saem mais baratos do que passar pelo pool
+    private static final int TAMANHO_MINIMO = 1024;
+
+    private static final PoolBuffers PADRAO = new PoolBuffers(limitePadrao());
+
+    private final long limiteBytes;
+    private final Map<Integer, ArrayDeque<int[]>> inteiros = new HashMap<>();
+    private final Map<Integer, ArrayDeque<byte[]>> bytes = new HashMap<>();
+    private final Map<Integer, ArrayDeque<long[]>> longos = new HashMap<>();
+    private long bytesGuardados;
+    private long acertos;
+    private long faltas;
+    private long descartes;
+
+    public PoolBuffers(long limiteBytes) {
+        if (limiteBytes < 0) {
+            throw new IllegalArgumentException("Limite inválido: " + limiteBytes);
+        }
+        this.limiteBytes = limiteBytes;
+    }
+
+    public static PoolBuffers get() {
+        return PADRAO;
+    }
+
+    // um quarto do heap, até 256 MB, salvo se a propriedade disser outra coisa
+    private static long limitePadrao() {
+        long padrao = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+        return Math.max(0, Long.getLong(PROPRIEDADE_LIMITE, padrao >> 20)) << 20;
+    }
+
+    /**
+     * Empréstimo de um ou mais arrays do pool; close() os devolve, uma única
+     * vez mesmo se chamado de novo.
+     */
+    public static final class Emprestimo<T> implements AutoCloseable {
+
+        private final PoolBuffers pool;
+        private final T valor;
+        private final AtomicBoolean devolvido = new AtomicBoolean();
+
+        private Emprestimo(PoolBuffers pool, T valor) {
+            this.pool = pool;
+            this.valor = valor;
+        }
+
+        public T get() {
+            if (devolvido.get()) {
+                throw new IllegalStateException("Empréstimo já devolvido.");
+            }
+            return valor;
+        }
+
+        @Override
+        public void close() {
+            if (devolvido.compareAndSet(false, true)) {
+                pool.devolverValor(valor);
+            }
+        }
+    }
+
+    public Emprestimo<int[]> emprestarInteiros(int tamanho) {
+        return new Emprestimo<>(this, obterInteiros(tamanho));
+    }
+
+    public Emprestimo<byte[]> emprestarBytes(int tamanho) {
+        return new Emprestimo<>(this, obterBytes(tamanho));
+    }
+
+    public Emprestimo<long[]> emprestarLongos(int tamanho) {
+        return new Emprestimo<>(this, obterLongos(tamanho));
+    }
+
+    // quantidade arrays de pelo menos tamanho elementos, por exemplo um plano por canal
+    public Emprestimo<int[][]> emprestarPlanos(int quantidade, int tamanho) {
+        int[][] planos = new int[quantidade][];
+        for (int i = 0; i < quantidade; i++) {
+            planos[i] = obterInteiros(tamanho);
+        }
+        return new Emprestimo<>(this, planos);
+    }
+
+    public BufferImagem criarRGB(int largura, int altura) {
+        return BufferImagem.envolverRGB(largura, altura, largura, obterInteiros(tamanho(largura, altura)));
+    }
+
+    public BufferImagem criarCinza(int largura, int altura) {
+        return BufferImagem.envolverCinza(largura, altura, largura, obterBytes(tamanho(largura, altura)));
+    }
+
+    public BufferImagem criar(int largura, int altura, boolean cinza) {
+        return cinza ? criarCinza(largura, altura) : criarRGB(largura, altura);
+    }
+
+    // como BufferImagem.criarJanela
+    public BufferImagem criarJanela(int largura, int altura, int primeiraLinha, int fimLinhas, boolean cinza) {
+        int tamanho = tamanho(largura, Math.max(0, fimLinhas - primeiraLinha));
+        return cinza ? BufferImagem.envolverJanela(largura, altura, primeiraLinha, fimLinhas, null, obterBytes(tamanho))
+                : BufferImagem.envolverJanela(largura, altura, primeiraLinha, fimLinhas, obterInteiros(tamanho), null);
+    }
+
+    // como BufferImagem.criarSemelhante
+    public BufferImagem criarSemelhante(BufferImagem buffer) {
+        if (buffer.isJanela()) {
+            return criarJanela(buffer.getLargura(), buffer.getAltura(), buffer.getPrimeiraLinha(),
+                    buffer.getFimLinhas(), buffer.isCinza());
+        }
+        return criar(buffer.getLargura(), buffer.getAltura(), buffer.isCinza());
+    }
+
+    // devolve o array do buffer; o buffer não pode mais ser usado
+    public void devolver(BufferImagem buffer) {
+        if (buffer != null) {
+            devolverValor(buffer.isCinza() ? buffer.getDadosCinza() : buffer.getDadosRGB());
+        }
+    }
+
+    public int[] obterInteiros(int tamanho) {
+        if (tamanho < TAMANHO_MINIMO) {
+            return new int[tamanho];
+        }
+        int capacidade = capacidade(tamanho);
+        synchronized (this) {
+            ArrayDeque<int[]> livres = inteiros.get(capacidade);
+            if (livres != null && !livres.isEmpty()) {
+                acertos++;
+                bytesGuardados -= (long) capacidade * Integer.BYTES;
+                return livres.pop();
+            }
+            faltas++;
+        }
+        return new int[capacidade];
+    }
+
+    public byte[] obterBytes(int tamanho) {
+        if (tamanho < TAMANHO_MINIMO) {
+            return new byte[tamanho];
+        }
+        int capacidade = capacidade(tamanho);
+        synchronized (this) {
+            ArrayDeque<byte[]> livres = bytes.get(capacidade);
+            if (livres != null && !livres.isEmpty()) {
+                acertos++;
+                bytesGuardados -= capacidade;
+                return livres.pop();
+            }
+            faltas++;
+        }
+        return new byte[capacidade];
+    }
+
+    public long[] obterLongos(int tamanho) {
+        if (tamanho < TAMANHO_MINIMO) {
+            return new long[tamanho];
+        }
+        int capacidade = capacidade(tamanho);
+        synchronized (this) {
+            ArrayDeque<long[]> livres = longos.get(capacidade);
+            if (livres != null && !livres.isEmpty()) {
+                acertos++;
+                bytesGuardados -= (long) capacidade * Long.BYTES;
+                return livres.pop();
+            }
+            faltas++;
+        }
+        return new long[capacidade];
+    }
+
+    private void devolverValor(Object valor) {
+        if (valor instanceof int[] array) {
+            devolverInteiros(array);
+        } else if (valor instanceof byte[] array) {
+            devolverBytes(array);
+        } else if (valor instanceof long[] array) {
+            devolverLongos(array);
+        } else if (valor instanceof int[][] planos) {
+            for (int[] plano : planos) {
+                devolverInteiros(plano);
+            }
+        }
+    }
+
+    public void devolverInteiros(int[] array) {
+        // arrays que não vieram do pool só entram se tiverem o tamanho exato de uma classe
+        if (array == null || array.length < TAMANHO_MINIMO || capacidade(array.length) != array.length) {
+            return;
+        }
+        synchronized (this) {
+            long tamanho = (long) array.length * Integer.BYTES;
+            if (bytesGuardados + tamanho > limiteBytes) {
+                descartes++;
+                return;
+            }
+            bytesGuardados += tamanho;
+            inteiros.computeIfAbsent(array.length, c -> new ArrayDeque<>()).push(array);
+        }
+    }
+
+    public void devolverBytes(byte[] array) {
+        if (array == null || array.length < TAMANHO_MINIMO || capacidade(array.length) != array.length) {
+            return;
+        }
+        synchronized (this) {
+            if (bytesGuardados + array.length > limiteBytes) {
+                descartes++;
+                return;
+            }
+            bytesGuardados += array.length;
+            bytes.computeIfAbsent(array.length, c -> new ArrayDeque<>()).push(array);
+        }
+    }
+
+    public void devolverLongos(long[] array) {
+        if (array == null || array.length < TAMANHO_MINIMO || capacidade(array.length) != array.length) {
+            return;
+        }
+        synchronized (this) {
+            long tamanho = (long) array.length * Long.BYTES;
+            if (bytesGuardados + tamanho > limiteBytes) {
+                descartes++;
+                return;
+            }
+            bytesGuardados += tamanho;
+            longos.computeIfAbsent(array.length, c -> new ArrayDeque<>()).push(array);
+        }
+    }
+
+    // solta todos os arrays livres
+    public synchronized void limpar() {
+        inteiros.clear();
+        bytes.clear();
+        longos.clear();
+        bytesGuardados = 0;
+    }
+
+    public long getLimiteBytes() {
+        return limiteBytes;
+    }
+
+    public synchronized long getBytesGuardados() {
+        return bytesGuardados;
+    }
+
+    // pedidos atendidos com um array livre
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    // pedidos que precisaram alocar
+    public synchronized long getFaltas() {
+        return faltas;
+    }
+
+    // devoluções recusadas por estourar o limite
+    public synchronized long getDescartes() {
+        return descartes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "pool: %d acerto(s), %d falta(s), %d descarte(s), %.1f MB guardados",
+                acertos, faltas, descartes, bytesGuardados / 1048576.0);
+    }
+
+    private static int tamanho(int largura, int altura) {
+        long tamanho = (long) largura * altura;
+        if (tamanho > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Imagem grande demais: " + largura + "x" + altura);
+        }
+        return (int) tamanho;
+    }
+
+    // menor valor 4, 5, 6 ou 7 vezes uma potência de dois que seja >= tamanho
+    static int capacidade(int tamanho) {
+        int expoente = 31 - Integer.numberOfLeadingZeros(tamanho - 1);
+        if (expoente < 2) {
+            return tamanho;
+        }
+        int passo = 1 << (expoente - 2);
+        long capacidade = ((long) (tamanho - 1) / passo + 1) * passo;
+        return (int) Math.min(capacidade, Integer.MAX_VALUE - 8);
+    }
+}
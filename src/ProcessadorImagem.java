@@ -0,0 +1,277 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.function.BinaryOperator;
+
+/**
+ * Operações de processamento sobre BufferImagem, sem dependência da interface.
+ *
+ * Todas as operações recebem um buffer RGB, devolvem um buffer novo e dividem o
+ * trabalho em faixas de linhas através do ExecutorFaixas.
+ */
+public final class ProcessadorImagem {
+
+    public static final int BRANCO = 255;
+    public static final int PRETO = 0;
+    // média dos canais acima disso é branco em imagemBinaria
+    public static final int LIMIAR_BINARIA = 127;
+    private static final int DIFERENCA_TOTAL_MAXIMA = 30;
+
+    // operações de ponto; encadeadas num Pipeline são feitas numa única passada
+    public static final EtapaPonto ESCALA_CINZA = EtapaPonto.deTabela(TabelaTons.media(),
+            Nucleos.get()::mediaNoLugar, Nucleos.get()::mediaParaCinza);
+
+    public static final EtapaPonto BINARIA = TabelaTons.media().depois(TabelaTons.limiar(LIMIAR_BINARIA)).comoEtapa();
+
+    // sozinha, a negativa é só uma inversão de bits
+    public static final EtapaPonto NEGATIVA = EtapaPonto.deTabela(TabelaTons.negar(), Nucleos.get()::negarNoLugar,
+            null);
+
+    public static final EtapaPonto COR_DOMINANTE = EtapaPonto.colorida(Nucleos.get()::corDominanteNoLugar, true);
+
+    public static final EtapaPonto CINZA_ESCURO = EtapaPonto.cinza(
+            (linha, quantidade) -> Nucleos.get().extremoNoLugar(linha, quantidade, false),
+            (origem, inicioOrigem, destino, inicioDestino, quantidade) -> Nucleos.get().extremoParaCinza(origem,
+                    inicioOrigem, destino, inicioDestino, quantidade, false));
+
+    public static final EtapaPonto CINZA_CLARO = EtapaPonto.cinza(
+            (linha, quantidade) -> Nucleos.get().extremoNoLugar(linha, quantidade, true),
+            (origem, inicioOrigem, destino, inicioDestino, quantidade) -> Nucleos.get().extremoParaCinza(origem,
+                    inicioOrigem, destino, inicioDestino, quantidade, true));
+
+    private ProcessadorImagem() {
+    }
+
+    public static BufferImagem escalaCinza(BufferImagem buffer) {
+        return ESCALA_CINZA.aplicar(buffer);
+    }
+
+    public static BufferImagem imagemBinaria(BufferImagem buffer) {
+        return BINARIA.aplicar(buffer);
+    }
+
+    public static BufferImagem negativa(BufferImagem buffer) {
+        return NEGATIVA.aplicar(buffer);
+    }
+
+    public static BufferImagem corDominante(BufferImagem buffer) {
+        return COR_DOMINANTE.aplicar(buffer);
+    }
+
+    public static BufferImagem escalaCinzaEscuro(BufferImagem buffer) {
+        return CINZA_ESCURO.aplicar(buffer);
+    }
+
+    public static BufferImagem escalaCinzaClaro(BufferImagem buffer) {
+        return CINZA_CLARO.aplicar(buffer);
+    }
+
+    // o mesmo que imagemBinaria, um bit por pixel
+    public static MascaraBinaria mascaraBinaria(BufferImagem buffer) {
+        return MascaraBinaria.limiarizar(buffer, LIMIAR_BINARIA);
+    }
+
+    // como imagemBinaria, com o limiar escolhido pelo método de Otsu
+    public static BufferImagem binariaOtsu(BufferImagem buffer) {
+        return paraBuffer(Limiarizacao.otsu(buffer));
+    }
+
+    // limiar local; parametro é a constante subtraída da média (MEDIA e GAUSSIANA) ou o k de Sauvola
+    public static BufferImagem binariaAdaptativa(BufferImagem buffer, Limiarizacao.Metodo metodo, int tamanhoJanela,
+            double parametro) {
+        return paraBuffer(Limiarizacao.aplicar(buffer, metodo, tamanhoJanela, parametro));
+    }
+
+    // a máscara é só um passo intermediário e volta ao pool depois de virar imagem
+    private static BufferImagem paraBuffer(MascaraBinaria mascara) {
+        try {
+            return mascara.paraBuffer();
+        } finally {
+            mascara.devolver();
+        }
+    }
+
+    /*
+     * Operações de conjunto entre imagens: um pixel conta como preto quando a
+     * média dos canais é no máximo LIMIAR_BINARIA, como em imagemBinaria, então
+     * imagens binárias e imagens comuns dão o mesmo resultado que teriam depois
+     * de binarizadas.
+     */
+
+    // pinta de preto onde qualquer uma das imagens é preta
+    public static BufferImagem uniao(BufferImagem buffer1, BufferImagem buffer2) {
+        return combinar(buffer1, buffer2, MascaraBinaria::uniao);
+    }
+
+    // mantém preto apenas onde as duas imagens são pretas
+    public static BufferImagem intersecao(BufferImagem buffer1, BufferImagem buffer2) {
+        return combinar(buffer1, buffer2, MascaraBinaria::intersecao);
+    }
+
+    // mantém preto onde a primeira imagem é preta e a segunda não
+    public static BufferImagem diferenca(BufferImagem buffer1, BufferImagem buffer2) {
+        return combinar(buffer1, buffer2, MascaraBinaria::diferenca);
+    }
+
+    // preto onde exatamente uma das imagens é preta
+    public static BufferImagem ouExclusivo(BufferImagem buffer1, BufferImagem buffer2) {
+        return combinar(buffer1, buffer2, MascaraBinaria::ouExclusivo);
+    }
+
+    private static BufferImagem combinar(BufferImagem buffer1, BufferImagem buffer2,
+            BinaryOperator<MascaraBinaria> operacao) {
+        MascaraBinaria mascara1 = mascaraBinaria(buffer1);
+        MascaraBinaria mascara2 = mascaraBinaria(buffer2);
+        try {
+            return paraBuffer(operacao.apply(mascara1, mascara2));
+        } finally {
+            mascara1.devolver();
+            mascara2.devolver();
+        }
+    }
+
+    // média ponderada das duas imagens, com peso alfa (de 0 a 1) para a primeira
+    public static BufferImagem mesclar(BufferImagem buffer1, BufferImagem buffer2, double alfa) {
+        if (!(alfa >= 0 && alfa <= 1)) {
+            throw new IllegalArgumentException("O peso deve estar entre 0 e 1: " + alfa);
+        }
+        int largura = Math.min(buffer1.getLargura(), buffer2.getLargura());
+        int altura = Math.min(buffer1.getAltura(), buffer2.getAltura());
+        boolean cinza = buffer1.isCinza() && buffer2.isCinza();
+        BufferImagem mescla = PoolBuffers.get().criar(largura, altura, cinza);
+        // pesos com 8 bits de fração
+        int peso1 = (int) Math.round(alfa * 256);
+        int peso2 = 256 - peso1;
+
+        ExecutorFaixas.executar(largura, altura, (inicio, fim) -> {
+            for (int i = inicio; i < fim; i++) {
+                for (int j = 0; j < largura; j++) {
+                    int p1 = buffer1.getRGB(j, i);
+                    int p2 = buffer2.getRGB(j, i);
+                    int r = (BufferImagem.vermelho(p1) * peso1 + BufferImagem.vermelho(p2) * peso2 + 128) >> 8;
+                    int g = (BufferImagem.verde(p1) * peso1 + BufferImagem.verde(p2) * peso2 + 128) >> 8;
+                    int b = (BufferImagem.azul(p1) * peso1 + BufferImagem.azul(p2) * peso2 + 128) >> 8;
+                    mescla.setRGB(j, i, BufferImagem.empacotar(r, g, b));
+                }
+            }
+        });
+        return mescla;
+    }
+
+    // mantém a cor dos pixels em que só o canal escolhido é forte; os demais ficam cinza
+    public static BufferImagem escolhaDoUsuario(BufferImagem buffer, int canalSelecionado) {
+        return escolhaDoUsuario(canalSelecionado).aplicar(buffer);
+    }
+
+    public static EtapaPonto escolhaDoUsuario(int canalSelecionado) {
+        return EtapaPonto.colorida((linha, quantidade) -> {
+            for (int x = 0; x < quantidade; x++) {
+                int pixel = linha[x];
+                if (!isPixelCorIgualEscolhida(pixel, canalSelecionado)) {
+                    // Tornar pixel Cinza
+                    int media = BufferImagem.media(pixel);
+                    linha[x] = BufferImagem.empacotar(media, media, media);
+                }
+            }
+        }, true);
+    }
+
+    private static boolean isPixelCorIgualEscolhida(int pixel, int canalSelecionado) {
+        for (int canalAtual = 0; canalAtual < 3; canalAtual++) {
+            int corAtual = (pixel >> (16 - 8 * canalAtual)) & 0xff;
+            boolean isCanalSelecionado = (canalAtual == canalSelecionado);
+            if (isCorInvalida(isCanalSelecionado, corAtual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCorInvalida(boolean isCanalSelecionado, int corAtual) {
+        return (!isCanalSelecionado && corAtual >= 167) || (isCanalSelecionado && corAtual < 167);
+    }
+
+    // largura e altura do maior objeto colorido da imagem, ou null se não há pixels coloridos
+    public static Dimension medirDispositivo(BufferImagem buffer) {
+        // o dispositivo é o maior objeto colorido; manchas e reflexos menores não mudam a medida
+        MascaraBinaria coloridos = mascaraColorida(buffer);
+        ComponentesConexos.Componente dispositivo;
+        try {
+            dispositivo = ComponentesConexos.rotular(coloridos, ComponentesConexos.Vizinhanca.OITO).maior();
+        } finally {
+            coloridos.devolver();
+        }
+        if (dispositivo == null) {
+            return null;
+        }
+        return new Dimension(dispositivo.getLargura(), dispositivo.getAltura());
+    }
+
+    // preto nos pixels coloridos: soma das diferenças de cada canal para o menor acima de DIFERENCA_TOTAL_MAXIMA
+    public static MascaraBinaria mascaraColorida(BufferImagem buffer) {
+        return MascaraBinaria.selecionar(buffer, pixel -> {
+            int r = BufferImagem.vermelho(pixel);
+            int g = BufferImagem.verde(pixel);
+            int b = BufferImagem.azul(pixel);
+            int menorCor = Math.min(r, Math.min(g, b));
+            return r + g + b - 3 * menorCor > DIFERENCA_TOTAL_MAXIMA;
+        });
+    }
+
+    // cada objeto preto de imagemBinaria numa cor, sobre fundo branco
+    public static BufferImagem rotularObjetos(BufferImagem buffer) {
+        MascaraBinaria pretos = mascaraBinaria(buffer);
+        ComponentesConexos componentes;
+        try {
+            componentes = ComponentesConexos.rotular(pretos, ComponentesConexos.Vizinhanca.OITO);
+        } finally {
+            pretos.devolver();
+        }
+        // matizes espaçados pela razão áurea, para que rótulos vizinhos tenham cores bem diferentes
+        return componentes.pintar(rotulo -> rotulo == 0 ? 0xffffff
+                : Color.HSBtoRGB(rotulo * 0.618034f % 1, 0.85f, 0.9f));
+    }
+
+    // fator em fração do tamanho original (0.5 = metade), pelo vizinho mais próximo
+    public static BufferImagem redimensionar(BufferImagem buffer, double fator) {
+        return Redimensionador.redimensionar(buffer, fator, Redimensionador.Interpolacao.VIZINHO);
+    }
+
+    public static BufferImagem redimensionar(BufferImagem buffer, double fator,
+            Redimensionador.Interpolacao interpolacao) {
+        return Redimensionador.redimensionar(buffer, fator, interpolacao);
+    }
+
+    public static BufferImagem transpor(BufferImagem buffer) {
+        return Orientacao.TRANSPOSTA.aplicar(buffer);
+    }
+
+    // qualquer ângulo, em graus no sentido anti-horário, com interpolação bilinear
+    public static BufferImagem rotacionar(BufferImagem buffer, double graus) {
+        return TransformacaoAfim.rotacionar(buffer, graus, TransformacaoAfim.Amostragem.BILINEAR);
+    }
+
+    public static BufferImagem rotacionar(BufferImagem buffer, double graus, TransformacaoAfim.Amostragem amostragem) {
+        return TransformacaoAfim.rotacionar(buffer, graus, amostragem);
+    }
+
+    public static BufferImagem filtroMedia(BufferImagem buffer, int tamanhoMatriz) {
+        return FiltroMediaDeslizante.aplicar(buffer, tamanhoMatriz);
+    }
+
+    public static BufferImagem filtroMediana(BufferImagem buffer, int tamanhoMatriz) {
+        return FiltroMedianaHistograma.aplicar(buffer, tamanhoMatriz);
+    }
+
+    public static BufferImagem filtroSobel(BufferImagem buffer) {
+        return GradienteSobel.magnitudeColorida(buffer, GradienteSobel.Operador.SOBEL, GradienteSobel.Magnitude.L2);
+    }
+
+    public static BufferImagem filtroGaussiano(BufferImagem buffer, double sigma) {
+        return ConvolucaoGaussiana.aplicar(buffer, sigma);
+    }
+
+    // imagens com H, S e V levados ao máximo, nessa ordem
+    public static BufferImagem[] converterHSV(BufferImagem buffer) {
+        return ConversorCores.maximosHSV(buffer);
+    }
+}
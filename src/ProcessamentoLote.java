@@ -0,0 +1,320 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Processamento em lote pela linha de comando, sem a interface Swing.
+ *
+ * Exemplo:
+ *   java ProcessamentoLote --entrada "fotos/*.jpg" --saida resultado
+ *       --operacoes "cinza | gaussiano:sigma=2 | sobel" --threads 4
+ *
+ * Cada arquivo é lido, passa pelo Pipeline montado com RegistroOperacoes e é
+ * gravado na pasta de saída com o mesmo nome (com a extensão original junto,
+ * se duas entradas dariam o mesmo arquivo). Arquivos diferentes são
+ * processados ao mesmo tempo; o tempo de cada um é impresso ao terminar.
+ *
+ * Com --faixas N, cada imagem é processada em faixas de N linhas por
+ * ProcessamentoStreaming, sem nunca ser carregada inteira; a saída é TIFF
+ * (padrão) ou PNM.
+ */
+public final class ProcessamentoLote {
+
+    private static final String USO = String.join(System.lineSeparator(),
+            "Uso: ProcessamentoLote --entrada <pasta ou padrão> --saida <pasta> --operacoes \"<op> | <op>:k=v\"",
+            "                        [--threads N] [--formato png|jpg|bmp|...] [--faixas N]",
+            "Operações: %s");
+
+    private final List<Path> arquivos;
+    private final Path pastaSaida;
+    private final Pipeline pipeline;
+    private final int threads;
+    private final String formato;
+    private final PrintStream saida;
+    private ProcessamentoStreaming streaming;
+
+    private ProcessamentoLote(List<Path> arquivos, Path pastaSaida, Pipeline pipeline, int threads,
+            String formato, PrintStream saida) {
+        this.arquivos = arquivos;
+        this.pastaSaida = pastaSaida;
+        this.pipeline = pipeline;
+        this.threads = threads;
+        this.formato = formato;
+        this.saida = saida;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ProcessamentoLote lote;
+        try {
+            lote = deArgumentos(args, System.out);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(String.format(USO, String.join(", ", RegistroOperacoes.getNomes())));
+            System.exit(2);
+            return;
+        }
+        int falhas = lote.executar();
+        System.exit(falhas == 0 ? 0 : 1);
+    }
+
+    static ProcessamentoLote deArgumentos(String[] args, PrintStream saida) throws IOException {
+        String entrada = null;
+        String pasta = null;
+        String cadeia = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String formato = null;
+        int faixas = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String opcao = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Falta o valor de " + opcao);
+            }
+            String valor = args[++i];
+            switch (opcao) {
+                case "--entrada", "-e" -> entrada = valor;
+                case "--saida", "-s" -> pasta = valor;
+                case "--operacoes", "-o" -> cadeia = valor;
+                case "--formato", "-f" -> formato = valor.toLowerCase(Locale.ROOT);
+                case "--threads", "-t" -> threads = lerPositivo(valor, "Quantidade de threads inválida: ");
+                case "--faixas" -> faixas = lerPositivo(valor, "Quantidade de linhas por faixa inválida: ");
+                default -> throw new IllegalArgumentException("Opção desconhecida: " + opcao);
+            }
+        }
+        if (entrada == null || pasta == null || cadeia == null) {
+            throw new IllegalArgumentException("Informe --entrada, --saida e --operacoes.");
+        }
+        if (faixas > 0) {
+            formato = formato == null ? "tif" : formato;
+            if (!formato.matches("tiff?|p[pgn]m")) {
+                throw new IllegalArgumentException("Em faixas a saída deve ser tif ou pnm: " + formato);
+            }
+        } else if (formato != null && !ImageIO.getImageWritersByFormatName(formato).hasNext()) {
+            throw new IllegalArgumentException("Formato de saída não suportado: " + formato);
+        }
+
+        Pipeline pipeline = Pipeline.deTexto(cadeia);
+        List<Path> arquivos = listarArquivos(entrada);
+        if (arquivos.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma imagem encontrada em " + entrada);
+        }
+        Path pastaSaida = Paths.get(pasta);
+        Files.createDirectories(pastaSaida);
+        ProcessamentoLote lote = new ProcessamentoLote(arquivos, pastaSaida, pipeline, threads, formato, saida);
+        if (faixas > 0) {
+            lote.streaming = new ProcessamentoStreaming(RegistroOperacoes.criarCadeia(cadeia), faixas);
+        }
+        return lote;
+    }
+
+    private static int lerPositivo(String valor, String mensagem) {
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero > 0) {
+                return numero;
+            }
+        } catch (NumberFormatException e) {
+            // tratado abaixo
+        }
+        throw new IllegalArgumentException(mensagem + valor);
+    }
+
+    // uma pasta (todas as imagens que o ImageIO sabe ler) ou um padrão glob no nome do arquivo
+    private static List<Path> listarArquivos(String entrada) throws IOException {
+        Path caminho = Paths.get(entrada);
+        Path pasta;
+        PathMatcher filtro;
+        if (Files.isDirectory(caminho)) {
+            pasta = caminho;
+            Set<String> extensoes = new HashSet<>(Arrays.asList(ImageIO.getReaderFileSuffixes()));
+            filtro = arquivo -> extensoes.contains(extensao(arquivo).toLowerCase(Locale.ROOT));
+        } else {
+            pasta = caminho.getParent() != null ? caminho.getParent() : Paths.get(".");
+            PathMatcher padrao = pasta.getFileSystem().getPathMatcher("glob:" + caminho.getFileName());
+            filtro = arquivo -> padrao.matches(arquivo.getFileName());
+        }
+
+        List<Path> arquivos = new ArrayList<>();
+        try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(pasta)) {
+            for (Path arquivo : conteudo) {
+                if (Files.isRegularFile(arquivo) && filtro.matches(arquivo)) {
+                    arquivos.add(arquivo);
+                }
+            }
+        }
+        arquivos.sort(null);
+        return arquivos;
+    }
+
+    private static String extensao(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        return ponto < 0 ? "" : nome.substring(ponto + 1);
+    }
+
+    // devolve a quantidade de arquivos que falharam
+    int executar() {
+        int paralelos = Math.min(threads, arquivos.size());
+        // as faixas de cada imagem dividem os núcleos com os outros arquivos em andamento
+        if (System.getProperty(ExecutorFaixas.PROPRIEDADE_PARALELISMO) == null) {
+            ExecutorFaixas.setParalelismo(Math.max(1, Runtime.getRuntime().availableProcessors() / paralelos));
+        }
+
+        AtomicInteger falhas = new AtomicInteger();
+        long inicio = System.nanoTime();
+        Map<Path, String> nomes = nomesDeSaida(falhas);
+        ExecutorService executor = Executors.newFixedThreadPool(paralelos);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (Path arquivo : arquivos) {
+                String nome = nomes.get(arquivo);
+                if (nome == null) {
+                    continue;
+                }
+                File destino = pastaSaida.resolve(nome).toFile();
+                tarefas.add(executor.submit(() -> {
+                    if (!processar(arquivo, destino)) {
+                        falhas.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Processamento em lote interrompido.", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        saida.printf(Locale.ROOT, "%d arquivo(s), %d falha(s), %.1f s no total%n", arquivos.size(), falhas.get(),
+                (System.nanoTime() - inicio) / 1e9);
+        saida.println(PoolBuffers.get());
+        return falhas.get();
+    }
+
+    /*
+     * Nome de saída de cada arquivo. Entradas que dariam o mesmo nome (a.png e
+     * a.jpg) mantêm a extensão original (a.png.png e a.jpg.png); se ainda
+     * assim sobrar conflito, os arquivos envolvidos contam como falha em vez
+     * de um sobrescrever o outro.
+     */
+    private Map<Path, String> nomesDeSaida(AtomicInteger falhas) {
+        Map<String, Integer> usos = new HashMap<>();
+        for (Path arquivo : arquivos) {
+            usos.merge(chave(nomeSemExtensao(arquivo) + "." + formatoDeSaida(arquivo)), 1, Integer::sum);
+        }
+        Map<Path, String> nomes = new HashMap<>();
+        Map<String, Path> donos = new HashMap<>();
+        for (Path arquivo : arquivos) {
+            String nome = nomeSemExtensao(arquivo) + "." + formatoDeSaida(arquivo);
+            if (usos.get(chave(nome)) > 1) {
+                nome = arquivo.getFileName() + "." + formatoDeSaida(arquivo);
+                saida.println(arquivo.getFileName() + ": gravado como " + nome + ", outra entrada tem o mesmo nome");
+            }
+            Path dono = donos.putIfAbsent(chave(nome), arquivo);
+            if (dono != null) {
+                saida.println(arquivo.getFileName() + ": ERRO - saída " + nome + " já usada por "
+                        + dono.getFileName());
+                falhas.incrementAndGet();
+            } else {
+                nomes.put(arquivo, nome);
+            }
+        }
+        return nomes;
+    }
+
+    // sistemas de arquivos que ignoram maiúsculas tratam A.png e a.png como o mesmo arquivo
+    private static String chave(String nome) {
+        return nome.toLowerCase(Locale.ROOT);
+    }
+
+    private boolean processar(Path arquivo, File destino) {
+        if (streaming != null) {
+            return processarEmFaixas(arquivo, destino);
+        }
+        try {
+            long t0 = System.nanoTime();
+            BufferedImage imagem = ImageIO.read(arquivo.toFile());
+            if (imagem == null) {
+                throw new IOException("formato de imagem não reconhecido");
+            }
+            BufferImagem buffer = BufferImagem.deImagem(imagem);
+            long t1 = System.nanoTime();
+            BufferImagem resultado = pipeline.aplicar(buffer);
+            long t2 = System.nanoTime();
+            String formatoArquivo = formatoDeSaida(arquivo);
+            if (!ImageIO.write(resultado.paraImagem(), formatoArquivo, destino)) {
+                throw new IOException("nenhum gravador para " + formatoArquivo);
+            }
+            long t3 = System.nanoTime();
+            // a imagem gravada não é mais usada e seus arrays servem ao próximo arquivo
+            PoolBuffers.get().devolver(resultado);
+            if (resultado != buffer) {
+                PoolBuffers.get().devolver(buffer);
+            }
+
+            saida.printf(Locale.ROOT, "%s: %dx%d, leitura %.1f ms, processamento %.1f ms, escrita %.1f ms%n",
+                    arquivo.getFileName(), buffer.getLargura(), buffer.getAltura(), (t1 - t0) / 1e6,
+                    (t2 - t1) / 1e6, (t3 - t2) / 1e6);
+            return true;
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            return falhar(arquivo, e);
+        }
+    }
+
+    private boolean processarEmFaixas(Path arquivo, File destino) {
+        try {
+            long inicio = System.nanoTime();
+            streaming.processar(arquivo.toFile(), destino);
+            saida.printf(Locale.ROOT, "%s: em faixas, %.1f ms%n", arquivo.getFileName(),
+                    (System.nanoTime() - inicio) / 1e6);
+            return true;
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            return falhar(arquivo, e);
+        }
+    }
+
+    // falta de memória num arquivo grande derruba só esse arquivo; os outros seguem
+    private boolean falhar(Path arquivo, Throwable erro) {
+        String motivo = erro instanceof OutOfMemoryError ? "memória insuficiente (" + erro.getMessage() + ")"
+                : erro.getMessage();
+        saida.println(arquivo.getFileName() + ": ERRO - " + motivo);
+        return false;
+    }
+
+    // o formato pedido ou o da própria entrada; PNG quando não há gravador para ele
+    private String formatoDeSaida(Path arquivo) {
+        if (formato != null) {
+            return formato;
+        }
+        String original = extensao(arquivo).toLowerCase(Locale.ROOT);
+        return ImageIO.getImageWritersBySuffix(original).hasNext() ? original : "png";
+    }
+
+    private static String nomeSemExtensao(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        return ponto < 0 ? nome : nome.substring(0, ponto);
+    }
+}
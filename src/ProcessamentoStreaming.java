@@ -0,0 +1,293 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Processa imagens maiores que a memória disponível, uma faixa de linhas por vez.
+ *
+ * As linhas são lidas do ImageReader por regiões (setSourceRegion) e guardadas
+ * numa janela que avança pela imagem; cada linha da entrada é lida uma única
+ * vez. Para cada faixa de saída, cada etapa calcula apenas as linhas de que as
+ * etapas seguintes precisam (a faixa mais o halo restante), e o resultado é
+ * gravado assim que fica pronto. A memória usada depende da largura, da altura
+ * da faixa e dos raios dos filtros, não da altura da imagem.
+ *
+ * Só operações de ponto e filtros de vizinhança podem ser usados. A saída é
+ * TIFF (gravação incremental com replacePixels) ou PNM (.ppm/.pgm/.pnm).
+ * Formatos de entrada sem acesso aleatório, como PNG e JPEG, são decodificados
+ * desde o início a cada região lida; para imagens muito grandes prefira TIFF.
+ */
+public final class ProcessamentoStreaming {
+
+    public static final int LINHAS_POR_FAIXA_PADRAO = 256;
+
+    private final List<Estagio> estagios = new ArrayList<>();
+    private final int halo;
+    private final int linhasPorFaixa;
+
+    public ProcessamentoStreaming(List<? extends OperacaoImagem> operacoes, int linhasPorFaixa) {
+        if (linhasPorFaixa < 1) {
+            throw new IllegalArgumentException("Linhas por faixa inválidas: " + linhasPorFaixa);
+        }
+        Estagio pontos = null;
+        for (OperacaoImagem operacao : operacoes) {
+            if (operacao instanceof EtapaPonto ponto) {
+                if (pontos == null) {
+                    pontos = new Estagio(null);
+                    estagios.add(pontos);
+                }
+                EtapaPonto.adicionar(pontos.pontos, ponto);
+            } else if (operacao instanceof EtapaVizinhanca vizinhanca) {
+                estagios.add(new Estagio(vizinhanca));
+                pontos = null;
+            } else {
+                throw new IllegalArgumentException("Em faixas só é possível usar operações de ponto e filtros de "
+                        + "vizinhança.");
+            }
+        }
+        int soma = 0;
+        for (Estagio estagio : estagios) {
+            soma += estagio.getRaio();
+        }
+        this.halo = soma;
+        this.linhasPorFaixa = linhasPorFaixa;
+    }
+
+    public void processar(File entrada, File saida) throws IOException {
+        try (ImageInputStream fluxo = ImageIO.createImageInputStream(entrada)) {
+            if (fluxo == null) {
+                throw new IOException("Não foi possível abrir " + entrada);
+            }
+            Iterator<ImageReader> leitores = ImageIO.getImageReaders(fluxo);
+            if (!leitores.hasNext()) {
+                throw new IOException("Formato de imagem não reconhecido: " + entrada);
+            }
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(fluxo, true, true);
+                processar(leitor, saida);
+            } finally {
+                leitor.dispose();
+            }
+        }
+    }
+
+    private void processar(ImageReader leitor, File saida) throws IOException {
+        int largura = leitor.getWidth(0);
+        int altura = leitor.getHeight(0);
+        boolean cinza = false;
+        for (Estagio estagio : estagios) {
+            cinza = estagio.saiCinza(cinza);
+        }
+
+        PoolBuffers pool = PoolBuffers.get();
+        try (Gravador gravador = criarGravador(saida, largura, altura, cinza)) {
+            BufferImagem janela = null;
+            for (int y0 = 0; y0 < altura; y0 += linhasPorFaixa) {
+                int y1 = Math.min(altura, y0 + linhasPorFaixa);
+                BufferImagem anterior = janela;
+                janela = avancarJanela(leitor, anterior, largura, altura, Math.max(0, y0 - halo),
+                        Math.min(altura, y1 + halo));
+                pool.devolver(anterior);
+
+                BufferImagem atual = janela;
+                int restante = halo;
+                for (Estagio estagio : estagios) {
+                    restante -= estagio.getRaio();
+                    int inicio = Math.max(0, y0 - restante);
+                    int fim = Math.min(altura, y1 + restante);
+                    BufferImagem origem = atual;
+                    BufferImagem destino = pool.criarJanela(largura, altura, inicio, fim,
+                            estagio.saiCinza(origem.isCinza()));
+                    ExecutorFaixas.executar(largura, fim - inicio, estagio.getRaio(),
+                            (a, b) -> estagio.processar(origem, destino, inicio + a, inicio + b));
+                    if (origem != janela) {
+                        pool.devolver(origem);
+                    }
+                    atual = destino;
+                }
+                gravador.gravar(atual.semJanela(), y0);
+                // cada faixa reaproveita os arrays da anterior
+                if (atual != janela) {
+                    pool.devolver(atual);
+                }
+            }
+            pool.devolver(janela);
+        }
+    }
+
+    // nova janela com as linhas [primeira, fim): reaproveita o que já foi lido e lê só o que falta
+    private static BufferImagem avancarJanela(ImageReader leitor, BufferImagem anterior, int largura, int altura,
+            int primeira, int fim) throws IOException {
+        BufferImagem janela = PoolBuffers.get().criarJanela(largura, altura, primeira, fim, false);
+        int[] destino = janela.getDadosRGB();
+        int lidas = primeira;
+        if (anterior != null && anterior.getFimLinhas() > primeira) {
+            int inicioComum = Math.max(primeira, anterior.getPrimeiraLinha());
+            lidas = anterior.getFimLinhas();
+            System.arraycopy(anterior.getDadosRGB(), anterior.indice(0, inicioComum), destino,
+                    janela.indice(0, inicioComum), (lidas - inicioComum) * largura);
+        }
+        if (lidas < fim) {
+            ImageReadParam parametros = leitor.getDefaultReadParam();
+            parametros.setSourceRegion(new Rectangle(0, lidas, largura, fim - lidas));
+            BufferImagem regiao = BufferImagem.deImagem(leitor.read(0, parametros));
+            System.arraycopy(regiao.getDadosRGB(), 0, destino, janela.indice(0, lidas), (fim - lidas) * largura);
+            PoolBuffers.get().devolver(regiao);
+        }
+        return janela;
+    }
+
+    private static Gravador criarGravador(File saida, int largura, int altura, boolean cinza) throws IOException {
+        String nome = saida.getName().toLowerCase(Locale.ROOT);
+        if (nome.endsWith(".tif") || nome.endsWith(".tiff")) {
+            return new GravadorTIFF(saida, largura, altura, cinza);
+        }
+        if (nome.endsWith(".ppm") || nome.endsWith(".pgm") || nome.endsWith(".pnm")) {
+            return new GravadorPNM(saida, largura, altura, cinza);
+        }
+        throw new IllegalArgumentException("Saída em faixas só pode ser TIFF ou PNM: " + saida.getName());
+    }
+
+    // uma operação de vizinhança ou uma sequência de operações de ponto
+    private static final class Estagio {
+
+        private final EtapaVizinhanca vizinhanca;
+        private final List<EtapaPonto> pontos = new ArrayList<>();
+        private EtapaPonto[] etapas;
+
+        Estagio(EtapaVizinhanca vizinhanca) {
+            this.vizinhanca = vizinhanca;
+        }
+
+        int getRaio() {
+            return vizinhanca != null ? vizinhanca.getRaio() : 0;
+        }
+
+        boolean saiCinza(boolean entradaCinza) {
+            return vizinhanca != null ? entradaCinza : EtapaPonto.saiCinza(entradaCinza, etapas());
+        }
+
+        void processar(BufferImagem origem, BufferImagem destino, int inicio, int fim) {
+            if (vizinhanca != null) {
+                vizinhanca.processarFaixa(origem, destino, inicio, fim);
+            } else {
+                EtapaPonto.aplicarFaixa(origem, destino, etapas(), inicio, fim);
+            }
+        }
+
+        private EtapaPonto[] etapas() {
+            if (etapas == null) {
+                etapas = pontos.toArray(new EtapaPonto[0]);
+            }
+            return etapas;
+        }
+    }
+
+    // recebe as faixas em ordem, de cima para baixo
+    private interface Gravador extends AutoCloseable {
+
+        void gravar(BufferImagem faixa, int primeiraLinha) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class GravadorTIFF implements Gravador {
+
+        private final ImageOutputStream fluxo;
+        private final ImageWriter gravador;
+
+        GravadorTIFF(File saida, int largura, int altura, boolean cinza) throws IOException {
+            gravador = ImageIO.getImageWritersByFormatName("tiff").next();
+            Files.deleteIfExists(saida.toPath());
+            fluxo = ImageIO.createImageOutputStream(saida);
+            gravador.setOutput(fluxo);
+            ImageTypeSpecifier tipo = ImageTypeSpecifier.createFromBufferedImageType(
+                    cinza ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+            gravador.prepareWriteEmpty(null, tipo, largura, altura, null, Collections.emptyList(), null);
+            gravador.endWriteEmpty();
+        }
+
+        @Override
+        public void gravar(BufferImagem faixa, int primeiraLinha) throws IOException {
+            Rectangle regiao = new Rectangle(0, primeiraLinha, faixa.getLargura(), faixa.getAltura());
+            ImageWriteParam parametros = gravador.getDefaultWriteParam();
+            parametros.setDestinationOffset(new Point(0, primeiraLinha));
+            gravador.prepareReplacePixels(0, regiao);
+            gravador.replacePixels(faixa.paraImagem().getRaster(), parametros);
+            gravador.endReplacePixels();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                gravador.dispose();
+            } finally {
+                fluxo.close();
+            }
+        }
+    }
+
+    // P6 (colorido) ou P5 (cinza) com 8 bits por amostra
+    private static final class GravadorPNM implements Gravador {
+
+        private final OutputStream fluxo;
+        private final boolean cinza;
+        private byte[] linha;
+
+        GravadorPNM(File saida, int largura, int altura, boolean cinza) throws IOException {
+            this.cinza = cinza;
+            fluxo = new BufferedOutputStream(Files.newOutputStream(saida.toPath()), 1 << 16);
+            String cabecalho = (cinza ? "P5" : "P6") + "\n" + largura + " " + altura + "\n255\n";
+            fluxo.write(cabecalho.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void gravar(BufferImagem faixa, int primeiraLinha) throws IOException {
+            int largura = faixa.getLargura();
+            for (int y = 0; y < faixa.getAltura(); y++) {
+                int inicio = faixa.indice(0, y);
+                if (cinza) {
+                    fluxo.write(faixa.getDadosCinza(), inicio, largura);
+                    continue;
+                }
+                if (linha == null) {
+                    linha = new byte[largura * 3];
+                }
+                int[] pixels = faixa.getDadosRGB();
+                for (int x = 0, i = 0; x < largura; x++) {
+                    int pixel = pixels[inicio + x];
+                    linha[i++] = (byte) (pixel >> 16);
+                    linha[i++] = (byte) (pixel >> 8);
+                    linha[i++] = (byte) pixel;
+                }
+                fluxo.write(linha);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            fluxo.close();
+        }
+    }
+}
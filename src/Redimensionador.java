@@ -0,0 +1,309 @@
+import java.util.Arrays;
+
+/**
+ * Redimensionamento separável com coordenadas e pesos pré-calculados.
+ *
+ * Para cada coluna e cada linha do resultado são calculados uma vez os índices
+ * de origem (já limitados à imagem) e os pesos em ponto fixo. Cada faixa de
+ * linhas do resultado interpola na horizontal só as linhas de origem de que
+ * precisa e depois combina essas linhas na vertical.
+ */
+public final class Redimensionador {
+
+    public enum Interpolacao {
+        // pixel de origem mais próximo, sem mistura
+        VIZINHO,
+        // 2x2 vizinhos
+        BILINEAR,
+        // 4x4 vizinhos (Keys, a = -0.5)
+        BICUBICA,
+        // média ponderada pela área coberta; indicada para reduzir
+        AREA;
+
+        // área para reduzir e bicúbica para ampliar
+        public static Interpolacao padrao(double fator) {
+            return fator < 1 ? AREA : BICUBICA;
+        }
+    }
+
+    // pesos somam 1 << BITS_PESO; a passada horizontal guarda 8 bits de fração
+    private static final int BITS_PESO = 14;
+    private static final int BITS_INTERMEDIARIO = 8;
+    private static final int DESLOCAMENTO_HORIZONTAL = BITS_PESO - BITS_INTERMEDIARIO;
+    private static final int DESLOCAMENTO_VERTICAL = BITS_PESO + BITS_INTERMEDIARIO;
+    private static final int ARREDONDAMENTO_HORIZONTAL = 1 << (DESLOCAMENTO_HORIZONTAL - 1);
+    private static final int ARREDONDAMENTO_VERTICAL = 1 << (DESLOCAMENTO_VERTICAL - 1);
+    private static final int LINHAS_POR_BLOCO = 64;
+
+    private Redimensionador() {
+    }
+
+    // fator em fração do tamanho original, como ProcessadorImagem.redimensionar
+    public static BufferImagem redimensionar(BufferImagem buffer, double fator, Interpolacao interpolacao) {
+        if (fator <= 0) {
+            throw new IllegalArgumentException("O fator de redimensionamento deve ser maior que zero.");
+        }
+        // fatores muito pequenos ainda dão uma imagem de 1 pixel, que cobre a origem inteira naquele eixo
+        int novaLargura = (int) (buffer.getLargura() * fator);
+        int novaAltura = (int) (buffer.getAltura() * fator);
+        double escalaX = novaLargura == 0 ? buffer.getLargura() : 1 / fator;
+        double escalaY = novaAltura == 0 ? buffer.getAltura() : 1 / fator;
+        return redimensionar(buffer, Math.max(1, novaLargura), Math.max(1, novaAltura), escalaX, escalaY,
+                interpolacao);
+    }
+
+    public static BufferImagem redimensionar(BufferImagem buffer, int novaLargura, int novaAltura,
+            Interpolacao interpolacao) {
+        if (novaLargura <= 0 || novaAltura <= 0) {
+            throw new IllegalArgumentException("Tamanho inválido: " + novaLargura + "x" + novaAltura);
+        }
+        return redimensionar(buffer, novaLargura, novaAltura, (double) buffer.getLargura() / novaLargura,
+                (double) buffer.getAltura() / novaAltura, interpolacao);
+    }
+
+    // escala = pixels de origem por pixel do resultado, em cada eixo
+    private static BufferImagem redimensionar(BufferImagem buffer, int novaLargura, int novaAltura, double escalaX,
+            double escalaY, Interpolacao interpolacao) {
+        BufferImagem resultado = PoolBuffers.get().criar(novaLargura, novaAltura, buffer.isCinza());
+        Eixo colunas = new Eixo(interpolacao, buffer.getLargura(), novaLargura, escalaX);
+        Eixo linhas = new Eixo(interpolacao, buffer.getAltura(), novaAltura, escalaY);
+        ExecutorFaixas.executar(novaLargura, novaAltura, (inicio, fim) -> {
+            if (interpolacao == Interpolacao.VIZINHO) {
+                faixaVizinho(buffer, resultado, colunas, linhas, inicio, fim);
+            } else {
+                faixaInterpolada(buffer, resultado, colunas, linhas, inicio, fim);
+            }
+        });
+        return resultado;
+    }
+
+    private static void faixaVizinho(BufferImagem origem, BufferImagem destino, Eixo colunas, Eixo linhas,
+            int inicio, int fim) {
+        int novaLargura = destino.getLargura();
+        int[] indicesX = colunas.indices;
+        for (int y = inicio; y < fim; y++) {
+            int linhaOrigem = origem.indice(0, linhas.indices[y]);
+            int saida = destino.indice(0, y);
+            if (origem.isCinza()) {
+                byte[] cinza = origem.getDadosCinza();
+                byte[] novoCinza = destino.getDadosCinza();
+                for (int x = 0; x < novaLargura; x++) {
+                    novoCinza[saida + x] = cinza[linhaOrigem + indicesX[x]];
+                }
+            } else {
+                int[] pixels = origem.getDadosRGB();
+                int[] novosPixels = destino.getDadosRGB();
+                for (int x = 0; x < novaLargura; x++) {
+                    novosPixels[saida + x] = pixels[linhaOrigem + indicesX[x]];
+                }
+            }
+        }
+    }
+
+    private static void faixaInterpolada(BufferImagem origem, BufferImagem destino, Eixo colunas, Eixo linhas,
+            int inicio, int fim) {
+        int novaLargura = destino.getLargura();
+        int canais = origem.getCanais();
+        int pontosY = linhas.pontos;
+        NucleosPixel nucleos = Nucleos.get();
+
+        // em blocos, para que a passada horizontal não guarde a faixa inteira
+        int maiorBloco = 0;
+        for (int bloco = inicio; bloco < fim; bloco += LINHAS_POR_BLOCO) {
+            maiorBloco = Math.max(maiorBloco, linhasDoBloco(linhas, bloco, Math.min(fim, bloco + LINHAS_POR_BLOCO)));
+        }
+        PoolBuffers pool = PoolBuffers.get();
+        try (PoolBuffers.Emprestimo<int[][]> somas = pool.emprestarPlanos(canais, novaLargura);
+                PoolBuffers.Emprestimo<int[][]> planos = pool.emprestarPlanos(canais, maiorBloco * novaLargura)) {
+            int[][] acumulador = somas.get();
+            int[][] horizontal = planos.get();
+            for (int bloco = inicio; bloco < fim; bloco += LINHAS_POR_BLOCO) {
+                int fimBloco = Math.min(fim, bloco + LINHAS_POR_BLOCO);
+                int primeira = linhas.indices[bloco * pontosY];
+                int ultima = primeira + linhasDoBloco(linhas, bloco, fimBloco) - 1;
+
+                for (int y = primeira; y <= ultima; y++) {
+                    interpolarLinha(origem, y, colunas, horizontal, (y - primeira) * novaLargura, novaLargura);
+                }
+
+                for (int y = bloco; y < fimBloco; y++) {
+                    for (int c = 0; c < canais; c++) {
+                        int[] soma = acumulador[c];
+                        Arrays.fill(soma, 0, novaLargura, ARREDONDAMENTO_VERTICAL);
+                        for (int k = 0; k < pontosY; k++) {
+                            int i = y * pontosY + k;
+                            nucleos.acumularPonderado(soma, horizontal[c],
+                                    (linhas.indices[i] - primeira) * novaLargura, linhas.pesos[i], novaLargura);
+                        }
+                    }
+                    escreverLinha(destino, y, acumulador);
+                }
+            }
+        }
+    }
+
+    // linhas da origem lidas pelas linhas [bloco, fimBloco); os índices de cada linha são crescentes,
+    // então bastam o primeiro e o último
+    private static int linhasDoBloco(Eixo linhas, int bloco, int fimBloco) {
+        int pontosY = linhas.pontos;
+        return linhas.indices[(fimBloco - 1) * pontosY + pontosY - 1] - linhas.indices[bloco * pontosY] + 1;
+    }
+
+    // interpola uma linha da origem direto dos pixels empacotados, um plano por canal
+    private static void interpolarLinha(BufferImagem origem, int y, Eixo colunas, int[][] planos, int deslocamento,
+            int novaLargura) {
+        int pontos = colunas.pontos;
+        int[] indices = colunas.indices;
+        int[] pesos = colunas.pesos;
+        int inicio = origem.indice(0, y);
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            int[] v = planos[0];
+            for (int x = 0, i = 0; x < novaLargura; x++) {
+                int soma = ARREDONDAMENTO_HORIZONTAL;
+                for (int k = 0; k < pontos; k++, i++) {
+                    soma += (cinza[inicio + indices[i]] & 0xff) * pesos[i];
+                }
+                v[deslocamento + x] = soma >> DESLOCAMENTO_HORIZONTAL;
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            int[] r = planos[0];
+            int[] g = planos[1];
+            int[] b = planos[2];
+            for (int x = 0, i = 0; x < novaLargura; x++) {
+                int somaR = ARREDONDAMENTO_HORIZONTAL;
+                int somaG = ARREDONDAMENTO_HORIZONTAL;
+                int somaB = ARREDONDAMENTO_HORIZONTAL;
+                for (int k = 0; k < pontos; k++, i++) {
+                    int pixel = pixels[inicio + indices[i]];
+                    int peso = pesos[i];
+                    somaR += BufferImagem.vermelho(pixel) * peso;
+                    somaG += BufferImagem.verde(pixel) * peso;
+                    somaB += BufferImagem.azul(pixel) * peso;
+                }
+                r[deslocamento + x] = somaR >> DESLOCAMENTO_HORIZONTAL;
+                g[deslocamento + x] = somaG >> DESLOCAMENTO_HORIZONTAL;
+                b[deslocamento + x] = somaB >> DESLOCAMENTO_HORIZONTAL;
+            }
+        }
+    }
+
+    private static void escreverLinha(BufferImagem destino, int y, int[][] acumulador) {
+        int largura = destino.getLargura();
+        int inicio = destino.indice(0, y);
+        if (destino.isCinza()) {
+            byte[] cinza = destino.getDadosCinza();
+            int[] v = acumulador[0];
+            for (int x = 0; x < largura; x++) {
+                cinza[inicio + x] = (byte) limitar(v[x] >> DESLOCAMENTO_VERTICAL);
+            }
+        } else {
+            int[] pixels = destino.getDadosRGB();
+            int[] r = acumulador[0];
+            int[] g = acumulador[1];
+            int[] b = acumulador[2];
+            for (int x = 0; x < largura; x++) {
+                pixels[inicio + x] = BufferImagem.empacotar(limitar(r[x] >> DESLOCAMENTO_VERTICAL),
+                        limitar(g[x] >> DESLOCAMENTO_VERTICAL), limitar(b[x] >> DESLOCAMENTO_VERTICAL));
+            }
+        }
+    }
+
+    // a bicúbica tem pesos negativos e pode sair de 0..255
+    private static int limitar(int valor) {
+        return Math.max(0, Math.min(255, valor));
+    }
+
+    // índices e pesos de um eixo: o pixel i do resultado usa os "pontos" pares a partir de i * pontos
+    private static final class Eixo {
+
+        final int pontos;
+        final int[] indices;
+        final int[] pesos;
+
+        Eixo(Interpolacao interpolacao, int tamanhoOrigem, int tamanho, double escala) {
+            switch (interpolacao) {
+                case VIZINHO:
+                    pontos = 1;
+                    break;
+                case BILINEAR:
+                    pontos = 2;
+                    break;
+                case BICUBICA:
+                    pontos = 4;
+                    break;
+                default:
+                    pontos = (int) Math.ceil(escala) + 1;
+            }
+            indices = new int[tamanho * pontos];
+            pesos = new int[tamanho * pontos];
+            double[] pesosReais = new double[pontos];
+
+            for (int i = 0; i < tamanho; i++) {
+                int primeiro;
+                if (interpolacao == Interpolacao.VIZINHO) {
+                    // mesmo arredondamento do redimensionamento original
+                    primeiro = (int) (i * escala);
+                    pesosReais[0] = 1;
+                } else if (interpolacao == Interpolacao.AREA) {
+                    primeiro = pesosArea(i, escala, pesosReais);
+                } else {
+                    double centro = (i + 0.5) * escala - 0.5;
+                    int base = (int) Math.floor(centro);
+                    double fracao = centro - base;
+                    if (interpolacao == Interpolacao.BILINEAR) {
+                        primeiro = base;
+                        pesosReais[0] = 1 - fracao;
+                        pesosReais[1] = fracao;
+                    } else {
+                        primeiro = base - 1;
+                        for (int k = 0; k < 4; k++) {
+                            pesosReais[k] = cubica(fracao - (k - 1));
+                        }
+                    }
+                }
+                preencher(i, primeiro, tamanhoOrigem, pesosReais);
+            }
+        }
+
+        // intervalo [i * escala, (i + 1) * escala) da origem; ao ampliar vira um vizinho suavizado
+        private int pesosArea(int i, double escala, double[] pesosReais) {
+            double esquerda = i * escala;
+            double direita = esquerda + escala;
+            int primeiro = (int) Math.floor(esquerda);
+            for (int k = 0; k < pontos; k++) {
+                double cobertura = Math.min(direita, primeiro + k + 1) - Math.max(esquerda, primeiro + k);
+                pesosReais[k] = Math.max(0, cobertura) / escala;
+            }
+            return primeiro;
+        }
+
+        private static double cubica(double distancia) {
+            double d = Math.abs(distancia);
+            if (d < 1) {
+                return (1.5 * d - 2.5) * d * d + 1;
+            }
+            if (d < 2) {
+                return ((-0.5 * d + 2.5) * d - 4) * d + 2;
+            }
+            return 0;
+        }
+
+        // converte para ponto fixo; o erro de arredondamento vai para o maior peso
+        private void preencher(int i, int primeiro, int tamanhoOrigem, double[] pesosReais) {
+            int base = i * pontos;
+            int total = 0;
+            int maior = 0;
+            for (int k = 0; k < pontos; k++) {
+                indices[base + k] = Math.max(0, Math.min(tamanhoOrigem - 1, primeiro + k));
+                pesos[base + k] = (int) Math.round(pesosReais[k] * (1 << BITS_PESO));
+                total += pesos[base + k];
+                if (pesos[base + k] > pesos[base + maior]) {
+                    maior = k;
+                }
+            }
+            pesos[base + maior] += (1 << BITS_PESO) - total;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Operações de ProcessadorImagem disponíveis por nome, para montar cadeias a
+ * partir de texto como "cinza | gaussiano:sigma=2 | sobel".
+ *
+ * Cada etapa é "nome" ou "nome:chave=valor,chave=valor". Os nomes em inglês
+ * são aceitos como sinônimos. Operações de ponto e filtros de vizinhança são
+ * devolvidos como EtapaPonto e EtapaVizinhanca para que o Pipeline os funda.
+ */
+public final class RegistroOperacoes {
+
+    private static final Map<String, Function<Parametros, OperacaoImagem>> fabricas = new LinkedHashMap<>();
+    private static final Map<String, String> sinonimos = new HashMap<>();
+
+    static {
+        registrar("cinza", "gray", p -> ProcessadorImagem.ESCALA_CINZA);
+        registrar("binaria", "binary", p -> ProcessadorImagem.BINARIA);
+        registrar("negativa", "negative", p -> ProcessadorImagem.NEGATIVA);
+        registrar("dominante", "dominant", p -> ProcessadorImagem.COR_DOMINANTE);
+        registrar("cinzaescuro", "gray-dark", p -> ProcessadorImagem.CINZA_ESCURO);
+        registrar("cinzaclaro", "gray-light", p -> ProcessadorImagem.CINZA_CLARO);
+        registrar("limiar", "threshold", p -> TabelaTons.limiar(p.nivel("valor", 127)).comoEtapa());
+        registrar("otsu", "otsu", p -> ProcessadorImagem::binariaOtsu);
+        registrar("adaptativa", "adaptive", p -> {
+            Limiarizacao.Metodo metodo = p.opcao("metodo", Limiarizacao.Metodo.SAUVOLA);
+            int tamanho = p.tamanhoJanela(31);
+            double parametro = metodo == Limiarizacao.Metodo.SAUVOLA ? p.decimal("k", 0.34) : p.decimal("c", 5);
+            return buffer -> ProcessadorImagem.binariaAdaptativa(buffer, metodo, tamanho, parametro);
+        });
+        registrar("objetos", "objects", p -> ProcessadorImagem::rotularObjetos);
+        registrar("gama", "gamma", p -> TabelaTons.gama(p.decimal("valor", 2.2)).comoEtapa());
+        registrar("contraste", "contrast", p -> TabelaTons.contraste(p.decimal("fator", 1.5)).comoEtapa());
+        registrar("niveis", "levels", p -> TabelaTons.niveis(p.nivel("min", 0), p.nivel("max", 255),
+                p.nivel("saidamin", 0), p.nivel("saidamax", 255)).comoEtapa());
+        registrar("canal", "channel", p -> ProcessadorImagem.escolhaDoUsuario(p.canal("canal", "rgb")));
+        registrar("redimensionar", "resize", p -> {
+            double fator = p.decimal("fator", 0.5);
+            Redimensionador.Interpolacao interpolacao = p.opcao("metodo",
+                    Redimensionador.Interpolacao.padrao(fator));
+            return buffer -> ProcessadorImagem.redimensionar(buffer, fator, interpolacao);
+        });
+        registrar("transpor", "transpose", p -> Orientacao.TRANSPOSTA);
+        registrar("girar90", "rotate90", p -> Orientacao.ROTACAO_90);
+        registrar("girar180", "rotate180", p -> Orientacao.ROTACAO_180);
+        registrar("girar270", "rotate270", p -> Orientacao.ROTACAO_270);
+        registrar("espelharh", "flip-h", p -> Orientacao.ESPELHO_HORIZONTAL);
+        registrar("espelharv", "flip-v", p -> Orientacao.ESPELHO_VERTICAL);
+        registrar("rotacionar", "rotate", p -> {
+            double graus = p.decimal("graus", 90);
+            TransformacaoAfim.Amostragem amostragem = p.opcao("metodo", TransformacaoAfim.Amostragem.BILINEAR);
+            return buffer -> ProcessadorImagem.rotacionar(buffer, graus, amostragem);
+        });
+        registrar("media", "mean", p -> FiltroMediaDeslizante.etapa(p.tamanhoJanela(3)));
+        registrar("mediana", "median", p -> FiltroMedianaHistograma.etapa(p.tamanhoJanela(3)));
+        // etapa() valida o sigma
+        registrar("gaussiano", "gaussian", p -> ConvolucaoGaussiana.etapa(p.decimal("sigma", 1)));
+        registrar("sobel", "sobel", p -> GradienteSobel.etapa(GradienteSobel.Operador.SOBEL,
+                GradienteSobel.Magnitude.L2));
+        registrar("hsv", "hsv", p -> {
+            int canal = p.canal("canal", "hsv");
+            return ConversorCores.etapa(ConversorCores.Espaco.HSV, ConversorCores.fixar(canal, canal == 0 ? 360 : 1));
+        });
+        registrar("cor", "color", p -> {
+            ConversorCores.Espaco espaco = p.opcao("espaco", ConversorCores.Espaco.HSV);
+            int canal = p.canal("canal", espaco.getLetras());
+            float fator = (float) p.decimal("fator", 1);
+            float soma = (float) p.decimal("soma", 0);
+            return ConversorCores.etapa(espaco, ConversorCores.escalar(espaco, canal, fator, soma));
+        });
+    }
+
+    private RegistroOperacoes() {
+    }
+
+    private static void registrar(String nome, String sinonimo, Function<Parametros, OperacaoImagem> fabrica) {
+        fabricas.put(nome, fabrica);
+        sinonimos.put(sinonimo, nome);
+    }
+
+    public static Set<String> getNomes() {
+        return Collections.unmodifiableSet(fabricas.keySet());
+    }
+
+    // "nome:chave=valor,..." com os parâmetros já validados
+    public static OperacaoImagem criar(String especificacao) {
+        String texto = especificacao.trim();
+        int separador = texto.indexOf(':');
+        String nome = (separador < 0 ? texto : texto.substring(0, separador)).trim().toLowerCase();
+        nome = sinonimos.getOrDefault(nome, nome);
+        Function<Parametros, OperacaoImagem> fabrica = fabricas.get(nome);
+        if (fabrica == null) {
+            throw new IllegalArgumentException("Operação desconhecida: \"" + texto + "\". Disponíveis: "
+                    + String.join(", ", fabricas.keySet()));
+        }
+        Parametros parametros = new Parametros(nome, separador < 0 ? "" : texto.substring(separador + 1));
+        OperacaoImagem operacao = fabrica.apply(parametros);
+        parametros.verificarNaoUsados();
+        return operacao;
+    }
+
+    // etapas separadas por "|", aplicadas da esquerda para a direita
+    public static List<OperacaoImagem> criarCadeia(String cadeia) {
+        List<OperacaoImagem> operacoes = new ArrayList<>();
+        for (String etapa : cadeia.split("\\|")) {
+            if (!etapa.isBlank()) {
+                operacoes.add(criar(etapa));
+            }
+        }
+        if (operacoes.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma operação informada.");
+        }
+        return operacoes;
+    }
+
+    private static final class Parametros {
+
+        private final String operacao;
+        private final Map<String, String> valores = new HashMap<>();
+        private final Set<String> usados = new TreeSet<>();
+
+        Parametros(String operacao, String texto) {
+            this.operacao = operacao;
+            for (String par : texto.split(",")) {
+                if (par.isBlank()) {
+                    continue;
+                }
+                int igual = par.indexOf('=');
+                if (igual < 0) {
+                    throw new IllegalArgumentException("Parâmetro sem valor em " + operacao + ": \"" + par.trim()
+                            + "\"");
+                }
+                valores.put(par.substring(0, igual).trim().toLowerCase(), par.substring(igual + 1).trim());
+            }
+        }
+
+        double decimal(String chave, double padrao) {
+            usados.add(chave);
+            String valor = valores.get(chave);
+            if (valor == null) {
+                return padrao;
+            }
+            try {
+                return Double.parseDouble(valor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor inválido para " + operacao + "." + chave + ": " + valor);
+            }
+        }
+
+        // nível de 0 a 255
+        int nivel(String chave, int padrao) {
+            double valor = decimal(chave, padrao);
+            if (valor < 0 || valor > 255 || valor != Math.rint(valor)) {
+                throw new IllegalArgumentException("Nível inválido em " + operacao + "." + chave + ": " + valor);
+            }
+            return (int) valor;
+        }
+
+        // lado da janela, inteiro e positivo
+        int tamanhoJanela(int padrao) {
+            double tamanho = decimal("tamanho", padrao);
+            if (tamanho < 1 || tamanho != Math.rint(tamanho)) {
+                throw new IllegalArgumentException("Tamanho de janela inválido em " + operacao + ": " + tamanho);
+            }
+            return (int) tamanho;
+        }
+
+        // letra do canal dentro de "letras" (por exemplo "rgb") ou seu índice
+        int canal(String chave, String letras) {
+            usados.add(chave);
+            String valor = valores.getOrDefault(chave, letras.substring(0, 1)).toLowerCase();
+            int indice = valor.length() == 1 ? letras.indexOf(valor.charAt(0)) : -1;
+            if (indice < 0 && valor.length() == 1 && Character.isDigit(valor.charAt(0))) {
+                indice = valor.charAt(0) - '0';
+            }
+            if (indice < 0 || indice >= letras.length()) {
+                throw new IllegalArgumentException("Canal inválido em " + operacao + ": " + valor
+                        + " (use " + String.join("/", letras.split("")) + ")");
+            }
+            return indice;
+        }
+
+        // constante do enum pelo nome, sem diferenciar maiúsculas
+        <E extends Enum<E>> E opcao(String chave, E padrao) {
+            usados.add(chave);
+            String valor = valores.get(chave);
+            if (valor == null) {
+                return padrao;
+            }
+            List<String> nomes = new ArrayList<>();
+            for (E constante : padrao.getDeclaringClass().getEnumConstants()) {
+                if (constante.name().equalsIgnoreCase(valor)) {
+                    return constante;
+                }
+                nomes.add(constante.name().toLowerCase());
+            }
+            throw new IllegalArgumentException("Valor inválido para " + operacao + "." + chave + ": " + valor
+                    + " (use " + String.join("/", nomes) + ")");
+        }
+
+        void verificarNaoUsados() {
+            Set<String> sobra = new TreeSet<>(valores.keySet());
+            sobra.removeAll(usados);
+            if (!sobra.isEmpty()) {
+                throw new IllegalArgumentException("Parâmetros desconhecidos em " + operacao + ": " + sobra);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Operação de ponto feita só com consultas a tabelas.
+ *
+ * Cada canal tem uma curva de 256 posições. Opcionalmente, antes das curvas,
+ * o pixel é convertido para cinza pela média (r + g + b) / 3, consultada numa
+ * tabela indexada pela soma dos canais. Tabelas podem ser encadeadas com
+ * depois(): uma sequência de curvas vira uma única tabela, então qualquer
+ * combinação de negativo, limiar, gama, contraste e níveis custa uma consulta
+ * por canal por pixel.
+ */
+public final class TabelaTons {
+
+    private static final int NIVEIS = 256;
+    private static final int SOMAS = 3 * 255 + 1;
+
+    // curvas[c][v] com c = 0 (vermelho), 1 (verde) ou 2 (azul)
+    private final int[][] curvas;
+    // nível de cinza para cada soma r + g + b, ou null quando a entrada não é convertida
+    private final int[] cinza;
+
+    // tabelas já deslocadas para a posição do canal no pixel 0x00RRGGBB
+    private final int[] vermelho = new int[NIVEIS];
+    private final int[] verde = new int[NIVEIS];
+    private final int[] azul = new int[NIVEIS];
+    private final int[] pixelPorSoma;
+    // calculados uma vez: aplicarCinza consulta produzCinza a cada linha
+    private final boolean curvasIguais;
+    private final boolean produzCinza;
+
+    private TabelaTons(int[][] curvas, int[] cinza) {
+        this.curvas = curvas;
+        this.cinza = cinza;
+        this.curvasIguais = Arrays.equals(curvas[0], curvas[1]) && Arrays.equals(curvas[0], curvas[2]);
+        this.produzCinza = cinza != null && curvasIguais;
+        for (int v = 0; v < NIVEIS; v++) {
+            vermelho[v] = curvas[0][v] << 16;
+            verde[v] = curvas[1][v] << 8;
+            azul[v] = curvas[2][v];
+        }
+        if (cinza != null) {
+            pixelPorSoma = new int[SOMAS];
+            for (int s = 0; s < SOMAS; s++) {
+                int v = cinza[s];
+                pixelPorSoma[s] = vermelho[v] | verde[v] | azul[v];
+            }
+        } else {
+            pixelPorSoma = null;
+        }
+    }
+
+    public static TabelaTons identidade() {
+        return curva(v -> v);
+    }
+
+    // mesma curva nos três canais; valores fora de 0..255 são limitados
+    public static TabelaTons curva(IntUnaryOperator funcao) {
+        int[] tabela = new int[NIVEIS];
+        for (int v = 0; v < NIVEIS; v++) {
+            tabela[v] = limitar(funcao.applyAsInt(v));
+        }
+        return new TabelaTons(new int[][]{tabela, tabela, tabela}, null);
+    }
+
+    public static TabelaTons porCanal(IntUnaryOperator vermelho, IntUnaryOperator verde, IntUnaryOperator azul) {
+        IntUnaryOperator[] funcoes = {vermelho, verde, azul};
+        int[][] curvas = new int[3][NIVEIS];
+        for (int c = 0; c < 3; c++) {
+            for (int v = 0; v < NIVEIS; v++) {
+                curvas[c][v] = limitar(funcoes[c].applyAsInt(v));
+            }
+        }
+        return new TabelaTons(curvas, null);
+    }
+
+    // escala de cinza pela média dos canais, sem divisão por pixel
+    public static TabelaTons media() {
+        int[] cinza = new int[SOMAS];
+        for (int s = 0; s < SOMAS; s++) {
+            cinza[s] = s / 3;
+        }
+        return identidade().comCinza(cinza);
+    }
+
+    public static TabelaTons negar() {
+        return curva(v -> 255 - v);
+    }
+
+    // branco acima do limite, preto no restante
+    public static TabelaTons limiar(int limite) {
+        return curva(v -> v > limite ? 255 : 0);
+    }
+
+    // saída = 255 * (v / 255) ^ (1 / gama); gama > 1 clareia os tons médios
+    public static TabelaTons gama(double gama) {
+        if (gama <= 0) {
+            throw new IllegalArgumentException("Gama deve ser maior que zero: " + gama);
+        }
+        return curva(v -> (int) Math.round(255 * Math.pow(v / 255.0, 1 / gama)));
+    }
+
+    // afasta (fator > 1) ou aproxima (fator < 1) os tons do cinza médio
+    public static TabelaTons contraste(double fator) {
+        if (fator < 0) {
+            throw new IllegalArgumentException("Fator de contraste negativo: " + fator);
+        }
+        return curva(v -> (int) Math.round((v - 127.5) * fator + 127.5));
+    }
+
+    // leva [pretoEntrada, brancoEntrada] linearmente para [pretoSaida, brancoSaida]
+    public static TabelaTons niveis(int pretoEntrada, int brancoEntrada, int pretoSaida, int brancoSaida) {
+        if (pretoEntrada >= brancoEntrada) {
+            throw new IllegalArgumentException("Níveis de entrada inválidos: " + pretoEntrada + ".." + brancoEntrada);
+        }
+        double escala = (brancoSaida - pretoSaida) / (double) (brancoEntrada - pretoEntrada);
+        return curva(v -> {
+            int entrada = Math.min(brancoEntrada, Math.max(pretoEntrada, v));
+            return (int) Math.round(pretoSaida + (entrada - pretoEntrada) * escala);
+        });
+    }
+
+    // esta tabela seguida de "proxima", ou null quando as duas não cabem numa tabela só
+    public TabelaTons depois(TabelaTons proxima) {
+        if (proxima.cinza != null) {
+            return isIdentidade() ? proxima : null;
+        }
+        int[][] compostas = new int[3][NIVEIS];
+        for (int c = 0; c < 3; c++) {
+            for (int v = 0; v < NIVEIS; v++) {
+                compostas[c][v] = proxima.curvas[c][curvas[c][v]];
+            }
+        }
+        return new TabelaTons(compostas, cinza);
+    }
+
+    private TabelaTons comCinza(int[] cinza) {
+        return new TabelaTons(curvas, cinza);
+    }
+
+    private boolean isIdentidade() {
+        if (cinza != null) {
+            return false;
+        }
+        for (int[] curva : curvas) {
+            for (int v = 0; v < NIVEIS; v++) {
+                if (curva[v] != v) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // a saída tem sempre r == g == b
+    public boolean produzCinza() {
+        return produzCinza;
+    }
+
+    // uma entrada cinza continua cinza
+    public boolean preservaCinza() {
+        return curvasIguais;
+    }
+
+    public int aplicar(int pixel) {
+        int r = (pixel >> 16) & 0xff;
+        int g = (pixel >> 8) & 0xff;
+        int b = pixel & 0xff;
+        return pixelPorSoma != null ? pixelPorSoma[r + g + b] : vermelho[r] | verde[g] | azul[b];
+    }
+
+    public void aplicarLinha(int[] linha, int quantidade) {
+        if (pixelPorSoma != null) {
+            int[] tabela = pixelPorSoma;
+            for (int x = 0; x < quantidade; x++) {
+                int pixel = linha[x];
+                linha[x] = tabela[((pixel >> 16) & 0xff) + ((pixel >> 8) & 0xff) + (pixel & 0xff)];
+            }
+        } else {
+            int[] r = vermelho;
+            int[] g = verde;
+            int[] b = azul;
+            for (int x = 0; x < quantidade; x++) {
+                int pixel = linha[x];
+                linha[x] = r[(pixel >> 16) & 0xff] | g[(pixel >> 8) & 0xff] | b[pixel & 0xff];
+            }
+        }
+    }
+
+    // para tabelas que produzem cinza: grava direto o nível de cada pixel num buffer de um canal
+    public void aplicarCinza(int[] origem, int inicioOrigem, byte[] destino, int inicioDestino, int quantidade) {
+        if (!produzCinza()) {
+            throw new IllegalStateException("A tabela não produz cinza.");
+        }
+        int[] tabela = pixelPorSoma;
+        for (int x = 0; x < quantidade; x++) {
+            int pixel = origem[inicioOrigem + x];
+            destino[inicioDestino + x] = (byte) tabela[((pixel >> 16) & 0xff) + ((pixel >> 8) & 0xff) + (pixel & 0xff)];
+        }
+    }
+
+    public EtapaPonto comoEtapa() {
+        return EtapaPonto.deTabela(this);
+    }
+
+    private static int limitar(int valor) {
+        return Math.min(255, Math.max(0, valor));
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Transformações afins (rotação em qualquer ângulo) por mapeamento inverso.
+ *
+ * Cada pixel do resultado procura sua posição na origem, então não sobram
+ * buracos e cada pixel é escrito por uma única faixa. Ao longo de uma linha a
+ * coordenada de origem só é somada a um incremento constante, em ponto fixo
+ * 16.16; o início de cada linha é recalculado para o erro não se acumular.
+ * Pixels que caem fora da origem ficam pretos.
+ */
+public final class TransformacaoAfim {
+
+    public enum Amostragem {
+        VIZINHO, BILINEAR
+    }
+
+    private static final int BITS_FRACAO = 16;
+    private static final double UM = 1 << BITS_FRACAO;
+    private static final int FUNDO = 0;
+    private static final Orientacao[] ORIENTACOES_A_CADA_90 = {
+        Orientacao.IDENTIDADE, Orientacao.ROTACAO_90, Orientacao.ROTACAO_180, Orientacao.ROTACAO_270
+    };
+
+    private TransformacaoAfim() {
+    }
+
+    // graus positivos giram no sentido anti-horário; o resultado cresce para caber a imagem inteira
+    public static BufferImagem rotacionar(BufferImagem buffer, double graus, Amostragem amostragem) {
+        if (!Double.isFinite(graus)) {
+            throw new IllegalArgumentException("Ângulo de rotação inválido: " + graus);
+        }
+        // múltiplos de 90 graus são só cópias de pixels, com o mesmo resultado
+        if (graus % 90 == 0) {
+            return ORIENTACOES_A_CADA_90[(int) Math.floorMod((long) (graus / 90), 4L)].aplicar(buffer);
+        }
+        double angulo = Math.toRadians(graus);
+        double cos = Math.cos(angulo);
+        double sen = Math.sin(angulo);
+        int largura = buffer.getLargura();
+        int altura = buffer.getAltura();
+        // a tolerância evita uma coluna a mais quando cos ou sen deveriam ser zero
+        int novaLargura = (int) Math.ceil(Math.abs(largura * cos) + Math.abs(altura * sen) - 1e-9);
+        int novaAltura = (int) Math.ceil(Math.abs(largura * sen) + Math.abs(altura * cos) - 1e-9);
+
+        // centro do resultado corresponde ao centro da origem
+        double centroX = novaLargura / 2.0;
+        double centroY = novaAltura / 2.0;
+        double[] inversa = {
+            cos, -sen, largura / 2.0 - cos * centroX + sen * centroY,
+            sen, cos, altura / 2.0 - sen * centroX - cos * centroY
+        };
+        return aplicar(buffer, novaLargura, novaAltura, inversa, amostragem);
+    }
+
+    /*
+     * inversa = {a, b, c, d, e, f} leva o ponto (x, y) do resultado ao ponto
+     * (a*x + b*y + c, d*x + e*y + f) da origem, em coordenadas contínuas em que
+     * o pixel (i, j) ocupa [i, i + 1) x [j, j + 1).
+     */
+    public static BufferImagem aplicar(BufferImagem origem, int novaLargura, int novaAltura, double[] inversa,
+            Amostragem amostragem) {
+        if (novaLargura < 0 || novaAltura < 0) {
+            throw new IllegalArgumentException("Tamanho inválido: " + novaLargura + "x" + novaAltura);
+        }
+        BufferImagem destino = PoolBuffers.get().criar(novaLargura, novaAltura, origem.isCinza());
+        ExecutorFaixas.executar(novaLargura, novaAltura,
+                (inicio, fim) -> aplicarFaixa(origem, destino, inversa, amostragem, inicio, fim));
+        return destino;
+    }
+
+    private static void aplicarFaixa(BufferImagem origem, BufferImagem destino, double[] inversa,
+            Amostragem amostragem, int inicio, int fim) {
+        int novaLargura = destino.getLargura();
+        // o bilinear interpola a partir do canto superior esquerdo dos quatro vizinhos
+        double ajuste = amostragem == Amostragem.BILINEAR ? 0.5 : 0;
+        long passoX = Math.round(inversa[0] * UM);
+        long passoY = Math.round(inversa[3] * UM);
+        for (int y = inicio; y < fim; y++) {
+            // centro do primeiro pixel da linha
+            double cy = y + 0.5;
+            long u = Math.round((inversa[0] * 0.5 + inversa[1] * cy + inversa[2] - ajuste) * UM);
+            long v = Math.round((inversa[3] * 0.5 + inversa[4] * cy + inversa[5] - ajuste) * UM);
+            int saida = destino.indice(0, y);
+            if (amostragem == Amostragem.VIZINHO) {
+                linhaVizinho(origem, destino, saida, novaLargura, u, v, passoX, passoY);
+            } else {
+                linhaBilinear(origem, destino, saida, novaLargura, u, v, passoX, passoY);
+            }
+        }
+    }
+
+    private static void linhaVizinho(BufferImagem origem, BufferImagem destino, int saida, int quantidade, long u,
+            long v, long passoX, long passoY) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        if (origem.isCinza()) {
+            byte[] cinza = origem.getDadosCinza();
+            byte[] novoCinza = destino.getDadosCinza();
+            for (int x = 0; x < quantidade; x++, u += passoX, v += passoY) {
+                int sx = (int) (u >> BITS_FRACAO);
+                int sy = (int) (v >> BITS_FRACAO);
+                novoCinza[saida + x] = sx >= 0 && sx < largura && sy >= 0 && sy < altura
+                        ? cinza[origem.indice(sx, sy)] : (byte) FUNDO;
+            }
+        } else {
+            int[] pixels = origem.getDadosRGB();
+            int[] novosPixels = destino.getDadosRGB();
+            for (int x = 0; x < quantidade; x++, u += passoX, v += passoY) {
+                int sx = (int) (u >> BITS_FRACAO);
+                int sy = (int) (v >> BITS_FRACAO);
+                novosPixels[saida + x] = sx >= 0 && sx < largura && sy >= 0 && sy < altura
+                        ? pixels[origem.indice(sx, sy)] : FUNDO;
+            }
+        }
+    }
+
+    // pesos com 8 bits de fração; vizinhos fora da origem contam como fundo, o que suaviza a borda
+    private static void linhaBilinear(BufferImagem origem, BufferImagem destino, int saida, int quantidade, long u,
+            long v, long passoX, long passoY) {
+        int largura = origem.getLargura();
+        int altura = origem.getAltura();
+        int passo = origem.getPasso();
+        boolean cinza = origem.isCinza();
+        byte[] dadosCinza = origem.getDadosCinza();
+        int[] pixels = origem.getDadosRGB();
+        for (int x = 0; x < quantidade; x++, u += passoX, v += passoY) {
+            int sx = (int) (u >> BITS_FRACAO);
+            int sy = (int) (v >> BITS_FRACAO);
+            if (sx < -1 || sx >= largura || sy < -1 || sy >= altura) {
+                escrever(destino, cinza, saida + x, FUNDO);
+                continue;
+            }
+            int fx = (int) (u >> (BITS_FRACAO - 8)) & 0xff;
+            int fy = (int) (v >> (BITS_FRACAO - 8)) & 0xff;
+            int p00;
+            int p10;
+            int p01;
+            int p11;
+            if (sx >= 0 && sx + 1 < largura && sy >= 0 && sy + 1 < altura) {
+                int i = origem.indice(sx, sy);
+                if (cinza) {
+                    p00 = dadosCinza[i] & 0xff;
+                    p10 = dadosCinza[i + 1] & 0xff;
+                    p01 = dadosCinza[i + passo] & 0xff;
+                    p11 = dadosCinza[i + passo + 1] & 0xff;
+                } else {
+                    p00 = pixels[i];
+                    p10 = pixels[i + 1];
+                    p01 = pixels[i + passo];
+                    p11 = pixels[i + passo + 1];
+                }
+            } else {
+                p00 = lerNaBorda(origem, sx, sy);
+                p10 = lerNaBorda(origem, sx + 1, sy);
+                p01 = lerNaBorda(origem, sx, sy + 1);
+                p11 = lerNaBorda(origem, sx + 1, sy + 1);
+            }
+            // os quatro pesos somam 1 << 16
+            int w00 = (256 - fx) * (256 - fy);
+            int w10 = fx * (256 - fy);
+            int w01 = (256 - fx) * fy;
+            int w11 = fx * fy;
+            int resultado = canal(p00, p10, p01, p11, w00, w10, w01, w11, 0);
+            if (!cinza) {
+                resultado |= canal(p00, p10, p01, p11, w00, w10, w01, w11, 8)
+                        | canal(p00, p10, p01, p11, w00, w10, w01, w11, 16);
+            }
+            escrever(destino, cinza, saida + x, resultado);
+        }
+    }
+
+    private static int canal(int p00, int p10, int p01, int p11, int w00, int w10, int w01, int w11,
+            int deslocamento) {
+        int soma = ((p00 >> deslocamento) & 0xff) * w00 + ((p10 >> deslocamento) & 0xff) * w10
+                + ((p01 >> deslocamento) & 0xff) * w01 + ((p11 >> deslocamento) & 0xff) * w11;
+        return ((soma + (1 << 15)) >>> 16) << deslocamento;
+    }
+
+    private static int lerNaBorda(BufferImagem origem, int x, int y) {
+        if (x < 0 || x >= origem.getLargura() || y < 0 || y >= origem.getAltura()) {
+            return FUNDO;
+        }
+        int indice = origem.indice(x, y);
+        return origem.isCinza() ? origem.getDadosCinza()[indice] & 0xff : origem.getDadosRGB()[indice];
+    }
+
+    private static void escrever(BufferImagem destino, boolean cinza, int indice, int valor) {
+        if (cinza) {
+            destino.getDadosCinza()[indice] = (byte) valor;
+        } else {
+            destino.getDadosRGB()[indice] = valor;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Confere que os núcleos vetoriais dão exatamente o mesmo resultado que os
+ * escalares e que as operações de cinza continuam iguais às fórmulas originais
+ * (média, mínimo e máximo dos canais). Sai com código 1 na primeira diferença,
+ * o que faz o alvo verificar do build.xml falhar.
+ *
+ * Com -Dimageifmg.vetorial=true também falha se Nucleos não adotar a versão
+ * vetorial, em vez de aceitar em silêncio a troca pela escalar.
+ */
+public final class VerificacaoNucleos {
+
+    private static final long[] SEMENTES = {1, 7, 42, 20240917, 987654321};
+    private static final double[] SIGMAS = {0.5, 0.8, 1, 1.5, 2, 3, 5, 10, 25, 50, 100};
+    // a passada horizontal da convolução gaussiana desloca 14 - 8 bits
+    private static final int BITS_HORIZONTAL = 6;
+
+    private static int falhas;
+
+    private VerificacaoNucleos() {
+    }
+
+    public static void main(String[] args) {
+        String propriedade = System.getProperty(Nucleos.PROPRIEDADE_VETORIAL);
+        System.out.println("Núcleos em uso: " + Nucleos.get().getClass().getSimpleName()
+                + " (" + Nucleos.PROPRIEDADE_VETORIAL + "=" + propriedade + ")");
+        if ("true".equalsIgnoreCase(propriedade) && !Nucleos.isVetorial()) {
+            falhar("a versão vetorial foi pedida, mas Nucleos ficou com a escalar");
+        }
+        if ("false".equalsIgnoreCase(propriedade) && Nucleos.isVetorial()) {
+            falhar("a versão vetorial foi desligada, mas Nucleos a adotou");
+        }
+
+        compararNucleos();
+        compararCinza();
+
+        if (falhas > 0) {
+            System.err.println(falhas + " diferença(s) encontrada(s).");
+            System.exit(1);
+        }
+        System.out.println("Núcleos e operações de cinza conferidos.");
+    }
+
+    private static void compararNucleos() {
+        int[] quantidades = new int[80];
+        for (int i = 0; i < 72; i++) {
+            quantidades[i] = i;
+        }
+        int[] maiores = {127, 128, 129, 255, 256, 257, 1001, 4099};
+        System.arraycopy(maiores, 0, quantidades, 72, maiores.length);
+
+        NucleosPixel escalares = new NucleosEscalares();
+        NucleosPixel[] candidatos = Nucleos.isVetorial() ? new NucleosPixel[] {new NucleosVetoriais()}
+                : new NucleosPixel[] {Nucleos.get(), new NucleosVetoriais()};
+        for (NucleosPixel candidato : candidatos) {
+            for (long semente : SEMENTES) {
+                for (double sigma : SIGMAS) {
+                    int[] kernel = ConvolucaoGaussiana.obterKernel(sigma, ConvolucaoGaussiana.raioPadrao(sigma));
+                    String diferenca = Nucleos.comparar(escalares, candidato, semente, kernel, BITS_HORIZONTAL,
+                            quantidades);
+                    if (diferenca != null) {
+                        falhar(candidato.getClass().getSimpleName() + "." + diferenca + " difere da escalar"
+                                + " (semente " + semente + ", sigma " + sigma + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void compararCinza() {
+        int[][] tamanhos = {{1, 1}, {3, 2}, {17, 3}, {64, 5}, {333, 7}, {1024, 3}};
+        for (long semente : SEMENTES) {
+            Random aleatorio = new Random(semente);
+            for (int[] tamanho : tamanhos) {
+                BufferImagem imagem = BufferImagem.criarRGB(tamanho[0], tamanho[1]);
+                int[] pixels = imagem.getDadosRGB();
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] = aleatorio.nextInt() & 0xffffff;
+                }
+                // extremos do intervalo, onde a divisão por 3 e os limiares costumam errar
+                pixels[0] = 0xffffff;
+                pixels[pixels.length - 1] = 0x7f7f80;
+
+                conferir("escalaCinza", imagem, ProcessadorImagem::escalaCinza, VerificacaoNucleos::media);
+                conferir("escalaCinzaEscuro", imagem, ProcessadorImagem::escalaCinzaEscuro,
+                        pixel -> Math.min(r(pixel), Math.min(g(pixel), b(pixel))));
+                conferir("escalaCinzaClaro", imagem, ProcessadorImagem::escalaCinzaClaro,
+                        pixel -> Math.max(r(pixel), Math.max(g(pixel), b(pixel))));
+                conferir("imagemBinaria", imagem, ProcessadorImagem::imagemBinaria,
+                        pixel -> media(pixel) > ProcessadorImagem.LIMIAR_BINARIA ? 255 : 0);
+                // etapas de ponto encadeadas são fundidas numa passada só
+                conferir("cinza | negativa", imagem, Pipeline.deTexto("cinza | negativa")::aplicar,
+                        pixel -> 255 - media(pixel));
+                conferir("cinzaclaro | binaria", imagem, Pipeline.deTexto("cinzaclaro | binaria")::aplicar,
+                        pixel -> Math.max(r(pixel), Math.max(g(pixel), b(pixel))) > ProcessadorImagem.LIMIAR_BINARIA
+                                ? 255 : 0);
+            }
+        }
+    }
+
+    private static void conferir(String nome, BufferImagem imagem, UnaryOperator<BufferImagem> operacao,
+            IntUnaryOperator esperado) {
+        BufferImagem resultado = operacao.apply(imagem);
+        for (int y = 0; y < imagem.getAltura(); y++) {
+            for (int x = 0; x < imagem.getLargura(); x++) {
+                int nivel = esperado.applyAsInt(imagem.getRGB(x, y));
+                int obtido = resultado.getRGB(x, y);
+                if (obtido != BufferImagem.empacotar(nivel, nivel, nivel)) {
+                    falhar(String.format("%s em %dx%d, pixel (%d, %d) de %06x: %06x em vez de %06x", nome,
+                            imagem.getLargura(), imagem.getAltura(), x, y, imagem.getRGB(x, y), obtido,
+                            BufferImagem.empacotar(nivel, nivel, nivel)));
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int media(int pixel) {
+        return (r(pixel) + g(pixel) + b(pixel)) / 3;
+    }
+
+    private static int r(int pixel) {
+        return BufferImagem.vermelho(pixel);
+    }
+
+    private static int g(int pixel) {
+        return BufferImagem.verde(pixel);
+    }
+
+    private static int b(int pixel) {
+        return BufferImagem.azul(pixel);
+    }
+
+    private static void falhar(String mensagem) {
+        falhas++;
+        System.err.println("FALHA: " + mensagem);
+    }
+}